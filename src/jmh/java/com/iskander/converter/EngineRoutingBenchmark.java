@@ -0,0 +1,46 @@
+package com.iskander.converter;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Выбор движка для пары форматов - выполняется на каждый запрос
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class EngineRoutingBenchmark {
+
+    private CpuPool cpuPool;
+    private JvmImageEngine jvmEngine;
+    private EngineRouter router;
+
+    @Setup
+    public void setUp() {
+        ConverterProperties properties = new ConverterProperties();
+        cpuPool = new CpuPool(properties);
+        jvmEngine = new JvmImageEngine(properties, cpuPool);
+        FfmpegImageEngine ffmpegEngine = new FfmpegImageEngine(null);
+        router = new EngineRouter(List.of(jvmEngine, ffmpegEngine, new FfmpegAudioEngine(null),
+                new JlayerMp3Engine(properties, cpuPool), new SofficeEngine(null)), properties);
+        for (int i = 0; i < 10; i++) {
+            router.record(jvmEngine, "png", "jpg", 2_000_000L, true);
+            router.record(ffmpegEngine, "png", "jpg", 40_000_000L, true);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        cpuPool.shutdown();
+    }
+
+    @Benchmark
+    public List<ConversionEngine> measuredPair() {
+        return router.candidates(MediaKind.IMAGE, "png", "jpg");
+    }
+
+    @Benchmark
+    public List<ConversionEngine> singleCandidate() {
+        return router.candidates(MediaKind.AUDIO, "wav", "flac");
+    }
+}
@@ -0,0 +1,74 @@
+package com.iskander.converter;
+
+import org.openjdk.jmh.annotations.*;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+// Конвертации внутри JVM: PNG -> JPG через ImageIO и MP3 -> WAV через jlayer
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class InProcessCodecBenchmark {
+
+    private CpuPool cpuPool;
+    private JvmImageEngine imageEngine;
+    private byte[] png;
+    private byte[] mp3;
+    private File output;
+
+    @Setup
+    public void setUp() throws IOException {
+        cpuPool = new CpuPool(new ConverterProperties());
+        imageEngine = new JvmImageEngine(new ConverterProperties(), cpuPool);
+
+        // Типичная миниатюра с градиентом, чтобы кодеру было что сжимать
+        BufferedImage image = new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, (x * 255 / image.getWidth()) << 16 | (y * 255 / image.getHeight()) << 8);
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        png = out.toByteArray();
+
+        // ~10 секунд кадров MPEG-1 Layer III 128 kbit/s, 44.1 kHz, стерео
+        ByteArrayOutputStream frames = new ByteArrayOutputStream();
+        for (int i = 0; i < 383; i++) {
+            byte[] frame = new byte[417];
+            frame[0] = (byte) 0xFF;
+            frame[1] = (byte) 0xFB;
+            frame[2] = (byte) 0x90;
+            frames.writeBytes(frame);
+        }
+        mp3 = frames.toByteArray();
+
+        output = File.createTempFile("bench_image", ".jpg");
+    }
+
+    @TearDown
+    public void tearDown() {
+        cpuPool.shutdown();
+        output.delete();
+    }
+
+    @Benchmark
+    public boolean pngToJpg() throws InterruptedException {
+        return imageEngine.convert(new ByteArrayInputStream(png), output, "jpg");
+    }
+
+    @Benchmark
+    public long mp3ToWav() throws IOException {
+        Mp3PcmDecoder.Info info = Mp3PcmDecoder.scan(new ByteArrayInputStream(mp3));
+        try (WavPcmStream wav = new WavPcmStream(new Mp3PcmDecoder(new ByteArrayInputStream(mp3), info), info)) {
+            return wav.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+}
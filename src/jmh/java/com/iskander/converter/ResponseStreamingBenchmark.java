@@ -0,0 +1,52 @@
+package com.iskander.converter;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.io.FileSystemResource;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Отдача результата клиенту: чтение файла целиком в память (как раньше в контроллерах)
+// против потоковой передачи с диска, как в ConvertedFileResponse
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class ResponseStreamingBenchmark {
+
+    @Param({"65536", "1048576", "16777216"})
+    public int size;
+
+    private File file;
+
+    @Setup
+    public void setUp() throws IOException {
+        byte[] content = new byte[size];
+        new Random(42).nextBytes(content);
+        file = File.createTempFile("bench_output", ".bin");
+        Files.write(file.toPath(), content);
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public long readAllBytes() throws IOException {
+        byte[] body = Files.readAllBytes(file.toPath());
+        OutputStream.nullOutputStream().write(body);
+        return body.length;
+    }
+
+    @Benchmark
+    public long streamFromDisk() throws IOException {
+        try (InputStream in = new FileSystemResource(file).getInputStream()) {
+            return in.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.iskander.converter;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.io.ByteArrayResource;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Работа с загрузкой до конвертации: копия во временный файл и хэш для ключа кэша
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class UploadHandlingBenchmark {
+
+    @Param({"65536", "1048576", "16777216"})
+    public int size;
+
+    private ByteArrayResource upload;
+    private ConversionCache cache;
+
+    @Setup
+    public void setUp() {
+        byte[] content = new byte[size];
+        new Random(42).nextBytes(content);
+        upload = new ByteArrayResource(content);
+        ConverterProperties properties = new ConverterProperties();
+        properties.getCache().setEnabled(false);
+        cache = new ConversionCache(properties);
+    }
+
+    @Benchmark
+    public long copyToTempFile() throws IOException {
+        File inputFile = File.createTempFile("bench_input", ".bin");
+        try (InputStream in = upload.getInputStream()) {
+            return Files.copy(in, inputFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            inputFile.delete();
+        }
+    }
+
+    @Benchmark
+    public String cacheKey() throws IOException {
+        return cache.key(upload, "image", "jpg", ImageTranscoder.SCALE_FILTER);
+    }
+}
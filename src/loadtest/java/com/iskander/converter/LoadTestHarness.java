@@ -0,0 +1,335 @@
+package com.iskander.converter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Нагрузочный прогон по эндпоинтам конвертации на запущенном сервере (./gradlew bootRun, затем ./gradlew loadTest).
+// Образцы генерируются на месте и делаются уникальными на каждый запрос, чтобы не мерить кэш.
+// Результат - JSON в loadtest.output, для сравнения между сборками.
+//
+// Параметры (-Dloadtest.*): url, endpoints (image,audio,video,document), concurrency, requests, warmup, label, output
+public class LoadTestHarness {
+
+    private static final Logger LOGGER = Logger.getLogger(LoadTestHarness.class.getName());
+
+    private static final String BOUNDARY = "----loadtest" + UUID.randomUUID().toString().replace("-", "");
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+    private final String baseUrl;
+    private final int concurrency;
+    private final int requests;
+    private final int warmup;
+
+    // Образец по эндпоинту: генерируется один раз, делается уникальным по номеру запроса
+    private interface Sample {
+        byte[] create(int sequence) throws IOException;
+    }
+
+    private static class Endpoint {
+
+        final String name;
+        final String path;
+        final String filename;
+        final String format;
+        final Sample sample;
+
+        Endpoint(String name, String path, String filename, String format, Sample sample) {
+            this.name = name;
+            this.path = path;
+            this.filename = filename;
+            this.format = format;
+            this.sample = sample;
+        }
+    }
+
+    public LoadTestHarness(String baseUrl, int concurrency, int requests, int warmup) {
+        this.baseUrl = baseUrl;
+        this.concurrency = concurrency;
+        this.requests = requests;
+        this.warmup = warmup;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String url = System.getProperty("loadtest.url", "http://localhost:8080");
+        int concurrency = Integer.getInteger("loadtest.concurrency", 8);
+        int requests = Integer.getInteger("loadtest.requests", 200);
+        int warmup = Integer.getInteger("loadtest.warmup", 10);
+        List<String> names = Arrays.asList(System.getProperty("loadtest.endpoints", "image,audio,video,document").split(","));
+        String label = System.getProperty("loadtest.label", Instant.now().toString().replace(":", "-"));
+        Path output = Paths.get(System.getProperty("loadtest.output", "build/reports/loadtest"));
+
+        LoadTestHarness harness = new LoadTestHarness(url, concurrency, requests, warmup);
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("label", label);
+        report.put("timestamp", Instant.now().toString());
+        report.put("url", url);
+        report.put("concurrency", concurrency);
+        report.put("requests", requests);
+        report.put("warmup", warmup);
+
+        Map<String, Object> results = new LinkedHashMap<>();
+        for (String name : names) {
+            Endpoint endpoint = endpoint(name.trim());
+            if (endpoint == null) {
+                LOGGER.log(Level.WARNING, "Skipping endpoint {0}: no sample available", name);
+                continue;
+            }
+            LOGGER.log(Level.INFO, "Running {0} requests against {1}", new Object[]{requests, endpoint.path});
+            Map<String, Object> result = harness.run(endpoint);
+            LOGGER.log(Level.INFO, "{0}: {1}", new Object[]{endpoint.name, result});
+            results.put(endpoint.name, result);
+        }
+        report.put("endpoints", results);
+
+        Files.createDirectories(output);
+        ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        File resultFile = output.resolve("results-" + label + ".json").toFile();
+        mapper.writeValue(resultFile, report);
+        mapper.writeValue(output.resolve("latest.json").toFile(), report);
+        LOGGER.log(Level.INFO, "Results written to {0}", resultFile);
+    }
+
+    private static Endpoint endpoint(String name) throws IOException, InterruptedException {
+        switch (name) {
+            case "image":
+                return new Endpoint(name, "/api/convert", "sample.png", "jpg", pngSample());
+            case "audio":
+                return new Endpoint(name, "/api/audio/convert", "sample.wav", "mp3", wavSample());
+            case "video":
+                Sample video = mp4Sample();
+                return video == null ? null
+                        : new Endpoint(name, "/api/video/convert", "sample.mp4",
+                        System.getProperty("loadtest.video.format", "mkv"), video);
+            case "document":
+                return new Endpoint(name, "/api/document/convert", "sample.txt", "pdf", textSample());
+            default:
+                return null;
+        }
+    }
+
+    private Map<String, Object> run(Endpoint endpoint) throws Exception {
+        // Прогрев: JIT, пулы процессов, соединения - в статистику не попадает
+        AtomicInteger sequence = new AtomicInteger();
+        execute(endpoint, warmup, sequence);
+
+        Instant start = Instant.now();
+        List<Outcome> outcomes = execute(endpoint, requests, sequence);
+        double elapsedSeconds = Duration.between(start, Instant.now()).toNanos() / 1e9;
+
+        long[] latencies = outcomes.stream()
+                .filter(o -> o.status >= 200 && o.status < 300)
+                .mapToLong(o -> o.nanos)
+                .sorted()
+                .toArray();
+        long rejected = outcomes.stream().filter(o -> o.status == 503).count();
+        long failed = outcomes.size() - latencies.length - rejected;
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("path", endpoint.path);
+        result.put("format", endpoint.format);
+        result.put("succeeded", latencies.length);
+        result.put("rejected", rejected);
+        result.put("failed", failed);
+        result.put("elapsedSeconds", elapsedSeconds);
+        result.put("throughputPerSecond", latencies.length / elapsedSeconds);
+        result.put("bytesReceived", outcomes.stream().mapToLong(o -> o.bytes).sum());
+        Map<String, Object> latency = new LinkedHashMap<>();
+        latency.put("p50", millis(percentile(latencies, 0.50)));
+        latency.put("p90", millis(percentile(latencies, 0.90)));
+        latency.put("p99", millis(percentile(latencies, 0.99)));
+        latency.put("max", millis(latencies.length == 0 ? 0 : latencies[latencies.length - 1]));
+        latency.put("mean", millis((long) Arrays.stream(latencies).average().orElse(0)));
+        result.put("latencyMillis", latency);
+        return result;
+    }
+
+    private static class Outcome {
+
+        final int status;
+        final long nanos;
+        final long bytes;
+
+        Outcome(int status, long nanos, long bytes) {
+            this.status = status;
+            this.nanos = nanos;
+            this.bytes = bytes;
+        }
+    }
+
+    private List<Outcome> execute(Endpoint endpoint, int count, AtomicInteger sequence) throws Exception {
+        if (count <= 0) return List.of();
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        try {
+            List<Future<Outcome>> futures = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                futures.add(executor.submit(() -> send(endpoint, sequence.incrementAndGet())));
+            }
+            List<Outcome> outcomes = new ArrayList<>();
+            for (Future<Outcome> future : futures) {
+                outcomes.add(future.get());
+            }
+            return outcomes;
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+
+    private Outcome send(Endpoint endpoint, int sequence) {
+        try {
+            // Тело собирается до отсчёта времени - меряем только сервер
+            byte[] body = multipart(endpoint.filename, endpoint.sample.create(sequence), endpoint.format);
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + endpoint.path))
+                    .timeout(Duration.ofMinutes(10))
+                    .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                    .build();
+            long start = System.nanoTime();
+            HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            return new Outcome(response.statusCode(), System.nanoTime() - start, response.body().length);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Request to {0} failed: {1}", new Object[]{endpoint.path, e.toString()});
+            return new Outcome(-1, 0, 0);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Outcome(-1, 0, 0);
+        }
+    }
+
+    private static byte[] multipart(String filename, byte[] content, String format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(content.length + 512);
+        out.write(("--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"format\"\r\n\r\n"
+                + format + "\r\n"
+                + "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"" + filename + "\"\r\n"
+                + "Content-Type: application/octet-stream\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        out.write(content);
+        out.write(("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        return out.toByteArray();
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    // PNG 1280x720 с градиентом; уникальность - цвет одного пикселя
+    private static Sample pngSample() {
+        return sequence -> {
+            BufferedImage image = new BufferedImage(1280, 720, BufferedImage.TYPE_INT_RGB);
+            for (int y = 0; y < image.getHeight(); y++) {
+                for (int x = 0; x < image.getWidth(); x++) {
+                    image.setRGB(x, y, (x * 255 / image.getWidth()) << 16 | (y * 255 / image.getHeight()) << 8);
+                }
+            }
+            image.setRGB(0, 0, sequence & 0xFFFFFF);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ImageIO.write(image, "png", out);
+            return out.toByteArray();
+        };
+    }
+
+    // 10 секунд синуса 440 Гц, 44.1 kHz, 16 бит, стерео; уникальность - последний сэмпл
+    private static Sample wavSample() {
+        int sampleRate = 44100;
+        int channels = 2;
+        int frames = sampleRate * 10;
+        int dataSize = frames * channels * 2;
+        ByteBuffer wav = ByteBuffer.allocate(44 + dataSize).order(ByteOrder.LITTLE_ENDIAN);
+        wav.put("RIFF".getBytes(StandardCharsets.US_ASCII)).putInt(36 + dataSize);
+        wav.put("WAVEfmt ".getBytes(StandardCharsets.US_ASCII)).putInt(16);
+        wav.putShort((short) 1).putShort((short) channels).putInt(sampleRate);
+        wav.putInt(sampleRate * channels * 2).putShort((short) (channels * 2)).putShort((short) 16);
+        wav.put("data".getBytes(StandardCharsets.US_ASCII)).putInt(dataSize);
+        for (int i = 0; i < frames; i++) {
+            short sample = (short) (Math.sin(2 * Math.PI * 440 * i / sampleRate) * 12000);
+            for (int c = 0; c < channels; c++) {
+                wav.putShort(sample);
+            }
+        }
+        byte[] template = wav.array();
+        return sequence -> {
+            byte[] copy = template.clone();
+            copy[copy.length - 2] = (byte) sequence;
+            copy[copy.length - 1] = (byte) (sequence >> 8);
+            return copy;
+        };
+    }
+
+    // 10 секунд testsrc через ffmpeg; уникальность - MP4-блок free в конце файла.
+    // null - ffmpeg недоступен на машине с нагрузкой
+    private static Sample mp4Sample() throws IOException, InterruptedException {
+        File file = File.createTempFile("loadtest_sample", ".mp4");
+        try {
+            Process process = new ProcessBuilder("ffmpeg", "-y", "-loglevel", "error",
+                    "-f", "lavfi", "-i", "testsrc=duration=10:size=1280x720:rate=30",
+                    "-f", "lavfi", "-i", "sine=frequency=440:duration=10",
+                    "-c:v", "libx264", "-pix_fmt", "yuv420p", "-c:a", "aac", "-shortest",
+                    file.getAbsolutePath())
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            if (process.waitFor() != 0) return null;
+            byte[] template = Files.readAllBytes(file.toPath());
+            return sequence -> {
+                ByteBuffer copy = ByteBuffer.allocate(template.length + 12);
+                copy.put(template).putInt(12).put("free".getBytes(StandardCharsets.US_ASCII)).putInt(sequence);
+                return copy.array();
+            };
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "ffmpeg is not available: {0}", e.getMessage());
+            return null;
+        } finally {
+            file.delete();
+        }
+    }
+
+    // Текст на несколько страниц; уникальность - последняя строка
+    private static Sample textSample() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 400; i++) {
+            text.append("Line ").append(i).append(": The quick brown fox jumps over the lazy dog.\n");
+        }
+        String template = text.toString();
+        return sequence -> (template + "Request " + sequence + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+}
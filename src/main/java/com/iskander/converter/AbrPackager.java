@@ -0,0 +1,170 @@
+package com.iskander.converter;
+
+import org.springframework.stereotype.Component;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.DoubleConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Пакет для адаптивного воспроизведения: все качества лестницы converter.abr.ladder кодируются одним процессом ffmpeg
+// из одного декодирования (split в filtergraph), сегменты режутся по общим ключевым кадрам.
+// Результат - каталог: hls (master.m3u8 и плейлисты качеств), dash (manifest.mpd) или cmaf -
+// одни фрагменты fMP4 с обоими манифестами. Выход - каталог output.<формат>, его отдаёт VideoConverterController.
+@Component
+public class AbrPackager implements ConversionEngine {
+
+    private static final Logger LOGGER = Logger.getLogger(AbrPackager.class.getName());
+
+    private final ProcessRunner processRunner;
+    private final MediaProbe mediaProbe;
+    private final ConverterProperties.Abr settings;
+
+    public AbrPackager(ProcessRunner processRunner, MediaProbe mediaProbe, ConverterProperties properties) {
+        this.processRunner = processRunner;
+        this.mediaProbe = mediaProbe;
+        this.settings = properties.getAbr();
+    }
+
+    public static boolean isPackageFormat(String format) {
+        return format.equalsIgnoreCase("hls") || format.equalsIgnoreCase("dash") || format.equalsIgnoreCase("cmaf");
+    }
+
+    // Файл, с которого плеер начинает воспроизведение
+    public static String manifestName(String format) {
+        return format.equalsIgnoreCase("dash") ? "manifest.mpd" : "master.m3u8";
+    }
+
+    @Override
+    public String name() {
+        return "ffmpeg-abr";
+    }
+
+    @Override
+    public int priority() {
+        return 10;
+    }
+
+    @Override
+    public boolean supports(MediaKind kind, String sourceFormat, String targetFormat) {
+        return kind == MediaKind.VIDEO && isPackageFormat(targetFormat);
+    }
+
+    @Override
+    public boolean convert(File inputFile, File outputFile, DoubleConsumer progress) throws Exception {
+        String name = outputFile.getName();
+        String format = name.substring(name.lastIndexOf('.') + 1).toLowerCase();
+        MediaInfo info = mediaProbe.probe(inputFile);
+        MediaInfo.Stream video = info.firstStream("video");
+        if (video == null) {
+            LOGGER.log(Level.WARNING, "No video stream in {0}, nothing to package", inputFile.getName());
+            return false;
+        }
+        List<ConverterProperties.Rung> ladder = ladder(settings.getLadder(), video.getHeight());
+
+        if (!outputFile.mkdirs() && !outputFile.isDirectory()) {
+            throw new IOException("Could not create package directory " + outputFile);
+        }
+        boolean packaged = false;
+        try {
+            List<String> command = command(inputFile, outputFile, format, ladder, info.firstStream("audio") != null,
+                    settings, progress != null);
+            int exitCode = processRunner.run(MediaKind.VIDEO, command, "FFmpeg ABR (" + ladder.size() + " renditions)",
+                    progress == null ? null : new FfmpegProgress(info.getDurationSeconds(), progress));
+            packaged = exitCode == 0 && new File(outputFile, manifestName(format)).isFile();
+            return packaged;
+        } finally {
+            // Недописанный пакет не должен достаться клиенту; каталог с файлами EngineRouter удалить не может
+            if (!packaged) FileSystemUtils.deleteRecursively(outputFile);
+        }
+    }
+
+    // Качества не выше входа - апскейл только тратит биты; вход ниже всей лестницы получает одно нижнее качество
+    // (scale его не увеличит). Высота неизвестна - берём лестницу целиком
+    static List<ConverterProperties.Rung> ladder(List<ConverterProperties.Rung> configured, int sourceHeight) {
+        List<ConverterProperties.Rung> result = new ArrayList<>();
+        ConverterProperties.Rung lowest = null;
+        for (ConverterProperties.Rung rung : configured) {
+            if (sourceHeight <= 0 || rung.getHeight() <= sourceHeight) result.add(rung);
+            if (lowest == null || rung.getHeight() < lowest.getHeight()) lowest = rung;
+        }
+        if (result.isEmpty() && lowest != null) result.add(lowest);
+        return result;
+    }
+
+    static List<String> command(File inputFile, File outputDir, String format, List<ConverterProperties.Rung> ladder,
+                                boolean hasAudio, ConverterProperties.Abr settings, boolean withProgress) {
+        String segmentSeconds = String.format(Locale.ROOT, "%.3f", settings.getSegmentDuration().toMillis() / 1000d);
+        List<String> command = new ArrayList<>(List.of("ffmpeg", "-y"));
+        command.addAll(InputSniffer.ffmpegInput(inputFile));
+
+        // Одно декодирование, split на все качества
+        StringBuilder graph = new StringBuilder("[0:v]split=").append(ladder.size());
+        for (int i = 0; i < ladder.size(); i++) {
+            graph.append("[s").append(i).append(']');
+        }
+        for (int i = 0; i < ladder.size(); i++) {
+            graph.append(";[s").append(i).append("]scale=-2:'min(").append(ladder.get(i).getHeight())
+                    .append(",ih)'[v").append(i).append(']');
+        }
+        command.add("-filter_complex");
+        command.add(graph.toString());
+
+        for (int i = 0; i < ladder.size(); i++) {
+            int bitrate = ladder.get(i).getBitrate();
+            command.addAll(List.of("-map", "[v" + i + "]",
+                    "-c:v:" + i, "libx264",
+                    "-b:v:" + i, bitrate + "k",
+                    "-maxrate:v:" + i, Math.round(bitrate * 1.07) + "k",
+                    "-bufsize:v:" + i, Math.round(bitrate * 1.5) + "k"));
+        }
+        // Ключевые кадры на границах сегментов во всех качествах - плеер переключается между ними без разрывов
+        command.addAll(List.of("-preset", settings.getPreset(), "-pix_fmt", "yuv420p", "-sc_threshold", "0",
+                "-force_key_frames", "expr:gte(t,n_forced*" + segmentSeconds + ")"));
+        if (hasAudio) {
+            // Звук одинаков для всех качеств - кодируется один раз
+            command.addAll(List.of("-map", "0:a:0", "-c:a", "aac", "-b:a", settings.getAudioBitrate() + "k", "-ac", "2"));
+        }
+        if (withProgress) {
+            command.addAll(List.of("-progress", "pipe:1", "-nostats"));
+        }
+
+        if (format.equals("hls")) {
+            StringBuilder streams = new StringBuilder();
+            for (int i = 0; i < ladder.size(); i++) {
+                if (i > 0) streams.append(' ');
+                streams.append("v:").append(i).append(hasAudio ? ",agroup:audio" : "");
+            }
+            if (hasAudio) streams.append(" a:0,agroup:audio");
+            command.addAll(List.of("-f", "hls",
+                    "-hls_time", segmentSeconds,
+                    "-hls_playlist_type", "vod",
+                    "-hls_segment_type", "fmp4",
+                    "-hls_flags", "independent_segments",
+                    "-hls_segment_filename", new File(outputDir, "stream_%v/segment_%05d.m4s").getAbsolutePath(),
+                    "-master_pl_name", "master.m3u8",
+                    "-var_stream_map", streams.toString(),
+                    new File(outputDir, "stream_%v/index.m3u8").getAbsolutePath()));
+        } else {
+            // DASH; cmaf - те же фрагменты ещё и с плейлистами HLS
+            command.addAll(List.of("-f", "dash",
+                    "-seg_duration", segmentSeconds,
+                    "-use_template", "1",
+                    "-use_timeline", "1",
+                    "-adaptation_sets", hasAudio ? "id=0,streams=v id=1,streams=a" : "id=0,streams=v",
+                    "-init_seg_name", "init-$RepresentationID$.m4s",
+                    "-media_seg_name", "chunk-$RepresentationID$-$Number%05d$.m4s"));
+            if (format.equals("cmaf")) {
+                // master.m3u8 рядом с manifest.mpd
+                command.addAll(List.of("-hls_playlist", "1"));
+            }
+            command.add(new File(outputDir, "manifest.mpd").getAbsolutePath());
+        }
+        return command;
+    }
+}
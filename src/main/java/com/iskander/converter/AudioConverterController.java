@@ -1,14 +1,12 @@
 package com.iskander.converter;
 
-import org.springframework.core.io.InputStreamResource;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
+import org.springframework.core.io.Resource;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.*;
-import java.nio.file.Files;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -18,17 +16,51 @@ public class AudioConverterController {
 
     private static final Logger LOGGER = Logger.getLogger(AudioConverterController.class.getName());
 
+    private final ConverterProperties properties;
+    private final ConversionCache cache;
+    private final ConversionScheduler scheduler;
+    private final ProcessRunner processRunner;
+    private final AudioTranscoder transcoder;
+    private final ConversionMetrics metrics;
+    private final JlayerMp3Engine jlayerEngine;
+    private final FfmpegAudioEngine ffmpegEngine;
+    private final EngineRouter router;
+    private final WorkArea workArea;
+    private final CostEstimator costEstimator;
+
+    public AudioConverterController(ConverterProperties properties, ConversionCache cache,
+                                    ConversionScheduler scheduler, ProcessRunner processRunner,
+                                    AudioTranscoder transcoder, ConversionMetrics metrics,
+                                    JlayerMp3Engine jlayerEngine, FfmpegAudioEngine ffmpegEngine, EngineRouter router,
+                                    WorkArea workArea, CostEstimator costEstimator) {
+        this.properties = properties;
+        this.cache = cache;
+        this.scheduler = scheduler;
+        this.processRunner = processRunner;
+        this.transcoder = transcoder;
+        this.metrics = metrics;
+        this.jlayerEngine = jlayerEngine;
+        this.ffmpegEngine = ffmpegEngine;
+        this.router = router;
+        this.workArea = workArea;
+        this.costEstimator = costEstimator;
+    }
+
     @CrossOrigin(origins = "*") // Если необходимо принимать запросы с другого домена/порта
     @PostMapping("/convert")
-    public ResponseEntity<InputStreamResource> convertAudio(
+    public ResponseEntity<Resource> convertAudio(
             @RequestParam("file") MultipartFile file,
             @RequestParam("format") String format) {
         File inputFile = null;
         File outputFile = null;
+        WorkArea.Allocation work = null;
+        ConversionCache.Flight flight = null;
+        ConversionScheduler.Slot slot = null;
+        ConversionMetrics.Recording recording = null;
 
         try {
             // Проверка поддерживаемых форматов
-            if (!isSupportedFormat(format)) {
+            if (!transcoder.isSupportedFormat(format)) {
                 LOGGER.log(Level.WARNING, "Unsupported target audio format: {0}", format);
                 return ResponseEntity.badRequest().body(null);
             }
@@ -39,46 +71,6 @@ public class AudioConverterController {
                 return ResponseEntity.badRequest().body(null);
             }
 
-            // Сохранение исходного файла во временную директорию
-            inputFile = File.createTempFile("input_audio", getExtension(file.getOriginalFilename()));
-            file.transferTo(inputFile);
-
-            // Создание выходного файла с нужным расширением
-            outputFile = File.createTempFile("output_audio", "." + format.toLowerCase());
-
-            // Вызов FFmpeg для конвертации аудио
-            // Пример: ffmpeg -y -i input.mp3 output.wav
-            // ffmpeg самостоятельно определит входной формат и сгенерирует выходной
-            ProcessBuilder processBuilder = new ProcessBuilder(
-                    "ffmpeg", "-y",      // -y для перезаписи без запроса
-                    "-i", inputFile.getAbsolutePath(),
-                    outputFile.getAbsolutePath()
-            );
-            processBuilder.redirectErrorStream(true);
-            Process process = processBuilder.start();
-
-            // Логирование вывода FFmpeg
-            long startTime = System.currentTimeMillis();
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    LOGGER.log(Level.INFO, line);
-                }
-            }
-
-            int exitCode = process.waitFor();
-            long endTime = System.currentTimeMillis();
-            LOGGER.log(Level.INFO, "FFmpeg audio process completed in {0} ms", (endTime - startTime));
-
-            if (exitCode != 0) {
-                LOGGER.log(Level.SEVERE, "FFmpeg audio process failed with exit code {0}", exitCode);
-                return ResponseEntity.status(500).body(null);
-            }
-
-            // Читаем выходной файл в память
-            byte[] fileBytes = Files.readAllBytes(outputFile.toPath());
-            InputStreamResource resource = new InputStreamResource(new ByteArrayInputStream(fileBytes));
-
             // Определяем MIME-тип для аудио
             String mimeType = resolveMimeType(format);
 
@@ -87,34 +79,102 @@ public class AudioConverterController {
             String baseName = removeExtension(originalFilename);
             String newFilename = baseName + "-converted." + format;
 
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.parseMediaType(mimeType));
-            headers.add(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + newFilename + "\"");
+            // Формат входа - по содержимому, а не по имени: не-аудио отклоняется (415) до хэширования и ffmpeg
+            InputFormat inputFormat = InputSniffer.require(MediaKind.AUDIO, file, originalFilename);
+            String sourceFormat = inputFormat.extension(originalFilename);
+
+            recording = metrics.start(MediaKind.AUDIO, originalFilename, format, file.getSize());
+
+            // Тот же файл с теми же параметрами уже конвертировали - отдаём из кэша
+            flight = cache.join(cache.key(file, "audio", format), format);
+            if (flight.isHit()) {
+                recording.cacheHit(flight.cachedFile().length());
+                return ConvertedFileResponse.attachment(flight.cachedFile(), mimeType, newFilename);
+            }
+
+            // Оценка стоимости (413, если выше потолка), место в рабочей области (503, если квота исчерпана),
+            // затем слот для этого типа конвертаций в порядке стоимости (или 503 при переполненной очереди)
+            CostEstimator.Estimate estimate = costEstimator.estimate(MediaKind.AUDIO, sourceFormat, format, file, file.getSize());
+            work = workArea.allocate(MediaKind.AUDIO, file.getSize());
+            slot = scheduler.acquire(MediaKind.AUDIO, estimate);
+
+            // MP3 -> WAV: декодирование в JVM прямо в ответ, без процесса ffmpeg и временных файлов
+            if (router.prefers(jlayerEngine, MediaKind.AUDIO, sourceFormat, format)
+                    && !ConvertedFileResponse.isRangeRequest()) {
+                long startTime = System.nanoTime();
+                ConversionStream wav = jlayerEngine.mp3ToWav(file);
+                if (wav != null) {
+                    // Слот освобождается, когда ответ дописан
+                    wav.releaseOnClose(slot.completeWith(wav));
+                    wav.releaseOnClose(recording.completeWith(wav));
+                    work.close();
+                    wav.releaseOnClose(() -> router.record(jlayerEngine, sourceFormat, format,
+                            System.nanoTime() - startTime, wav.succeeded()));
+                    slot = null;
+                    return ConvertedFileResponse.stream(flight.tee(wav), mimeType, newFilename);
+                }
+            }
+
+            // Если и вход, и выход можно передавать потоком - работаем без временных файлов
+            // (кроме запроса с Range: диапазон потока отдать нельзя).
+            // Замеры ffmpeg пишутся и здесь - иначе у него нет замеров и router.prefers всегда выбирает его
+            long ffmpegStart = System.nanoTime();
+            String pipeMuxer = resolvePipeMuxer(format);
+            if (properties.getFfmpeg().isPipeMode() && pipeMuxer != null && inputFormat.isPipeReadable()
+                    && !ConvertedFileResponse.isRangeRequest()) {
+                FfmpegPipe pipe = processRunner.startPipe(MediaKind.AUDIO, List.of(
+                        "ffmpeg", "-f", inputFormat.getDemuxer(), "-i", "pipe:0",
+                        "-f", pipeMuxer, "pipe:1"
+                ), file.getInputStream(), "FFmpeg audio");
+                // Слот освобождается, когда ответ дописан и ffmpeg завершён
+                pipe.releaseOnClose(slot.completeWith(pipe));
+                pipe.releaseOnClose(recording.completeWith(pipe));
+                pipe.releaseOnClose(() -> router.record(ffmpegEngine, sourceFormat, format,
+                        System.nanoTime() - ffmpegStart, pipe.succeeded()));
+                slot = null;
+                // Файлы не нужны - резерв освобождаем сразу
+                work.close();
+                if (!pipe.awaitOutput()) {
+                    pipe.close();
+                    return ResponseEntity.status(500).body(null);
+                }
+                return ConvertedFileResponse.stream(flight.tee(pipe), mimeType, newFilename);
+            }
+
+            // Сохранение исходного файла в рабочий каталог
+            inputFile = work.file("input." + sourceFormat);
+            try (StageTimings.Stage stage = StageTimings.start("transfer")) {
+                file.transferTo(inputFile);
+            }
+
+            // Создание выходного файла с нужным расширением
+            outputFile = work.file("output." + format.toLowerCase());
+
+            // Вызов FFmpeg (или другого движка, выбранного EngineRouter, - он же пишет замер)
+            if (!transcoder.transcode(inputFile, outputFile)) {
+                return ResponseEntity.status(500).body(null);
+            }
+            slot.succeeded();
 
-            return ResponseEntity.ok()
-                    .headers(headers)
-                    .contentLength(fileBytes.length)
-                    .body(resource);
+            // Результат переносится в кэш и отдаётся потоком с диска
+            File result = flight.commit(outputFile);
+            recording.success(result.length());
+            return ConvertedFileResponse.attachment(result, mimeType, newFilename);
 
+        } catch (ConversionRejectedException | ConversionTooCostlyException | UnsupportedInputException e) {
+            throw e;
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error during audio conversion: {0}", e.getMessage());
             return ResponseEntity.status(500).body(null);
         } finally {
-            // Удаляем временные файлы после чтения
-            if (inputFile != null && inputFile.exists()) inputFile.delete();
-            if (outputFile != null && outputFile.exists()) outputFile.delete();
+            if (slot != null) slot.close();
+            if (recording != null) recording.close();
+            // Рабочий каталог удаляется и файл кэша открепляется после отправки ответа
+            ConvertedFileResponse.releaseAfterResponse(work);
+            ConvertedFileResponse.releaseAfterResponse(flight);
         }
     }
 
-    private boolean isSupportedFormat(String format) {
-        // Добавляем поддержку различных аудиоформатов
-        return format.equalsIgnoreCase("mp3") ||
-                format.equalsIgnoreCase("wav") ||
-                format.equalsIgnoreCase("aac") ||
-                format.equalsIgnoreCase("flac") ||
-                format.equalsIgnoreCase("ogg");
-    }
-
     private String resolveMimeType(String format) {
         switch (format.toLowerCase()) {
             case "mp3":
@@ -132,13 +192,20 @@ public class AudioConverterController {
         }
     }
 
-    private String getExtension(String filename) {
-        if (filename == null) return ".tmp";
-        int lastIndex = filename.lastIndexOf(".");
-        if (lastIndex == -1) {
-            return ".tmp"; // Если расширения нет
+    // Мюксер ffmpeg для записи в pipe; null - формату нужен seek для заголовка (WAV), только через файл
+    private String resolvePipeMuxer(String format) {
+        switch (format.toLowerCase()) {
+            case "mp3":
+                return "mp3";
+            case "aac":
+                return "adts";
+            case "flac":
+                return "flac";
+            case "ogg":
+                return "ogg";
+            default:
+                return null;
         }
-        return filename.substring(lastIndex);
     }
 
     private String removeExtension(String filename) {
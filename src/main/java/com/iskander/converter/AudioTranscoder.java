@@ -0,0 +1,30 @@
+package com.iskander.converter;
+
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+
+// Конвертация аудиофайла (файл -> файл) через движок, выбранный EngineRouter
+@Component
+public class AudioTranscoder {
+
+    private final EngineRouter router;
+
+    public AudioTranscoder(EngineRouter router) {
+        this.router = router;
+    }
+
+    public boolean isSupportedFormat(String format) {
+        // Добавляем поддержку различных аудиоформатов
+        return format.equalsIgnoreCase("mp3") ||
+                format.equalsIgnoreCase("wav") ||
+                format.equalsIgnoreCase("aac") ||
+                format.equalsIgnoreCase("flac") ||
+                format.equalsIgnoreCase("ogg");
+    }
+
+    public boolean transcode(File inputFile, File outputFile) throws IOException, InterruptedException {
+        return router.convert(MediaKind.AUDIO, inputFile, outputFile, null);
+    }
+}
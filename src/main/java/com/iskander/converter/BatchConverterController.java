@@ -0,0 +1,371 @@
+package com.iskander.converter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+// Пакетная конвертация изображений/аудио: много файлов (или zip) за один запрос.
+// Файлы конвертируются параллельно, результаты попадают в zip-ответ по мере готовности,
+// в конце архива - manifest.json со статусом каждого файла.
+@RestController
+@RequestMapping("/api/batch")
+public class BatchConverterController {
+
+    private static final Logger LOGGER = Logger.getLogger(BatchConverterController.class.getName());
+
+    private final ConverterProperties.Batch settings;
+    private final ImageTranscoder imageTranscoder;
+    private final AudioTranscoder audioTranscoder;
+    private final ConversionCache cache;
+    private final ConversionScheduler scheduler;
+    private final ObjectMapper objectMapper;
+    private final WorkArea workArea;
+    private final CostEstimator costEstimator;
+    private final ExecutorService executor;
+
+    public BatchConverterController(ConverterProperties properties, ImageTranscoder imageTranscoder,
+                                    AudioTranscoder audioTranscoder, ConversionCache cache,
+                                    ConversionScheduler scheduler, ObjectMapper objectMapper, WorkArea workArea,
+                                    CostEstimator costEstimator) {
+        this.settings = properties.getBatch();
+        this.imageTranscoder = imageTranscoder;
+        this.audioTranscoder = audioTranscoder;
+        this.cache = cache;
+        this.scheduler = scheduler;
+        this.objectMapper = objectMapper;
+        this.workArea = workArea;
+        this.costEstimator = costEstimator;
+
+        // Элементы пакета в основном ждут диск и внешние процессы - виртуальные потоки;
+        // расчёт внутри JVM уходит в CpuPool
+        this.executor = Executors.newFixedThreadPool(settings.getParallelism(),
+                Thread.ofVirtual().name("batch-convert-", 1).factory());
+    }
+
+    @CrossOrigin(origins = "*")
+    @PostMapping("/convert")
+    public ResponseEntity<StreamingResponseBody> convertBatch(
+            @RequestParam(value = "files", required = false) List<MultipartFile> files,
+            @RequestParam(value = "archive", required = false) MultipartFile archive,
+            @RequestParam("type") String type,
+            @RequestParam("format") String format) {
+        MediaKind kind = resolveKind(type);
+        if (kind == null) {
+            LOGGER.log(Level.WARNING, "Unsupported batch type: {0}", type);
+            return ResponseEntity.badRequest().body(null);
+        }
+        if (!isSupportedFormat(kind, format)) {
+            LOGGER.log(Level.WARNING, "Unsupported target format for batch: {0}", format);
+            return ResponseEntity.badRequest().body(null);
+        }
+
+        WorkArea.Allocation work = null;
+        try {
+            // Резерв на входы и результаты (reserveFactor); распакованный архив - по пределу maxArchiveSize
+            work = workArea.allocate(kind, reserveSize(files, archive));
+            File batchDir = work.getDirectory();
+            List<BatchItem> items = new ArrayList<>();
+            if (files != null) {
+                for (MultipartFile file : files) {
+                    if (file.isEmpty()) continue;
+                    File input = inputFile(batchDir, items.size(), file.getOriginalFilename());
+                    try (StageTimings.Stage stage = StageTimings.start("transfer")) {
+                        file.transferTo(input);
+                    }
+                    items.add(new BatchItem(items.size(), fileName(file.getOriginalFilename()), input));
+                }
+            }
+            boolean withinLimits = archive == null || archive.isEmpty() || extractArchive(archive, batchDir, items);
+
+            if (!withinLimits || items.isEmpty() || items.size() > settings.getMaxFiles()) {
+                LOGGER.log(Level.WARNING, "Batch must contain between 1 and {0} files, got {1}",
+                        new Object[]{settings.getMaxFiles(), items.size()});
+                work.close();
+                return ResponseEntity.badRequest().body(null);
+            }
+
+            WorkArea.Allocation batchWork = work;
+            StreamingResponseBody body = out -> writeResults(kind, format, items, batchWork, out);
+
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.parseMediaType("application/zip"));
+            headers.add(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"converted-" + format.toLowerCase() + ".zip\"");
+            return ResponseEntity.ok().headers(headers).body(body);
+
+        } catch (ConversionRejectedException e) {
+            throw e;
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error while preparing batch conversion: {0}", e.getMessage());
+            if (work != null) work.close();
+            return ResponseEntity.status(500).body(null);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void writeResults(MediaKind kind, String format, List<BatchItem> items, WorkArea.Allocation work,
+                              OutputStream out) throws IOException {
+        File batchDir = work.getDirectory();
+        CompletionService<Map<String, Object>> completion = new ExecutorCompletionService<>(executor);
+        List<Future<Map<String, Object>>> futures = new ArrayList<>();
+        try {
+            for (BatchItem item : items) {
+                futures.add(completion.submit(() -> convertItem(kind, format, item, batchDir)));
+            }
+
+            List<Map<String, Object>> manifest = new ArrayList<>();
+            Set<String> usedNames = new HashSet<>();
+            try (ZipOutputStream zip = new ZipOutputStream(out)) {
+                for (int i = 0; i < items.size(); i++) {
+                    Map<String, Object> result = completion.take().get();
+                    File output = (File) result.remove("file");
+                    if (output != null) {
+                        String entryName = uniqueName(removeExtension((String) result.get("input")) + "." + format.toLowerCase(), usedNames);
+                        zip.putNextEntry(new ZipEntry(entryName));
+                        Files.copy(output.toPath(), zip);
+                        zip.closeEntry();
+                        // Отдаём готовый файл клиенту сразу, не дожидаясь остальных
+                        zip.flush();
+                        result.put("output", entryName);
+                    }
+                    manifest.add(result);
+                }
+
+                manifest.sort(Comparator.comparingInt(result -> (Integer) result.get("index")));
+                manifest.forEach(result -> result.remove("index"));
+                zip.putNextEntry(new ZipEntry("manifest.json"));
+                zip.write(objectMapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(manifest));
+                zip.closeEntry();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Batch conversion interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Batch conversion failed", e.getCause());
+        } finally {
+            // Клиент мог отключиться - оставшиеся файлы уже никому не нужны
+            for (Future<Map<String, Object>> future : futures) {
+                future.cancel(true);
+            }
+            work.close();
+        }
+    }
+
+    private Map<String, Object> convertItem(MediaKind kind, String format, BatchItem item, File batchDir) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("index", item.index);
+        result.put("input", item.name);
+        long startTime = System.currentTimeMillis();
+        File input = item.input;
+        // Изображение делается одним заранее выбранным движком - он входит в ключ кэша
+        ConversionEngine imageEngine = null;
+
+        try {
+            // Формат - по содержимому: файл не того типа отмечается в manifest, не доходя до ffmpeg;
+            // расширение рабочего файла исправляется - по нему выбирается движок
+            String sourceFormat = InputSniffer.require(kind, input, item.name).extension(item.name);
+            if (kind == MediaKind.IMAGE && (imageEngine = imageTranscoder.engine(sourceFormat, format)) == null) {
+                throw new UnsupportedInputException(kind, item.name, "no engine for " + sourceFormat + " -> " + format);
+            }
+            File sniffed = new File(batchDir, "in-" + item.index + "." + sourceFormat);
+            if (!sniffed.equals(input) && input.renameTo(sniffed)) {
+                input = sniffed;
+            }
+        } catch (UnsupportedInputException | IOException e) {
+            LOGGER.log(Level.WARNING, "Skipping batch item {0}: {1}", new Object[]{item.name, e.getMessage()});
+            result.put("status", "failed");
+            result.put("error", "Unsupported input");
+            result.put("durationMs", System.currentTimeMillis() - startTime);
+            input.delete();
+            return result;
+        }
+
+        String[] cacheParams = kind == MediaKind.IMAGE
+                ? ImageTranscoder.cacheParams(format, imageEngine)
+                : new String[]{"audio", format};
+
+        // Результаты пишутся в архив в темпе клиента, а кэш тем временем может их вытеснить -
+        // поэтому в архив идёт копия в рабочем каталоге, снятая, пока файл кэша закреплён
+        File output = new File(batchDir, "out-" + item.index + "." + format.toLowerCase());
+        try (ConversionCache.Flight flight = cache.join(cache.key(new FileSystemResource(input), cacheParams), format)) {
+            if (flight.isHit()) {
+                result.put("status", "cached");
+                result.put("file", keep(flight.cachedFile(), output));
+                return result;
+            }
+
+            // Файл дороже потолка отмечается в manifest как failed, остальные конвертируются
+            CostEstimator.Estimate estimate = costEstimator.estimate(kind, input, format);
+            boolean converted;
+            try (ConversionScheduler.Slot slot = scheduler.acquireWaiting(kind, estimate)) {
+                converted = kind == MediaKind.IMAGE
+                        ? imageTranscoder.transcode(imageEngine, input, output)
+                        : audioTranscoder.transcode(input, output);
+                if (converted) slot.succeeded();
+            }
+            if (!converted) {
+                result.put("status", "failed");
+                result.put("error", "Conversion failed");
+                return result;
+            }
+            result.put("status", "converted");
+            result.put("file", keep(flight.commit(output), output));
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.put("status", "failed");
+            result.put("error", "Cancelled");
+            return result;
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error converting batch item {0}: {1}", new Object[]{item.name, e.getMessage()});
+            result.put("status", "failed");
+            result.put("error", e.getMessage());
+            return result;
+        } finally {
+            result.put("durationMs", System.currentTimeMillis() - startTime);
+            input.delete();
+        }
+    }
+
+    // Жёсткая ссылка на файл кэша (копия, если кэш на другой файловой системе): вытеснение её не затронет
+    private static File keep(File cached, File target) throws IOException {
+        if (cached.equals(target)) return target;
+        try {
+            Files.createLink(target.toPath(), cached.toPath());
+        } catch (IOException | UnsupportedOperationException e) {
+            Files.copy(cached.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        return target;
+    }
+
+    // Распаковка zip: берём только имя файла, без путей (защита от zip-slip).
+    // false - превышено число файлов или распакованный размер
+    private boolean extractArchive(MultipartFile archive, File batchDir, List<BatchItem> items) throws IOException {
+        long extracted = 0;
+        long limit = settings.getMaxArchiveSize().toBytes();
+        try (ZipInputStream zip = new ZipInputStream(archive.getInputStream())) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                String name = fileName(entry.getName());
+                if (entry.isDirectory() || name.startsWith(".") || entry.getName().startsWith("__MACOSX")) {
+                    continue;
+                }
+                if (items.size() >= settings.getMaxFiles()) {
+                    return false;
+                }
+                File input = inputFile(batchDir, items.size(), name);
+                try (OutputStream out = new FileOutputStream(input)) {
+                    byte[] buffer = new byte[8192];
+                    int n;
+                    while ((n = zip.read(buffer)) != -1) {
+                        extracted += n;
+                        if (extracted > limit) {
+                            LOGGER.log(Level.WARNING, "Archive exceeds the limit of {0}", settings.getMaxArchiveSize());
+                            return false;
+                        }
+                        out.write(buffer, 0, n);
+                    }
+                }
+                items.add(new BatchItem(items.size(), name, input));
+            }
+        }
+        return true;
+    }
+
+    // Размер распакованного архива до распаковки неизвестен - резервируем предел
+    private long reserveSize(List<MultipartFile> files, MultipartFile archive) {
+        long size = archive == null || archive.isEmpty() ? 0 : settings.getMaxArchiveSize().toBytes();
+        if (files != null) {
+            for (MultipartFile file : files) {
+                size += file.getSize();
+            }
+        }
+        return size;
+    }
+
+    private MediaKind resolveKind(String type) {
+        switch (type.toLowerCase()) {
+            case "image":
+                return MediaKind.IMAGE;
+            case "audio":
+                return MediaKind.AUDIO;
+            default:
+                return null;
+        }
+    }
+
+    private boolean isSupportedFormat(MediaKind kind, String format) {
+        return kind == MediaKind.IMAGE
+                ? imageTranscoder.isSupportedFormat(format)
+                : audioTranscoder.isSupportedFormat(format);
+    }
+
+    private File inputFile(File batchDir, int index, String originalName) {
+        return new File(batchDir, "in-" + index + getExtension(originalName));
+    }
+
+    private String uniqueName(String name, Set<String> usedNames) {
+        String candidate = name;
+        for (int i = 2; !usedNames.add(candidate); i++) {
+            candidate = removeExtension(name) + "-" + i + name.substring(removeExtension(name).length());
+        }
+        return candidate;
+    }
+
+    private String fileName(String path) {
+        if (path == null || path.isEmpty()) return "file";
+        return Paths.get(path.replace('\\', '/')).getFileName().toString();
+    }
+
+    private String getExtension(String filename) {
+        if (filename == null) return ".tmp";
+        int lastIndex = filename.lastIndexOf(".");
+        if (lastIndex == -1) {
+            return ".tmp";
+        }
+        return filename.substring(lastIndex);
+    }
+
+    private String removeExtension(String filename) {
+        if (filename == null) return "converted-file";
+        int lastDot = filename.lastIndexOf('.');
+        if (lastDot == -1) {
+            return filename;
+        }
+        return filename.substring(0, lastDot);
+    }
+
+    private static class BatchItem {
+
+        private final int index;
+        private final String name;
+        private final File input;
+
+        BatchItem(int index, String name, File input) {
+            this.index = index;
+            this.name = name;
+            this.input = input;
+        }
+    }
+}
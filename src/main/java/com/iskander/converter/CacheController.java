@@ -0,0 +1,22 @@
+package com.iskander.converter;
+
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/cache")
+public class CacheController {
+
+    private final ConversionCache cache;
+
+    public CacheController(ConversionCache cache) {
+        this.cache = cache;
+    }
+
+    // Счётчики попаданий/промахов/вытеснений для подбора размера кэша
+    @GetMapping("/stats")
+    public Map<String, Object> stats() {
+        return cache.stats();
+    }
+}
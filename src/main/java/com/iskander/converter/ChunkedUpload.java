@@ -0,0 +1,115 @@
+package com.iskander.converter;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.io.File;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Загрузка по частям: файл в рабочей области, текущее смещение и хэш уже принятых байт
+public class ChunkedUpload {
+
+    private final String id;
+    private final long length;
+    private final String filename;
+    private final WorkArea.Allocation work;
+    private final File file;
+    private final MessageDigest digest = ConversionCache.sha256();
+    // Одновременно принимается только один PATCH
+    private final ReentrantLock lock = new ReentrantLock();
+    // Конвертации, которые сейчас читают файл загрузки, - пока они идут, загрузка не истекает
+    private final AtomicInteger users = new AtomicInteger();
+
+    private volatile long offset;
+    private volatile Instant updatedAt = Instant.now();
+
+    public ChunkedUpload(String id, long length, String filename, WorkArea.Allocation work, File file) {
+        this.id = id;
+        this.length = length;
+        this.filename = filename;
+        this.work = work;
+        this.file = file;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    public boolean isComplete() {
+        return offset == length;
+    }
+
+    @JsonIgnore
+    public File getFile() {
+        return file;
+    }
+
+    // Каталог загрузки в рабочей области - удаляется вместе с загрузкой
+    @JsonIgnore
+    public WorkArea.Allocation getWork() {
+        return work;
+    }
+
+    @JsonIgnore
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    @JsonIgnore
+    public boolean isInUse() {
+        return users.get() > 0;
+    }
+
+    public void retain() {
+        users.incrementAndGet();
+        updatedAt = Instant.now();
+    }
+
+    // После конвертации срок хранения отсчитывается заново - клиент может повторить её
+    public void release() {
+        updatedAt = Instant.now();
+        users.decrementAndGet();
+    }
+
+    // Копия хэша содержимого - для ключа кэша, когда загрузка завершена
+    @JsonIgnore
+    public MessageDigest contentDigest() {
+        lock.lock();
+        try {
+            return (MessageDigest) digest.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean tryLock() {
+        return lock.tryLock();
+    }
+
+    void unlock() {
+        lock.unlock();
+    }
+
+    // Вызывается под lock после того, как байты записаны на диск
+    void accept(byte[] buffer, int length) {
+        digest.update(buffer, 0, length);
+        offset += length;
+        updatedAt = Instant.now();
+    }
+}
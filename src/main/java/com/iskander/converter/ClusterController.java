@@ -0,0 +1,22 @@
+package com.iskander.converter;
+
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/cluster")
+public class ClusterController {
+
+    private final JobQueue queue;
+
+    public ClusterController(JobQueue queue) {
+        this.queue = queue;
+    }
+
+    // Воркеры по последним объявлениям: инструменты, типы задач, мощность и занятость
+    @GetMapping("/workers")
+    public List<WorkerInfo> workers() {
+        return queue.workers();
+    }
+}
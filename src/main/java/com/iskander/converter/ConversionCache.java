@@ -0,0 +1,372 @@
+package com.iskander.converter;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.stereotype.Component;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Дисковый кэш результатов конвертации.
+// Ключ - SHA-256 входных байт + тип конвертации + целевой формат + параметры.
+// Вытеснение по LRU при превышении max-size. Одинаковые одновременные запросы
+// ждут одну конвертацию (single-flight), а не запускают ffmpeg/soffice повторно.
+// Файл, выданный вызывающему (попадание или commit), закреплён до Flight.close() и не вытесняется:
+// вызывающий открывает его позже, при записи ответа.
+@Component
+public class ConversionCache {
+
+    private static final Logger LOGGER = Logger.getLogger(ConversionCache.class.getName());
+
+    private final ConverterProperties.Cache settings;
+    private final Path directory;
+
+    // LRU-порядок: accessOrder = true
+    private final LinkedHashMap<String, File> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ConcurrentHashMap<String, CompletableFuture<File>> inFlight = new ConcurrentHashMap<>();
+    // Число выданных и ещё не закрытых Flight на ключ
+    private final Map<String, Integer> pins = new HashMap<>();
+    private long totalBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public ConversionCache(ConverterProperties properties) {
+        this.settings = properties.getCache();
+        this.directory = settings.getDirectory() != null
+                ? Paths.get(settings.getDirectory())
+                : Paths.get(System.getProperty("java.io.tmpdir"), "converter-cache");
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!settings.isEnabled()) return;
+        Files.createDirectories(directory);
+
+        // Восстанавливаем индекс после перезапуска: старые файлы - первыми на вытеснение
+        File[] files = directory.toFile().listFiles();
+        if (files == null) return;
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        synchronized (this) {
+            for (File f : files) {
+                if (f.getName().endsWith(".part")) {
+                    f.delete();
+                    continue;
+                }
+                entries.put(removeExtension(f.getName()), f);
+                totalBytes += f.length();
+            }
+            evictIfNeeded();
+        }
+        LOGGER.log(Level.INFO, "Conversion cache at {0}: {1} entries, {2} bytes",
+                new Object[]{directory, entries.size(), totalBytes});
+    }
+
+    // Ключ кэша: хэш содержимого загрузки и всех параметров, влияющих на результат
+    public String key(InputStreamSource source, String... params) throws IOException {
+        MessageDigest digest = sha256();
+        try (StageTimings.Stage stage = StageTimings.start("hash");
+             InputStream in = new DigestInputStream(source.getInputStream(), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return key(digest, params);
+    }
+
+    // То же, когда хэш содержимого уже посчитан по ходу загрузки (digest после этого не пригоден)
+    public String key(MessageDigest digest, String... params) {
+        for (String param : params) {
+            digest.update((byte) 0);
+            digest.update(param.toLowerCase().getBytes(StandardCharsets.UTF_8));
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    // Попадание в кэш, ожидание чужой конвертации или право выполнить её самому
+    public Flight join(String key, String extension) throws InterruptedException {
+        if (!settings.isEnabled()) {
+            return new Flight(this, key, null, null, null, null);
+        }
+
+        String ext = extension.toLowerCase();
+        while (true) {
+            File cached = pin(key, null);
+            if (cached != null) {
+                hits.incrementAndGet();
+                return new Flight(this, key, ext, cached, null, null);
+            }
+
+            CompletableFuture<File> mine = new CompletableFuture<>();
+            CompletableFuture<File> existing = inFlight.putIfAbsent(key, mine);
+            if (existing == null) {
+                misses.incrementAndGet();
+                File part = directory.resolve(key + "." + ext + ".part").toFile();
+                return new Flight(this, key, ext, null, part, mine);
+            }
+
+            coalesced.incrementAndGet();
+            // Ожидание такой же конвертации в соседнем запросе
+            try (StageTimings.Stage stage = StageTimings.start("coalesce")) {
+                File result = pin(key, existing.get());
+                if (result != null) {
+                    return new Flight(this, key, ext, result, null, null);
+                }
+                // Успели вытеснить - пробуем заново
+            } catch (ExecutionException e) {
+                // Ведущий запрос не справился (или клиент отключился) - конвертируем сами без кэша
+                return new Flight(this, key, ext, null, null, null);
+            }
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (this) {
+            stats.put("entries", entries.size());
+            stats.put("bytes", totalBytes);
+        }
+        stats.put("maxBytes", settings.getMaxSize().toBytes());
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("coalesced", coalesced.get());
+        stats.put("evictions", evictions.get());
+        stats.put("inFlight", inFlight.size());
+        return stats;
+    }
+
+    public long hits() {
+        return hits.get();
+    }
+
+    public long misses() {
+        return misses.get();
+    }
+
+    public long coalesced() {
+        return coalesced.get();
+    }
+
+    public long evictions() {
+        return evictions.get();
+    }
+
+    public synchronized long totalBytes() {
+        return totalBytes;
+    }
+
+    // Закрепляет запись, если она в кэше (и это expected, если он задан); null - записи нет
+    private synchronized File pin(String key, File expected) {
+        File file = entries.get(key);
+        if (file == null || expected != null && !file.equals(expected)) return null;
+        if (!file.exists()) {
+            entries.remove(key);
+            return null;
+        }
+        pins.merge(key, 1, Integer::sum);
+        return file;
+    }
+
+    private synchronized void unpin(String key) {
+        Integer count = pins.get(key);
+        if (count == null) return;
+        if (count > 1) {
+            pins.put(key, count - 1);
+        } else {
+            pins.remove(key);
+            // Пока запись была закреплена, кэш мог выйти за max-size
+            evictIfNeeded();
+        }
+    }
+
+    // pinned - результат выдаётся вызывающему, запись закрепляется до Flight.close()
+    private File store(String key, String extension, File produced, boolean pinned) throws IOException {
+        Path target = directory.resolve(key + "." + extension);
+        try {
+            Files.move(produced.toPath(), target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            // Каталог кэша на другой файловой системе
+            Files.move(produced.toPath(), target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        File file = target.toFile();
+        synchronized (this) {
+            File previous = entries.put(key, file);
+            if (previous != null && !previous.equals(file)) {
+                totalBytes -= previous.length();
+            }
+            totalBytes += file.length();
+            if (pinned) pins.merge(key, 1, Integer::sum);
+            evictIfNeeded();
+        }
+        return file;
+    }
+
+    private void evictIfNeeded() {
+        long maxBytes = settings.getMaxSize().toBytes();
+        Iterator<Map.Entry<String, File>> it = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, File> entry = it.next();
+            // Закреплённый файл ещё не открыт для ответа - удалять нельзя; вытеснится после освобождения
+            if (pins.containsKey(entry.getKey())) continue;
+            File file = entry.getValue();
+            it.remove();
+            totalBytes -= file.length();
+            file.delete();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private static String removeExtension(String name) {
+        int firstDot = name.indexOf('.');
+        return firstDot == -1 ? name : name.substring(0, firstDot);
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Одна попытка получить результат из кэша или положить его туда
+    public static class Flight implements AutoCloseable {
+
+        private final ConversionCache cache;
+        private final String key;
+        private final String extension;
+        private final File cachedFile;
+        private final File partFile;
+        private final CompletableFuture<File> future;
+        private boolean done;
+        // Ключ закреплён этим Flight - снимается в close()
+        private boolean pinned;
+
+        private Flight(ConversionCache cache, String key, String extension, File cachedFile, File partFile,
+                       CompletableFuture<File> future) {
+            this.cache = cache;
+            this.key = key;
+            this.extension = extension;
+            this.cachedFile = cachedFile;
+            this.partFile = partFile;
+            this.future = future;
+            this.pinned = cachedFile != null;
+        }
+
+        public boolean isHit() {
+            return cachedFile != null;
+        }
+
+        public File cachedFile() {
+            return cachedFile;
+        }
+
+        // Переносит готовый результат в кэш; возвращает файл, который нужно отдать клиенту
+        public File commit(File produced) throws IOException {
+            if (future == null || done) return produced;
+            done = true;
+            File stored = complete(produced, true);
+            pinned = true;
+            return stored;
+        }
+
+        // Поток, который по мере чтения копирует результат в кэш (для pipe-режима и декодеров в JVM).
+        // Запись попадает в кэш только если поток дочитан до конца и конвертация завершилась успешно.
+        public InputStream tee(ConversionStream pipe) throws IOException {
+            if (future == null || done) return pipe;
+            done = true;
+            return new TeeStream(pipe, this);
+        }
+
+        private File complete(File produced, boolean pin) throws IOException {
+            try {
+                File stored = cache.store(key, extension, produced, pin);
+                future.complete(stored);
+                cache.inFlight.remove(key, future);
+                return stored;
+            } catch (IOException e) {
+                fail(e);
+                throw e;
+            }
+        }
+
+        private void fail(Throwable cause) {
+            partFile.delete();
+            future.completeExceptionally(cause);
+            cache.inFlight.remove(key, future);
+        }
+
+        // Снимает закрепление выданного файла - вызывать после того, как ответ записан
+        // (ConvertedFileResponse.releaseAfterResponse)
+        @Override
+        public void close() {
+            if (pinned) {
+                pinned = false;
+                cache.unpin(key);
+            }
+            if (future == null || done) return;
+            done = true;
+            fail(new IOException("Conversion did not complete"));
+        }
+    }
+
+    private static class TeeStream extends FilterInputStream {
+
+        private final ConversionStream pipe;
+        private final Flight flight;
+        private final OutputStream copy;
+        private boolean eof;
+
+        TeeStream(ConversionStream pipe, Flight flight) throws IOException {
+            super(pipe);
+            this.pipe = pipe;
+            this.flight = flight;
+            this.copy = new BufferedOutputStream(new FileOutputStream(flight.partFile));
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b == -1) eof = true;
+            else copy.write(b);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n == -1) eof = true;
+            else copy.write(b, off, n);
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                copy.close();
+                pipe.close();
+            } finally {
+                if (eof && pipe.succeeded()) {
+                    try {
+                        flight.complete(flight.partFile, false);
+                    } catch (IOException e) {
+                        LOGGER.log(Level.WARNING, "Could not store conversion result in cache: {0}", e.getMessage());
+                    }
+                } else {
+                    flight.fail(new IOException("Streamed conversion did not complete"));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.iskander.converter;
+
+import java.io.File;
+import java.util.function.DoubleConsumer;
+
+// Бэкенд конвертации (ffmpeg, LibreOffice, кодек внутри JVM).
+// Движки регистрируются как бины; EngineRouter выбирает движок для пары форматов по замерам.
+public interface ConversionEngine {
+
+    // Уникальное имя - ключ статистики маршрутизатора
+    String name();
+
+    // Порядок, пока для пары форматов нет замеров: меньше - раньше
+    int priority();
+
+    // Форматы - расширения без точки в нижнем регистре
+    boolean supports(MediaKind kind, String sourceFormat, String targetFormat);
+
+    // Формат результата определяется расширением outputFile; progress может быть null
+    boolean convert(File inputFile, File outputFile, DoubleConsumer progress) throws Exception;
+}
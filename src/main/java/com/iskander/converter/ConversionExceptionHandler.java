@@ -0,0 +1,43 @@
+package com.iskander.converter;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+@RestControllerAdvice
+public class ConversionExceptionHandler {
+
+    private static final Logger LOGGER = Logger.getLogger(ConversionExceptionHandler.class.getName());
+
+    private final ConversionMetrics metrics;
+
+    public ConversionExceptionHandler(ConversionMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @ExceptionHandler(ConversionRejectedException.class)
+    public ResponseEntity<Void> handleRejected(ConversionRejectedException e) {
+        LOGGER.log(Level.WARNING, "Conversion rejected: {0}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .build();
+    }
+
+    @ExceptionHandler(ConversionTooCostlyException.class)
+    public ResponseEntity<Void> handleTooCostly(ConversionTooCostlyException e) {
+        LOGGER.log(Level.WARNING, "Conversion rejected: {0}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+    }
+
+    @ExceptionHandler(UnsupportedInputException.class)
+    public ResponseEntity<Void> handleUnsupportedInput(UnsupportedInputException e) {
+        LOGGER.log(Level.WARNING, "Input rejected: {0}", e.getMessage());
+        metrics.inputRejected(e.getKind());
+        return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE).build();
+    }
+}
@@ -0,0 +1,127 @@
+package com.iskander.converter;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.io.File;
+import java.time.Instant;
+
+// Фоновая конвертация: состояние, прогресс и файлы задачи
+public class ConversionJob {
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    private final String id;
+    private final MediaKind kind;
+    private final String format;
+    private final String mimeType;
+    private final String filename;
+    private final WorkArea.Allocation work;
+    private final File inputFile;
+    private final File outputFile;
+    private final Instant createdAt = Instant.now();
+
+    private volatile Status status = Status.QUEUED;
+    private volatile double progress;
+    private volatile String error;
+    private volatile Instant finishedAt;
+
+    public ConversionJob(String id, MediaKind kind, String format, String mimeType, String filename,
+                         WorkArea.Allocation work, File inputFile, File outputFile) {
+        this.id = id;
+        this.kind = kind;
+        this.format = format;
+        this.mimeType = mimeType;
+        this.filename = filename;
+        this.work = work;
+        this.inputFile = inputFile;
+        this.outputFile = outputFile;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public MediaKind getKind() {
+        return kind;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    // Процент выполнения, округлённый до десятых
+    public double getProgress() {
+        return Math.round(progress * 1000) / 10.0;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    @JsonIgnore
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    // Рабочий каталог задачи - живёт до удаления задачи
+    @JsonIgnore
+    public WorkArea.Allocation getWork() {
+        return work;
+    }
+
+    @JsonIgnore
+    public File getInputFile() {
+        return inputFile;
+    }
+
+    @JsonIgnore
+    public File getOutputFile() {
+        return outputFile;
+    }
+
+    @JsonIgnore
+    public boolean isFinished() {
+        return status == Status.COMPLETED || status == Status.FAILED;
+    }
+
+    void setProgress(double progress) {
+        this.progress = progress;
+    }
+
+    void markRunning() {
+        status = Status.RUNNING;
+    }
+
+    void markCompleted() {
+        progress = 1;
+        finishedAt = Instant.now();
+        status = Status.COMPLETED;
+    }
+
+    void markFailed(String error) {
+        this.error = error;
+        finishedAt = Instant.now();
+        status = Status.FAILED;
+    }
+}
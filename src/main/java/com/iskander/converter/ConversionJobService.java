@@ -0,0 +1,326 @@
+package com.iskander.converter;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.function.DoubleConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Асинхронные задачи конвертации: запрос сразу получает id задачи,
+// а клиент потом опрашивает статус и забирает результат.
+@Component
+public class ConversionJobService {
+
+    private static final Logger LOGGER = Logger.getLogger(ConversionJobService.class.getName());
+
+    @FunctionalInterface
+    public interface JobTask {
+        boolean convert(File inputFile, File outputFile, DoubleConsumer progress) throws Exception;
+    }
+
+    private final ConverterProperties.Jobs settings;
+    private final ConverterProperties.Scheduler schedulerSettings;
+    private final ConversionScheduler scheduler;
+    private final WorkArea workArea;
+    private final CostEstimator costEstimator;
+    private final ConverterProperties.Cluster clusterSettings;
+    private final JobQueue queue;
+    private final ConcurrentHashMap<String, ConversionJob> jobs = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, JobRun> runs = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor executor;
+
+    public ConversionJobService(ConverterProperties properties, ConversionScheduler scheduler, WorkArea workArea,
+                                CostEstimator costEstimator, JobQueue queue) {
+        this.settings = properties.getJobs();
+        this.schedulerSettings = properties.getScheduler();
+        this.scheduler = scheduler;
+        this.workArea = workArea;
+        this.costEstimator = costEstimator;
+        this.clusterSettings = properties.getCluster();
+        this.queue = queue;
+
+        // Ожидающие задачи упорядочены так же, как очередь планировщика: по оценке стоимости со старением.
+        // PriorityBlockingQueue не ограничена - лимит maxQueued проверяется при постановке
+        // Потоки задач ждут слот и внешний процесс - виртуальные
+        this.executor = new ThreadPoolExecutor(
+                settings.getWorkers(), settings.getWorkers(), 0L, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(settings.getMaxQueued(),
+                        Comparator.comparingDouble(runnable -> ((JobRun) runnable).priority)),
+                Thread.ofVirtual().name("conversion-job-", 1).factory());
+    }
+
+    @FunctionalInterface
+    private interface InputWriter {
+        void writeTo(File inputFile) throws IOException;
+    }
+
+    public ConversionJob submit(MediaKind kind, MultipartFile file, String format, String mimeType,
+                                String filename, String inputExtension, JobTask task) throws IOException {
+        // Загрузку копируем сразу: временный файл multipart удаляется по окончании запроса
+        return submit(kind, file.getSize(), file::transferTo, null, format, mimeType, filename, inputExtension, task);
+    }
+
+    // Завершённая загрузка по частям переносится в каталог задачи без копирования;
+    // если очередь переполнена, файл возвращается на место и загрузку можно отправить позже
+    public ConversionJob submit(MediaKind kind, UploadService uploads, ChunkedUpload upload, String format,
+                                String mimeType, String filename, String inputExtension, JobTask task) throws IOException {
+        ConversionJob job = submit(kind, upload.getLength(), inputFile -> uploads.moveTo(upload, inputFile),
+                inputFile -> uploads.restore(upload, inputFile), format, mimeType, filename, inputExtension, task);
+        uploads.delete(upload);
+        return job;
+    }
+
+    private ConversionJob submit(MediaKind kind, long size, InputWriter input, InputWriter rollback, String format,
+                                 String mimeType, String filename, String inputExtension, JobTask task) throws IOException {
+        String id = UUID.randomUUID().toString();
+        if (isApiNode()) {
+            return enqueue(id, kind, input, rollback, format, mimeType, filename, inputExtension);
+        }
+        // Каталог задачи занимает место в квоте рабочей области до удаления задачи
+        WorkArea.Allocation work = workArea.allocate(kind, size);
+        File inputFile = work.file("input" + inputExtension);
+        File outputFile = work.file("output." + format.toLowerCase());
+
+        try (StageTimings.Stage stage = StageTimings.start("transfer")) {
+            input.writeTo(inputFile);
+        } catch (IOException e) {
+            work.close();
+            throw e;
+        }
+
+        ConversionJob job = new ConversionJob(id, kind, format, mimeType, filename, work, inputFile, outputFile);
+        try {
+            // Слишком дорогая задача отклоняется до постановки (413)
+            CostEstimator.Estimate estimate = costEstimator.estimate(kind, inputFile, format);
+            synchronized (executor) {
+                if (executor.getQueue().size() >= settings.getMaxQueued()) {
+                    throw new ConversionRejectedException(kind, schedulerSettings.get(kind).getRetryAfter(),
+                            "too many queued " + kind.name().toLowerCase() + " jobs");
+                }
+                JobRun jobRun = new JobRun(scheduler.priority(estimate), () -> run(job, task, estimate));
+                jobs.put(id, job);
+                runs.put(id, jobRun);
+                executor.execute(jobRun);
+            }
+        } catch (ConversionRejectedException | ConversionTooCostlyException | RejectedExecutionException e) {
+            jobs.remove(id);
+            runs.remove(id);
+            if (rollback != null) {
+                rollback.writeTo(inputFile);
+            }
+            work.close();
+            if (e instanceof RejectedExecutionException) {
+                throw new ConversionRejectedException(kind, schedulerSettings.get(kind).getRetryAfter(),
+                        "job executor is shut down");
+            }
+            throw e;
+        }
+        return job;
+    }
+
+    // API-узел: вход кладётся в общий каталог, задачу выполнит воркер с нужным инструментом
+    private ConversionJob enqueue(String id, MediaKind kind, InputWriter input, InputWriter rollback, String format,
+                                  String mimeType, String filename, String inputExtension) throws IOException {
+        if (activeCount() >= settings.getMaxQueued()) {
+            throw new ConversionRejectedException(kind, schedulerSettings.get(kind).getRetryAfter(),
+                    "too many queued " + kind.name().toLowerCase() + " jobs");
+        }
+        File directory = queue.directory(id);
+        String inputName = "input" + inputExtension;
+        String outputName = "output." + format.toLowerCase();
+        File inputFile = new File(directory, inputName);
+        try {
+            input.writeTo(inputFile);
+            // Слишком дорогая задача отклоняется до постановки (413)
+            QueuedJob queued = new QueuedJob(id, kind, format, inputName, outputName);
+            queued.setEstimatedSeconds(costEstimator.estimate(kind, inputFile, format).getSeconds());
+            queue.enqueue(queued);
+        } catch (IOException | ConversionTooCostlyException e) {
+            if (rollback != null && inputFile.exists()) {
+                rollback.writeTo(inputFile);
+            }
+            queue.delete(id);
+            throw e;
+        }
+
+        ConversionJob job = new ConversionJob(id, kind, format, mimeType, filename, null,
+                inputFile, new File(directory, outputName));
+        jobs.put(id, job);
+        return job;
+    }
+
+    public ConversionJob get(String id) {
+        ConversionJob job = jobs.get(id);
+        if (job != null && job.getWork() == null) {
+            refresh(job);
+        }
+        return job;
+    }
+
+    // Состояние задачи из очереди - его пишет воркер. Под блокировкой задачи: устаревшее чтение
+    // в соседнем потоке не должно вернуть завершённую задачу в RUNNING
+    private void refresh(ConversionJob job) {
+        synchronized (job) {
+            if (job.isFinished()) return;
+            QueuedJobState state = queue.state(job.getId());
+            if (state == null) return;
+            switch (state.getStatus()) {
+                case RUNNING:
+                    job.markRunning();
+                    job.setProgress(state.getProgress());
+                    break;
+                case COMPLETED:
+                    job.markCompleted();
+                    break;
+                case FAILED:
+                    job.markFailed(state.getError());
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    public long activeCount() {
+        long active = 0;
+        for (ConversionJob job : jobs.values()) {
+            if (job.getWork() == null) refresh(job);
+            if (!job.isFinished()) active++;
+        }
+        return active;
+    }
+
+    // Удаляет задачу вместе с файлами. Невыполненная задача отменяется: ожидающая снимается с очереди,
+    // у выполняющейся прерывается поток и сторож процессов убивает ffmpeg/soffice, файлы удаляет сам поток задачи
+    public void delete(ConversionJob job) {
+        jobs.remove(job.getId());
+        if (job.getWork() == null) {
+            // Воркер увидит удаление при следующей публикации прогресса и остановит процесс
+            queue.delete(job.getId());
+            return;
+        }
+        JobRun jobRun = runs.get(job.getId());
+        if (jobRun == null || jobRun.cancel()) {
+            if (jobRun != null) executor.remove(jobRun);
+            runs.remove(job.getId());
+            job.getWork().close();
+        } else {
+            LOGGER.log(Level.INFO, "Cancelling running conversion job {0}", job.getId());
+        }
+    }
+
+    private void run(ConversionJob job, JobTask task, CostEstimator.Estimate estimate) {
+        job.markRunning();
+        try (ConversionScheduler.Slot slot = scheduler.acquireWaiting(job.getKind(), estimate)) {
+            if (task.convert(job.getInputFile(), job.getOutputFile(), job::setProgress)) {
+                slot.succeeded();
+                job.markCompleted();
+            } else {
+                job.markFailed("Conversion failed");
+            }
+        } catch (InterruptedException e) {
+            job.markFailed(jobs.containsKey(job.getId()) ? "Interrupted" : "Cancelled");
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error in conversion job {0}: {1}", new Object[]{job.getId(), e.getMessage()});
+            job.markFailed(e.getMessage());
+        } finally {
+            job.getInputFile().delete();
+            if (job.getStatus() != ConversionJob.Status.COMPLETED) {
+                // Недописанный результат не отдаём
+                job.getOutputFile().delete();
+            }
+            runs.remove(job.getId());
+            if (!jobs.containsKey(job.getId())) {
+                // Задачу удалили во время выполнения
+                job.getWork().close();
+            }
+        }
+    }
+
+    // Удаление результатов, которые хранятся дольше converter.jobs.retention
+    @Scheduled(fixedDelayString = "${converter.jobs.sweep-interval:60000}")
+    public void expireFinishedJobs() {
+        Instant threshold = Instant.now().minus(settings.getRetention());
+        for (ConversionJob job : jobs.values()) {
+            if (job.getWork() == null) refresh(job);
+            if (job.isFinished() && job.getFinishedAt().isBefore(threshold)) {
+                LOGGER.log(Level.INFO, "Expiring conversion job {0}", job.getId());
+                delete(job);
+            }
+        }
+    }
+
+    // Сколько ещё результат завершённой задачи будет храниться - срок кэширования его файлов у клиента
+    public Duration remainingRetention(ConversionJob job) {
+        if (job.getFinishedAt() == null) return Duration.ZERO;
+        Duration remaining = Duration.between(Instant.now(), job.getFinishedAt().plus(settings.getRetention()));
+        return remaining.isNegative() ? Duration.ZERO : remaining;
+    }
+
+    // Задачи упавших воркеров возвращаются в очередь; проверяют API-узлы, воркеры могут быть все недоступны
+    @Scheduled(fixedDelayString = "${converter.cluster.requeue-interval:10000}")
+    public void requeueAbandonedJobs() {
+        if (!isApiNode()) return;
+        int requeued = queue.requeueAbandoned(clusterSettings.getHeartbeatTimeout());
+        if (requeued > 0) {
+            LOGGER.log(Level.WARNING, "Requeued {0} jobs of unresponsive workers", requeued);
+        }
+    }
+
+    private boolean isApiNode() {
+        return clusterSettings.getRole() == ConverterProperties.Cluster.Role.API;
+    }
+
+    // Задача в очереди исполнителя с ключом порядка из ConversionScheduler.priority
+    private static class JobRun implements Runnable {
+
+        private final double priority;
+        private final Runnable task;
+        private Thread thread;
+        private boolean cancelled;
+
+        JobRun(double priority, Runnable task) {
+            this.priority = priority;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (cancelled) return;
+                thread = Thread.currentThread();
+            }
+            try {
+                task.run();
+            } finally {
+                synchronized (this) {
+                    thread = null;
+                }
+            }
+        }
+
+        // true - задача ещё не начиналась и уже не начнётся; иначе её поток прерван
+        synchronized boolean cancel() {
+            cancelled = true;
+            if (thread == null) return true;
+            thread.interrupt();
+            return false;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,174 @@
+package com.iskander.converter;
+
+import io.micrometer.core.instrument.*;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// Метрики конвертаций для Actuator (/actuator/metrics, /actuator/prometheus):
+// время по паре форматов, объём входа/выхода, стоимость внешних процессов, очереди и кэш.
+@Component
+public class ConversionMetrics {
+
+    // Ограничиваем значения тегов известными форматами, чтобы не плодить временные ряды
+    private static final Set<String> KNOWN_FORMATS = Set.of(
+            "jpg", "jpeg", "png", "bmp", "tiff", "webp",
+            "mp3", "wav", "aac", "flac", "ogg", "m4a",
+            "mp4", "mkv", "mov", "avi", "webm", "hls", "dash", "cmaf",
+            "pdf", "docx", "odt", "doc", "rtf", "txt");
+
+    private final MeterRegistry registry;
+
+    public ConversionMetrics(MeterRegistry registry, ConversionScheduler scheduler, ConversionCache cache,
+                             ConversionJobService jobService, WorkArea workArea, ProcessSupervisor supervisor) {
+        this.registry = registry;
+
+        for (MediaKind kind : MediaKind.values()) {
+            Tags tags = Tags.of("kind", tag(kind));
+            Gauge.builder("converter.scheduler.running", scheduler, s -> s.running(kind))
+                    .tags(tags).description("Conversions holding a slot").register(registry);
+            Gauge.builder("converter.scheduler.queued", scheduler, s -> s.queued(kind))
+                    .tags(tags).description("Conversions waiting for a slot").register(registry);
+            FunctionCounter.builder("converter.scheduler.rejected", scheduler, s -> s.rejected(kind))
+                    .tags(tags).description("Conversions rejected with 503").register(registry);
+        }
+
+        FunctionCounter.builder("converter.cache.requests", cache, c -> c.hits())
+                .tag("result", "hit").register(registry);
+        FunctionCounter.builder("converter.cache.requests", cache, c -> c.misses())
+                .tag("result", "miss").register(registry);
+        FunctionCounter.builder("converter.cache.requests", cache, c -> c.coalesced())
+                .tag("result", "coalesced").register(registry);
+        FunctionCounter.builder("converter.cache.evictions", cache, c -> c.evictions()).register(registry);
+        Gauge.builder("converter.cache.size", cache, c -> c.totalBytes())
+                .baseUnit("bytes").register(registry);
+
+        Gauge.builder("converter.jobs.active", jobService, j -> j.activeCount())
+                .description("Queued and running asynchronous jobs").register(registry);
+
+        Gauge.builder("converter.work.reserved", workArea, w -> w.reservedBytes(false))
+                .tag("volume", "disk").baseUnit("bytes").register(registry);
+        Gauge.builder("converter.work.reserved", workArea, w -> w.reservedBytes(true))
+                .tag("volume", "memory").baseUnit("bytes").register(registry);
+        FunctionCounter.builder("converter.work.rejected", workArea, w -> w.rejected())
+                .description("Conversions rejected because the work area quota was exhausted").register(registry);
+        FunctionCounter.builder("converter.work.orphans", workArea, w -> w.orphansRemoved())
+                .description("Orphaned work directories removed by the sweeper").register(registry);
+
+        Gauge.builder("converter.process.running", supervisor, p -> p.running())
+                .description("External processes under supervision").register(registry);
+        FunctionCounter.builder("converter.process.killed", supervisor, p -> p.timedOut())
+                .tag("reason", "timeout").register(registry);
+        FunctionCounter.builder("converter.process.killed", supervisor, p -> p.cancelled())
+                .tag("reason", "cancelled").register(registry);
+    }
+
+    public Recording start(MediaKind kind, String sourceFilename, String targetFormat, long inputBytes) {
+        return new Recording(kind, formatTag(sourceFilename), formatTag(targetFormat), inputBytes);
+    }
+
+    // Стоимость одного запуска внешнего инструмента
+    public void recordProcess(String tool, long wallNanos, Duration cpuTime, int exitCode) {
+        Timer.builder("converter.process.wall")
+                .tag("tool", tool)
+                .register(registry)
+                .record(wallNanos, TimeUnit.NANOSECONDS);
+        if (cpuTime != null) {
+            Timer.builder("converter.process.cpu")
+                    .tag("tool", tool)
+                    .register(registry)
+                    .record(cpuTime);
+        }
+        if (exitCode != 0) {
+            Counter.builder("converter.process.failures")
+                    .tag("tool", tool)
+                    .tag("exit_code", String.valueOf(exitCode))
+                    .register(registry)
+                    .increment();
+        }
+    }
+
+    // Загрузка отклонена InputSniffer до запуска процесса
+    public void inputRejected(MediaKind kind) {
+        Counter.builder("converter.input.rejected")
+                .tag("kind", tag(kind))
+                .description("Uploads rejected with 415 because their content was not recognised")
+                .register(registry)
+                .increment();
+    }
+
+    static String formatTag(String filenameOrFormat) {
+        if (filenameOrFormat == null) return "unknown";
+        String format = filenameOrFormat.substring(filenameOrFormat.lastIndexOf('.') + 1).toLowerCase();
+        return KNOWN_FORMATS.contains(format) ? format : "other";
+    }
+
+    private static String tag(MediaKind kind) {
+        return kind.name().toLowerCase();
+    }
+
+    // Замер одного запроса; без явного success/cacheHit при закрытии считается неуспешным
+    public class Recording implements AutoCloseable {
+
+        private final MediaKind kind;
+        private final String source;
+        private final String target;
+        private final long inputBytes;
+        private final long startTime = System.nanoTime();
+        private boolean finished;
+
+        private Recording(MediaKind kind, String source, String target, long inputBytes) {
+            this.kind = kind;
+            this.source = source;
+            this.target = target;
+            this.inputBytes = inputBytes;
+        }
+
+        public void success(long outputBytes) {
+            finish("success", outputBytes);
+        }
+
+        public void cacheHit(long outputBytes) {
+            finish("cache_hit", outputBytes);
+        }
+
+        // Для pipe-режима: замер завершится вместе с потоком ответа
+        public AutoCloseable completeWith(ConversionStream pipe) {
+            finished = true;
+            return () -> record(pipe.succeeded() ? "success" : "failure", pipe.bytesRead());
+        }
+
+        @Override
+        public void close() {
+            finish("failure", 0);
+        }
+
+        private void finish(String outcome, long outputBytes) {
+            if (finished) return;
+            finished = true;
+            record(outcome, outputBytes);
+        }
+
+        private void record(String outcome, long outputBytes) {
+            Tags tags = Tags.of("kind", tag(kind), "source", source, "target", target);
+            Timer.builder("converter.conversion")
+                    .description("End-to-end conversion time per format pair")
+                    .tags(tags)
+                    .tag("outcome", outcome)
+                    .register(registry)
+                    .record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+            DistributionSummary.builder("converter.conversion.input")
+                    .baseUnit("bytes").tags(tags)
+                    .register(registry)
+                    .record(inputBytes);
+            if (outputBytes > 0) {
+                DistributionSummary.builder("converter.conversion.output")
+                        .baseUnit("bytes").tags(tags)
+                        .register(registry)
+                        .record(outputBytes);
+            }
+        }
+    }
+}
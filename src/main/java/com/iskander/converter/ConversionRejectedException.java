@@ -0,0 +1,22 @@
+package com.iskander.converter;
+
+// Очередь конвертаций переполнена - клиенту отвечаем 503 с Retry-After
+public class ConversionRejectedException extends RuntimeException {
+
+    private final MediaKind kind;
+    private final long retryAfterSeconds;
+
+    public ConversionRejectedException(MediaKind kind, long retryAfterSeconds, String message) {
+        super(message);
+        this.kind = kind;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public MediaKind getKind() {
+        return kind;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
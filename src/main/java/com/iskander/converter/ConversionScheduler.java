@@ -0,0 +1,219 @@
+package com.iskander.converter;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Ограничение числа одновременных конвертаций по типам (bulkhead):
+// всплеск видео не должен отнимать процессор у картинок и аудио.
+// Сверх лимита запросы ждут в ограниченной очереди, при её переполнении - сразу отказ.
+// Очередь упорядочена по оценке стоимости (короткие первыми) со старением: ожидание уменьшает
+// приоритетную стоимость на agingRate секунд в секунду, поэтому длинная конвертация не ждёт бесконечно.
+@Component
+public class ConversionScheduler {
+
+    private static final long ORIGIN = System.nanoTime();
+
+    private final Map<MediaKind, Bulkhead> bulkheads = new EnumMap<>(MediaKind.class);
+    private final double agingRate;
+
+    public ConversionScheduler(ConverterProperties properties) {
+        this.agingRate = properties.getScheduler().getAgingRate();
+        for (MediaKind kind : MediaKind.values()) {
+            bulkheads.put(kind, new Bulkhead(this, kind, properties.getScheduler().get(kind)));
+        }
+    }
+
+    // Ключ очереди для ожидания, начатого сейчас: меньше - раньше.
+    // Стоимость с учётом старения: cost - agingRate * (now - enqueued); слагаемое с now у всех ожидающих
+    // общее, поэтому порядок задаёт неизменный ключ cost + agingRate * enqueued
+    public double priority(CostEstimator.Estimate estimate) {
+        double cost = estimate == null ? 0 : estimate.getSeconds();
+        return cost + agingRate * (System.nanoTime() - ORIGIN) / 1e9;
+    }
+
+    // Слот нужно закрыть, когда внешний процесс завершён (для pipe-режима - когда ответ дописан).
+    // Без оценки стоимости запрос встаёт в очередь как бесплатный
+    public Slot acquire(MediaKind kind) throws InterruptedException {
+        return acquire(kind, null);
+    }
+
+    // По закрытии слота после succeeded() фактическое время уточняет модель стоимости
+    public Slot acquire(MediaKind kind, CostEstimator.Estimate estimate) throws InterruptedException {
+        try (StageTimings.Stage stage = StageTimings.start("queue", kind.name().toLowerCase())) {
+            return bulkheads.get(kind).acquire(estimate, true);
+        }
+    }
+
+    // Для фоновых задач: ждать без ограничения очереди (их число ограничено пулом задач)
+    public Slot acquireWaiting(MediaKind kind) throws InterruptedException {
+        return acquireWaiting(kind, null);
+    }
+
+    public Slot acquireWaiting(MediaKind kind, CostEstimator.Estimate estimate) throws InterruptedException {
+        try (StageTimings.Stage stage = StageTimings.start("queue", kind.name().toLowerCase())) {
+            return bulkheads.get(kind).acquire(estimate, false);
+        }
+    }
+
+    public int running(MediaKind kind) {
+        return bulkheads.get(kind).running.get();
+    }
+
+    public int queued(MediaKind kind) {
+        return bulkheads.get(kind).waiting.get();
+    }
+
+    public int rejected(MediaKind kind) {
+        return bulkheads.get(kind).rejected.get();
+    }
+
+    private static class Bulkhead {
+
+        private final ConversionScheduler scheduler;
+        private final MediaKind kind;
+        private final ConverterProperties.Bulkhead settings;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final PriorityQueue<Waiter> queue = new PriorityQueue<>(
+                Comparator.comparingDouble((Waiter waiter) -> waiter.priority).thenComparingLong(waiter -> waiter.sequence));
+        private int available;
+        private long sequence;
+        private final AtomicInteger waiting = new AtomicInteger();
+        private final AtomicInteger running = new AtomicInteger();
+        private final AtomicInteger rejected = new AtomicInteger();
+
+        Bulkhead(ConversionScheduler scheduler, MediaKind kind, ConverterProperties.Bulkhead settings) {
+            this.scheduler = scheduler;
+            this.kind = kind;
+            this.settings = settings;
+            this.available = settings.getMaxConcurrent();
+        }
+
+        // bounded - ограничение очереди и время ожидания из настроек; иначе ждать сколько потребуется
+        Slot acquire(CostEstimator.Estimate estimate, boolean bounded) throws InterruptedException {
+            lock.lockInterruptibly();
+            try {
+                if (available > 0 && queue.isEmpty()) {
+                    available--;
+                    running.incrementAndGet();
+                    return new Slot(this, estimate);
+                }
+                if (bounded && waiting.get() >= settings.getQueueCapacity()) {
+                    throw reject("queue is full");
+                }
+
+                Waiter waiter = new Waiter(scheduler.priority(estimate), sequence++, lock.newCondition());
+                queue.add(waiter);
+                waiting.incrementAndGet();
+                try {
+                    long remaining = TimeUnit.MILLISECONDS.toNanos(settings.getQueueTimeout());
+                    while (!waiter.granted) {
+                        if (!bounded) {
+                            waiter.signal.await();
+                        } else if (remaining <= 0) {
+                            queue.remove(waiter);
+                            throw reject("timed out waiting in queue");
+                        } else {
+                            remaining = waiter.signal.awaitNanos(remaining);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    if (waiter.granted) {
+                        // Слот уже передан этому потоку - отдаём следующему
+                        release();
+                    } else {
+                        queue.remove(waiter);
+                    }
+                    throw e;
+                } finally {
+                    waiting.decrementAndGet();
+                }
+                return new Slot(this, estimate);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private ConversionRejectedException reject(String reason) {
+            rejected.incrementAndGet();
+            return new ConversionRejectedException(kind, settings.getRetryAfter(),
+                    kind.name().toLowerCase() + " conversion " + reason);
+        }
+
+        // Освободившийся слот сразу передаётся самому дешёвому ожидающему
+        void release() {
+            lock.lock();
+            try {
+                Waiter next = queue.poll();
+                if (next != null) {
+                    next.granted = true;
+                    next.signal.signal();
+                } else {
+                    running.decrementAndGet();
+                    available++;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static class Waiter {
+
+        private final double priority;
+        private final long sequence;
+        private final Condition signal;
+        private boolean granted;
+
+        Waiter(double priority, long sequence, Condition signal) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.signal = signal;
+        }
+    }
+
+    public static class Slot implements AutoCloseable {
+
+        private final Bulkhead bulkhead;
+        private final CostEstimator.Estimate estimate;
+        private final long startTime = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+        private volatile boolean succeeded;
+
+        private Slot(Bulkhead bulkhead, CostEstimator.Estimate estimate) {
+            this.bulkhead = bulkhead;
+            this.estimate = estimate;
+        }
+
+        // Конвертация удалась - её время пойдёт в модель стоимости (неудачи часто быстрые и оценку бы занизили)
+        public void succeeded() {
+            succeeded = true;
+        }
+
+        // Для потоковой отдачи: слот закрывается вместе с потоком, успех берётся из него
+        public AutoCloseable completeWith(ConversionStream stream) {
+            return () -> {
+                if (stream.succeeded()) succeeded();
+                close();
+            };
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                bulkhead.release();
+                if (estimate != null && succeeded) {
+                    estimate.completed(System.nanoTime() - startTime);
+                }
+            }
+        }
+    }
+}
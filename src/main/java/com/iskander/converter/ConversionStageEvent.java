@@ -0,0 +1,29 @@
+package com.iskander.converter;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// Этап конвертации в Java Flight Recorder. Запись в проде:
+// jcmd <pid> JFR.start name=converter settings=profile, затем jfr print --events com.iskander.converter.ConversionStage
+@Name("com.iskander.converter.ConversionStage")
+@Label("Conversion Stage")
+@Category("Converter")
+@Description("One timed stage of a conversion request: upload, transfer, queue, spawn, process, response and so on")
+@StackTrace(false)
+class ConversionStageEvent extends Event {
+
+    @Label("Stage")
+    String stage;
+
+    // Инструмент или движок этапа, например "FFmpeg video"
+    @Label("Detail")
+    String detail;
+
+    // Путь HTTP-запроса; пусто для фоновых задач
+    @Label("Request")
+    String request;
+}
@@ -0,0 +1,47 @@
+package com.iskander.converter;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Результат конвертации, который производится по мере чтения (процесс ffmpeg, декодер в JVM).
+// После close() известно, успешно ли завершилась конвертация; тогда же освобождаются связанные ресурсы.
+public abstract class ConversionStream extends InputStream {
+
+    private static final Logger LOGGER = Logger.getLogger(ConversionStream.class.getName());
+
+    private final String label;
+    private final List<AutoCloseable> onClose = new ArrayList<>();
+    protected long bytesRead;
+    protected boolean succeeded;
+
+    protected ConversionStream(String label) {
+        this.label = label;
+    }
+
+    // Ресурс (например, слот планировщика), который освобождается вместе с конвертацией
+    public void releaseOnClose(AutoCloseable resource) {
+        onClose.add(resource);
+    }
+
+    // true, если конвертация завершилась успешно (известно после close())
+    public boolean succeeded() {
+        return succeeded;
+    }
+
+    public long bytesRead() {
+        return bytesRead;
+    }
+
+    protected void release() {
+        for (AutoCloseable resource : onClose) {
+            try {
+                resource.close();
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Error while releasing {0} resources: {1}", new Object[]{label, e.getMessage()});
+            }
+        }
+    }
+}
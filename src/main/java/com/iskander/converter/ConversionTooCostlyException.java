@@ -0,0 +1,30 @@
+package com.iskander.converter;
+
+// Оценка стоимости входа выше потолка converter.scheduler.<kind>.max-cost - клиенту отвечаем 413:
+// повтор того же запроса не поможет
+public class ConversionTooCostlyException extends RuntimeException {
+
+    private final MediaKind kind;
+    private final double estimatedSeconds;
+    private final long maxSeconds;
+
+    public ConversionTooCostlyException(MediaKind kind, double estimatedSeconds, long maxSeconds) {
+        super(kind.name().toLowerCase() + " conversion estimated at " + Math.round(estimatedSeconds)
+                + " s exceeds the limit of " + maxSeconds + " s");
+        this.kind = kind;
+        this.estimatedSeconds = estimatedSeconds;
+        this.maxSeconds = maxSeconds;
+    }
+
+    public MediaKind getKind() {
+        return kind;
+    }
+
+    public double getEstimatedSeconds() {
+        return estimatedSeconds;
+    }
+
+    public long getMaxSeconds() {
+        return maxSeconds;
+    }
+}
@@ -0,0 +1,277 @@
+package com.iskander.converter;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.DoubleConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Воркер (converter.cluster.role=worker): забирает фоновые задачи из JobQueue и выполняет их через EngineRouter.
+// Берёт только типы задач, для которых на машине есть инструмент, и не больше workerThreads одновременно.
+@Component
+public class ConversionWorker {
+
+    private static final Logger LOGGER = Logger.getLogger(ConversionWorker.class.getName());
+
+    // Прогресс в общее хранилище - не чаще раза в секунду
+    private static final long PROGRESS_INTERVAL_MILLIS = 1000;
+
+    private final ConverterProperties.Cluster settings;
+    private final JobQueue queue;
+    private final EngineRouter router;
+    private final ConversionScheduler scheduler;
+    private final CostEstimator costEstimator;
+    private final AtomicInteger running = new AtomicInteger();
+    // Выполняющиеся задачи по id - heartbeat проверяет, не удалили ли их
+    private final ConcurrentHashMap<String, RunningJob> active = new ConcurrentHashMap<>();
+    private String workerId;
+    private List<String> tools = List.of();
+    private Set<MediaKind> kinds = EnumSet.noneOf(MediaKind.class);
+    private ExecutorService executor;
+
+    public ConversionWorker(ConverterProperties properties, JobQueue queue, EngineRouter router,
+                            ConversionScheduler scheduler, CostEstimator costEstimator) {
+        this.settings = properties.getCluster();
+        this.queue = queue;
+        this.router = router;
+        this.scheduler = scheduler;
+        this.costEstimator = costEstimator;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (settings.getRole() != ConverterProperties.Cluster.Role.WORKER) return;
+
+        workerId = settings.getWorkerId() != null ? settings.getWorkerId() : defaultWorkerId();
+        tools = detectTools();
+        for (MediaKind kind : settings.getKinds()) {
+            if (tools.contains(requiredTool(kind))) {
+                kinds.add(kind);
+            } else {
+                LOGGER.log(Level.WARNING, "Worker cannot take {0} jobs: {1} is not available",
+                        new Object[]{kind, requiredTool(kind)});
+            }
+        }
+        LOGGER.log(Level.INFO, "Worker {0} started with tools {1}, kinds {2}, capacity {3}",
+                new Object[]{workerId, tools, kinds, settings.getWorkerThreads()});
+        heartbeat();
+
+        executor = Executors.newFixedThreadPool(settings.getWorkerThreads(),
+                Thread.ofVirtual().name("conversion-worker-", 1).factory());
+        for (int i = 0; i < settings.getWorkerThreads(); i++) {
+            executor.execute(this::poll);
+        }
+    }
+
+    // Объявление о себе: по нему API-узлы видят мощность кластера и находят упавшие воркеры.
+    // Заодно - отмена удалённых задач: прогресс сообщают не все движки (soffice молчит до конца),
+    // поэтому удаление замечается здесь, а не только при публикации прогресса
+    @Scheduled(fixedDelayString = "${converter.cluster.heartbeat-interval:5000}")
+    public void heartbeat() {
+        cancelDeleted();
+        if (workerId == null) return;
+        WorkerInfo info = new WorkerInfo();
+        info.setId(workerId);
+        info.setTools(tools);
+        info.setKinds(new ArrayList<>(kinds));
+        info.setCapacity(settings.getWorkerThreads());
+        info.setRunning(running.get());
+        info.setHeartbeat(System.currentTimeMillis());
+        try {
+            queue.advertise(info);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not advertise worker {0}: {1}", new Object[]{workerId, e.getMessage()});
+        }
+    }
+
+    // Каталога задачи нет - её удалили на API-узле (ошибка чтения state.json отменой не считается)
+    private void cancelDeleted() {
+        for (RunningJob run : active.values()) {
+            if (!queue.exists(run.id)) {
+                LOGGER.log(Level.INFO, "Job {0} was deleted, stopping it", run.id);
+                run.cancel();
+            }
+        }
+    }
+
+    // Каждый поток берёт следующую задачу только после завершения предыдущей - так соблюдается capacity
+    private void poll() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                QueuedJob job = kinds.isEmpty() ? null : queue.claim(workerId, kinds);
+                if (job == null) {
+                    Thread.sleep(settings.getPollInterval().toMillis());
+                    continue;
+                }
+                execute(job);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Error while polling the job queue: {0}", e.getMessage());
+                try {
+                    Thread.sleep(settings.getPollInterval().toMillis());
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    void execute(QueuedJob job) throws IOException, InterruptedException {
+        running.incrementAndGet();
+        File directory = queue.directory(job.getId());
+        File inputFile = new File(directory, job.getInputName());
+        File outputFile = new File(directory, job.getOutputName());
+        LOGGER.log(Level.INFO, "Worker {0} took {1} job {2}", new Object[]{workerId, job.getKind(), job.getId()});
+        RunningJob run = new RunningJob(job.getId(), Thread.currentThread());
+        AtomicBoolean cancelled = run.cancelled;
+        try {
+            if (!publish(job, ConversionJob.Status.RUNNING, 0, null)) {
+                LOGGER.log(Level.INFO, "Job {0} was deleted before it started", job.getId());
+                return;
+            }
+            active.put(job.getId(), run);
+            // Оценка по модели этого воркера - его время и уточняет
+            CostEstimator.Estimate estimate = costEstimator.estimate(job.getKind(), inputFile, job.getFormat());
+            boolean converted;
+            try (ConversionScheduler.Slot slot = scheduler.acquireWaiting(job.getKind(), estimate)) {
+                converted = router.convert(job.getKind(), inputFile, outputFile, progressPublisher(job, run));
+                if (converted) slot.succeeded();
+            }
+            if (converted) {
+                publish(job, ConversionJob.Status.COMPLETED, 1, null);
+            } else {
+                outputFile.delete();
+                publish(job, ConversionJob.Status.FAILED, 0, "Conversion failed");
+            }
+        } catch (InterruptedException e) {
+            if (cancelled.get()) {
+                LOGGER.log(Level.INFO, "Job {0} was cancelled, its process was stopped", job.getId());
+                return;
+            }
+            // Остановка воркера: задача останется захваченной и вернётся в очередь по таймауту
+            throw e;
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error in queued job {0}: {1}", new Object[]{job.getId(), e.getMessage()});
+            outputFile.delete();
+            publish(job, ConversionJob.Status.FAILED, 0, e.getMessage());
+        } finally {
+            active.remove(job.getId(), run);
+            run.finish();
+            if (cancelled.get()) {
+                // Прерывание от отмены задачи, а не от остановки воркера - поток берёт следующую
+                Thread.interrupted();
+            }
+            inputFile.delete();
+            running.decrementAndGet();
+        }
+    }
+
+    // Задачу удалили на API-узле - прерываем свой поток, и сторож процессов убивает ffmpeg/soffice
+    private DoubleConsumer progressPublisher(QueuedJob job, RunningJob run) {
+        long[] lastPublished = {0};
+        return fraction -> {
+            long now = System.currentTimeMillis();
+            if (now - lastPublished[0] < PROGRESS_INTERVAL_MILLIS) return;
+            lastPublished[0] = now;
+            try {
+                if (!publish(job, ConversionJob.Status.RUNNING, fraction, null)) {
+                    run.cancel();
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Could not publish progress of job {0}: {1}", new Object[]{job.getId(), e.getMessage()});
+            }
+        };
+    }
+
+    private boolean publish(QueuedJob job, ConversionJob.Status status, double progress, String error) throws IOException {
+        return queue.update(job.getId(), new QueuedJobState(status, progress, error, workerId));
+    }
+
+    private static String requiredTool(MediaKind kind) {
+        return kind == MediaKind.DOCUMENT ? "soffice" : "ffmpeg";
+    }
+
+    private static List<String> detectTools() {
+        List<String> found = new ArrayList<>();
+        if (runs("ffmpeg", "-version")) found.add("ffmpeg");
+        if (runs("soffice", "--version")) found.add("soffice");
+        return found;
+    }
+
+    private static boolean runs(String... command) {
+        try {
+            Process process = new ProcessBuilder(command)
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                return false;
+            }
+            return process.exitValue() == 0;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static String defaultWorkerId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (IOException e) {
+            host = "worker";
+        }
+        return host + "-" + ProcessHandle.current().pid();
+    }
+
+    // Поток задачи прерывается только пока он выполняет именно её - не следующую задачу
+    private static class RunningJob {
+
+        private final String id;
+        private final Thread thread;
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+        private boolean finished;
+
+        RunningJob(String id, Thread thread) {
+            this.id = id;
+            this.thread = thread;
+        }
+
+        synchronized void cancel() {
+            if (!finished && cancelled.compareAndSet(false, true)) {
+                thread.interrupt();
+            }
+        }
+
+        synchronized void finish() {
+            finished = true;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor == null) return;
+        executor.shutdownNow();
+        queue.withdraw(workerId);
+    }
+}
@@ -0,0 +1,96 @@
+package com.iskander.converter;
+
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.io.File;
+import java.io.InputStream;
+import java.time.Duration;
+
+// Отдача результата конвертации прямо из временного файла, без загрузки в память.
+// Range-запросы обрабатывает Spring MVC (ResourceRegion) для файловых ответов; у потокового ответа длины нет,
+// поэтому запрос с Range контроллеры ведут через файл (isRangeRequest), а поток объявляет Accept-Ranges: none.
+public final class ConvertedFileResponse {
+
+    private ConvertedFileResponse() {
+    }
+
+    public static ResponseEntity<Resource> attachment(File file, String mimeType, String filename) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType(mimeType));
+        headers.add(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"");
+
+        // Content-Length выставит ResourceHttpMessageConverter (для 206 - по размеру диапазона)
+        return ResponseEntity.ok()
+                .headers(headers)
+                .body(new FileSystemResource(file));
+    }
+
+    // Файл готового пакета HLS/DASH для плеера: без Content-Disposition, с кэшированием на maxAge.
+    // Файлы пакета после сборки не меняются - сегменты помечаются immutable; ETag и Last-Modified
+    // позволяют Spring MVC отвечать 304 на повторный запрос, Range обрабатывается как обычно
+    public static ResponseEntity<Resource> cacheable(File file, String mimeType, Duration maxAge, boolean immutable) {
+        String cacheControl = "public, max-age=" + Math.max(0, maxAge.getSeconds()) + (immutable ? ", immutable" : "");
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(mimeType))
+                .header(HttpHeaders.CACHE_CONTROL, cacheControl)
+                .eTag(Long.toHexString(file.lastModified()) + "-" + Long.toHexString(file.length()))
+                .lastModified(file.lastModified())
+                .body(new FileSystemResource(file));
+    }
+
+    // Результат, который ещё кодируется (stdout ffmpeg): длина неизвестна, уходит chunked-ответом.
+    // Range такого ответа не поддерживается: Spring MVC не режет InputStreamResource и отдаёт тело целиком
+    public static ResponseEntity<Resource> stream(InputStream body, String mimeType, String filename) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType(mimeType));
+        headers.add(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"");
+        headers.set(HttpHeaders.ACCEPT_RANGES, "none");
+
+        return ResponseEntity.ok()
+                .headers(headers)
+                .body(new InputStreamResource(body));
+    }
+
+    // Клиент запросил диапазон (докачка, перемотка в плеере) - результат нужно отдавать из файла, а не потоком
+    public static boolean isRangeRequest() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        return attributes instanceof ServletRequestAttributes
+                && ((ServletRequestAttributes) attributes).getRequest().getHeader(HttpHeaders.RANGE) != null;
+    }
+
+    // Освобождение рабочего каталога после того, как тело ответа полностью записано (результат может
+    // отдаваться прямо из него). Вне HTTP-запроса освобождаем сразу.
+    public static void releaseAfterResponse(WorkArea.Allocation work) {
+        if (work == null) return;
+        afterResponse("converter.cleanup." + work.getDirectory().getName(), work::close);
+    }
+
+    // То же для файла из кэша: он закреплён от вытеснения, пока ответ не записан
+    public static void releaseAfterResponse(ConversionCache.Flight flight) {
+        if (flight == null) return;
+        afterResponse("converter.cache." + System.identityHashCode(flight), flight::close);
+    }
+
+    // То же для загрузки по частям: она закреплена от истечения срока, пока идёт конвертация
+    public static void releaseAfterResponse(ChunkedUpload upload) {
+        if (upload == null) return;
+        afterResponse("converter.upload." + upload.getId(), upload::release);
+    }
+
+    private static void afterResponse(String name, Runnable release) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            release.run();
+        } else {
+            attributes.registerDestructionCallback(name, release, RequestAttributes.SCOPE_REQUEST);
+        }
+    }
+}
@@ -2,9 +2,13 @@ package com.iskander.converter;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 
 @SpringBootApplication
+@ConfigurationPropertiesScan
+@EnableScheduling
 public class ConverterApplication {
 
 
@@ -0,0 +1,940 @@
+package com.iskander.converter;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+// Настройки конвертера (префикс "converter" в application.properties)
+@ConfigurationProperties(prefix = "converter")
+public class ConverterProperties {
+
+    private final Document document = new Document();
+    private final Ffmpeg ffmpeg = new Ffmpeg();
+    private final Cache cache = new Cache();
+    private final Scheduler scheduler = new Scheduler();
+    private final Jobs jobs = new Jobs();
+    private final Batch batch = new Batch();
+    private final Video video = new Video();
+    private final Uploads uploads = new Uploads();
+    private final Image image = new Image();
+    private final Audio audio = new Audio();
+    private final Engines engines = new Engines();
+    private final Renditions renditions = new Renditions();
+    private final Work work = new Work();
+    private final Cluster cluster = new Cluster();
+    private final Processes processes = new Processes();
+    private final Cpu cpu = new Cpu();
+    private final Abr abr = new Abr();
+
+    public Document getDocument() {
+        return document;
+    }
+
+    public Ffmpeg getFfmpeg() {
+        return ffmpeg;
+    }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public Scheduler getScheduler() {
+        return scheduler;
+    }
+
+    public Jobs getJobs() {
+        return jobs;
+    }
+
+    public Video getVideo() {
+        return video;
+    }
+
+    public static class Video {
+
+        // Копировать совместимые потоки вместо перекодирования (MP4 -> MOV, MKV -> MP4 и т.п.)
+        private boolean streamCopy = true;
+        // Длинные видео режутся по ключевым кадрам и кодируются параллельно
+        private boolean segmented = true;
+        private Duration minSegmentDuration = Duration.ofSeconds(30);
+        private int maxSegments = Runtime.getRuntime().availableProcessors();
+        // Общее число процессов ffmpeg для сегментов всех конвертаций
+        private int segmentParallelism = Runtime.getRuntime().availableProcessors();
+        // Максимальная длина фрагмента при потоковой отдаче (progressive=true) - от неё зависит время до первых байт
+        private Duration fragmentDuration = Duration.ofSeconds(2);
+
+        public boolean isStreamCopy() {
+            return streamCopy;
+        }
+
+        public void setStreamCopy(boolean streamCopy) {
+            this.streamCopy = streamCopy;
+        }
+
+        public boolean isSegmented() {
+            return segmented;
+        }
+
+        public void setSegmented(boolean segmented) {
+            this.segmented = segmented;
+        }
+
+        public Duration getMinSegmentDuration() {
+            return minSegmentDuration;
+        }
+
+        public void setMinSegmentDuration(Duration minSegmentDuration) {
+            this.minSegmentDuration = minSegmentDuration;
+        }
+
+        public int getMaxSegments() {
+            return maxSegments;
+        }
+
+        public void setMaxSegments(int maxSegments) {
+            this.maxSegments = maxSegments;
+        }
+
+        public int getSegmentParallelism() {
+            return segmentParallelism;
+        }
+
+        public void setSegmentParallelism(int segmentParallelism) {
+            this.segmentParallelism = segmentParallelism;
+        }
+
+        public Duration getFragmentDuration() {
+            return fragmentDuration;
+        }
+
+        public void setFragmentDuration(Duration fragmentDuration) {
+            this.fragmentDuration = fragmentDuration;
+        }
+    }
+
+    public Batch getBatch() {
+        return batch;
+    }
+
+    // Пакетная конвертация (/api/batch/convert)
+    public static class Batch {
+
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+        private int maxFiles = 200;
+        private DataSize maxArchiveSize = DataSize.ofMegabytes(500);
+
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        public void setParallelism(int parallelism) {
+            this.parallelism = parallelism;
+        }
+
+        public int getMaxFiles() {
+            return maxFiles;
+        }
+
+        public void setMaxFiles(int maxFiles) {
+            this.maxFiles = maxFiles;
+        }
+
+        // Ограничение на суммарный распакованный размер zip
+        public DataSize getMaxArchiveSize() {
+            return maxArchiveSize;
+        }
+
+        public void setMaxArchiveSize(DataSize maxArchiveSize) {
+            this.maxArchiveSize = maxArchiveSize;
+        }
+    }
+
+    public Cluster getCluster() {
+        return cluster;
+    }
+
+    // Разделение API-узлов и воркеров через общую очередь фоновых задач
+    public static class Cluster {
+
+        public enum Role {
+            // Всё в одном процессе, как раньше
+            STANDALONE,
+            // Фоновые задачи уходят в очередь, сам узел их не выполняет
+            API,
+            // Забирает задачи из очереди и выполняет
+            WORKER
+        }
+
+        private Role role = Role.STANDALONE;
+        // Общий каталог очереди; для нескольких машин - сетевой диск
+        private String directory;
+        // По умолчанию - имя хоста и pid
+        private String workerId;
+        private int workerThreads = 2;
+        private Set<MediaKind> kinds = EnumSet.allOf(MediaKind.class);
+        private Duration pollInterval = Duration.ofSeconds(1);
+        // Воркер без объявления дольше этого считается упавшим, его задачи возвращаются в очередь
+        private Duration heartbeatTimeout = Duration.ofSeconds(30);
+
+        public Role getRole() {
+            return role;
+        }
+
+        public void setRole(Role role) {
+            this.role = role;
+        }
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        public String getWorkerId() {
+            return workerId;
+        }
+
+        public void setWorkerId(String workerId) {
+            this.workerId = workerId;
+        }
+
+        public int getWorkerThreads() {
+            return workerThreads;
+        }
+
+        public void setWorkerThreads(int workerThreads) {
+            this.workerThreads = workerThreads;
+        }
+
+        // Типы задач, которые берёт воркер (например, только VIDEO на мощных машинах)
+        public Set<MediaKind> getKinds() {
+            return kinds;
+        }
+
+        public void setKinds(Set<MediaKind> kinds) {
+            this.kinds = kinds;
+        }
+
+        public Duration getPollInterval() {
+            return pollInterval;
+        }
+
+        public void setPollInterval(Duration pollInterval) {
+            this.pollInterval = pollInterval;
+        }
+
+        public Duration getHeartbeatTimeout() {
+            return heartbeatTimeout;
+        }
+
+        public void setHeartbeatTimeout(Duration heartbeatTimeout) {
+            this.heartbeatTimeout = heartbeatTimeout;
+        }
+    }
+
+    public Processes getProcesses() {
+        return processes;
+    }
+
+    public Cpu getCpu() {
+        return cpu;
+    }
+
+    // Пул для вычислений внутри JVM (CpuPool)
+    public static class Cpu {
+
+        private int threads = Runtime.getRuntime().availableProcessors();
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public void setThreads(int threads) {
+            this.threads = threads;
+        }
+    }
+
+    // Ограничения внешних процессов (ffmpeg, soffice) по типам конвертаций
+    public static class Processes {
+
+        private final ProcessLimits image = new ProcessLimits(Duration.ofMinutes(2));
+        private final ProcessLimits audio = new ProcessLimits(Duration.ofMinutes(10));
+        private final ProcessLimits video = new ProcessLimits(Duration.ofHours(2));
+        private final ProcessLimits document = new ProcessLimits(Duration.ofMinutes(5));
+        // ffprobe читает только заголовки - дольше этого он завис на повреждённом файле
+        private Duration probeTimeout = Duration.ofSeconds(30);
+
+        public ProcessLimits getImage() {
+            return image;
+        }
+
+        public ProcessLimits getAudio() {
+            return audio;
+        }
+
+        public ProcessLimits getVideo() {
+            return video;
+        }
+
+        public ProcessLimits getDocument() {
+            return document;
+        }
+
+        public ProcessLimits get(MediaKind kind) {
+            switch (kind) {
+                case IMAGE:
+                    return image;
+                case AUDIO:
+                    return audio;
+                case VIDEO:
+                    return video;
+                case DOCUMENT:
+                    return document;
+                default:
+                    throw new IllegalArgumentException("Unknown media kind: " + kind);
+            }
+        }
+
+        public Duration getProbeTimeout() {
+            return probeTimeout;
+        }
+
+        public void setProbeTimeout(Duration probeTimeout) {
+            this.probeTimeout = probeTimeout;
+        }
+    }
+
+    public static class ProcessLimits {
+
+        // Время работы одного процесса, после него убивается всё дерево процессов
+        private Duration timeout;
+        // Процессорное время (ulimit -t); null - без ограничения
+        private Duration cpuTime;
+        // Виртуальная память (ulimit -v); null - без ограничения
+        private DataSize memory;
+        // Потоки кодирования и фильтров ffmpeg; 0 - как решит ffmpeg
+        private int threads;
+
+        public ProcessLimits(Duration timeout) {
+            this.timeout = timeout;
+        }
+
+        public Duration getTimeout() {
+            return timeout;
+        }
+
+        public void setTimeout(Duration timeout) {
+            this.timeout = timeout;
+        }
+
+        public Duration getCpuTime() {
+            return cpuTime;
+        }
+
+        public void setCpuTime(Duration cpuTime) {
+            this.cpuTime = cpuTime;
+        }
+
+        public DataSize getMemory() {
+            return memory;
+        }
+
+        public void setMemory(DataSize memory) {
+            this.memory = memory;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public void setThreads(int threads) {
+            this.threads = threads;
+        }
+    }
+
+    public Work getWork() {
+        return work;
+    }
+
+    // Рабочая область конвертаций (WorkArea)
+    public static class Work {
+
+        private String directory;
+        // Каталог в памяти (tmpfs, например /dev/shm/converter-work) для мелких задач; null - только диск
+        private String memoryDirectory;
+        private DataSize maxSize = DataSize.ofGigabytes(20);
+        private DataSize memoryMaxSize = DataSize.ofMegabytes(512);
+        // Задачи с резервом не больше этого идут в память
+        private DataSize memoryThreshold = DataSize.ofMegabytes(32);
+        // Резерв = размер входа * reserveFactor (вход, результат, промежуточные файлы)
+        private int reserveFactor = 3;
+        private Duration orphanAge = Duration.ofHours(1);
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        public String getMemoryDirectory() {
+            return memoryDirectory;
+        }
+
+        public void setMemoryDirectory(String memoryDirectory) {
+            this.memoryDirectory = memoryDirectory;
+        }
+
+        public DataSize getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(DataSize maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public DataSize getMemoryMaxSize() {
+            return memoryMaxSize;
+        }
+
+        public void setMemoryMaxSize(DataSize memoryMaxSize) {
+            this.memoryMaxSize = memoryMaxSize;
+        }
+
+        public DataSize getMemoryThreshold() {
+            return memoryThreshold;
+        }
+
+        public void setMemoryThreshold(DataSize memoryThreshold) {
+            this.memoryThreshold = memoryThreshold;
+        }
+
+        public int getReserveFactor() {
+            return reserveFactor;
+        }
+
+        public void setReserveFactor(int reserveFactor) {
+            this.reserveFactor = reserveFactor;
+        }
+
+        // Возраст каталога без активной конвертации, после которого он считается сиротой
+        public Duration getOrphanAge() {
+            return orphanAge;
+        }
+
+        public void setOrphanAge(Duration orphanAge) {
+            this.orphanAge = orphanAge;
+        }
+    }
+
+    public Renditions getRenditions() {
+        return renditions;
+    }
+
+    // Несколько вариантов одного файла за одно декодирование (/api/renditions/convert)
+    public static class Renditions {
+
+        private int maxRenditions = 10;
+        // Предел для maxWidth/maxHeight варианта
+        private int maxDimension = 8192;
+
+        public int getMaxRenditions() {
+            return maxRenditions;
+        }
+
+        public void setMaxRenditions(int maxRenditions) {
+            this.maxRenditions = maxRenditions;
+        }
+
+        public int getMaxDimension() {
+            return maxDimension;
+        }
+
+        public void setMaxDimension(int maxDimension) {
+            this.maxDimension = maxDimension;
+        }
+    }
+
+    public Abr getAbr() {
+        return abr;
+    }
+
+    // Пакеты HLS/DASH с лестницей качеств (AbrPackager)
+    public static class Abr {
+
+        private Duration segmentDuration = Duration.ofSeconds(4);
+        // Одна звуковая дорожка на все качества, кбит/с
+        private int audioBitrate = 128;
+        private String preset = "veryfast";
+        // Качества выше высоты входа пропускаются
+        private List<Rung> ladder = new ArrayList<>(List.of(
+                new Rung(1080, 5000), new Rung(720, 2800), new Rung(480, 1400), new Rung(360, 800)));
+
+        public Duration getSegmentDuration() {
+            return segmentDuration;
+        }
+
+        public void setSegmentDuration(Duration segmentDuration) {
+            this.segmentDuration = segmentDuration;
+        }
+
+        public int getAudioBitrate() {
+            return audioBitrate;
+        }
+
+        public void setAudioBitrate(int audioBitrate) {
+            this.audioBitrate = audioBitrate;
+        }
+
+        public String getPreset() {
+            return preset;
+        }
+
+        public void setPreset(String preset) {
+            this.preset = preset;
+        }
+
+        public List<Rung> getLadder() {
+            return ladder;
+        }
+
+        public void setLadder(List<Rung> ladder) {
+            this.ladder = ladder;
+        }
+    }
+
+    // Одно качество: высота кадра и битрейт видео, кбит/с
+    public static class Rung {
+
+        private int height;
+        private int bitrate;
+
+        public Rung() {
+        }
+
+        public Rung(int height, int bitrate) {
+            this.height = height;
+            this.bitrate = bitrate;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        public void setHeight(int height) {
+            this.height = height;
+        }
+
+        public int getBitrate() {
+            return bitrate;
+        }
+
+        public void setBitrate(int bitrate) {
+            this.bitrate = bitrate;
+        }
+    }
+
+    public Engines getEngines() {
+        return engines;
+    }
+
+    // Маршрутизация между движками конвертации (EngineRouter)
+    public static class Engines {
+
+        // Доля запросов, отдаваемых не лучшему движку, чтобы его замеры не устаревали
+        private double exploration = 0.05;
+        // Сколько замеров нужно, прежде чем сравнивать движок с другими по задержке
+        private int minSamples = 5;
+
+        public double getExploration() {
+            return exploration;
+        }
+
+        public void setExploration(double exploration) {
+            this.exploration = exploration;
+        }
+
+        public int getMinSamples() {
+            return minSamples;
+        }
+
+        public void setMinSamples(int minSamples) {
+            this.minSamples = minSamples;
+        }
+    }
+
+    public Audio getAudio() {
+        return audio;
+    }
+
+    public static class Audio {
+
+        // MP3 -> WAV декодируется в JVM (jlayer), без запуска ffmpeg
+        private boolean jvmMp3 = true;
+
+        public boolean isJvmMp3() {
+            return jvmMp3;
+        }
+
+        public void setJvmMp3(boolean jvmMp3) {
+            this.jvmMp3 = jvmMp3;
+        }
+    }
+
+    public Image getImage() {
+        return image;
+    }
+
+    public static class Image {
+
+        // JPG/PNG/BMP/TIFF конвертируются внутри JVM, остальное - через ffmpeg
+        private boolean jvmEngine = true;
+        // Больше - отдаём ffmpeg, чтобы не держать в куче огромный растр
+        private long maxPixels = 40_000_000L;
+        private float jpegQuality = 0.9f;
+
+        public boolean isJvmEngine() {
+            return jvmEngine;
+        }
+
+        public void setJvmEngine(boolean jvmEngine) {
+            this.jvmEngine = jvmEngine;
+        }
+
+        public long getMaxPixels() {
+            return maxPixels;
+        }
+
+        public void setMaxPixels(long maxPixels) {
+            this.maxPixels = maxPixels;
+        }
+
+        public float getJpegQuality() {
+            return jpegQuality;
+        }
+
+        public void setJpegQuality(float jpegQuality) {
+            this.jpegQuality = jpegQuality;
+        }
+    }
+
+    public Uploads getUploads() {
+        return uploads;
+    }
+
+    // Возобновляемые загрузки по частям (протокол tus)
+    public static class Uploads {
+
+        private DataSize maxSize = DataSize.ofMegabytes(200);
+        // Незавершённая или неиспользованная загрузка удаляется после этого времени без активности
+        private Duration expiry = Duration.ofHours(24);
+
+        public DataSize getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(DataSize maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public Duration getExpiry() {
+            return expiry;
+        }
+
+        public void setExpiry(Duration expiry) {
+            this.expiry = expiry;
+        }
+    }
+
+    // Фоновые (асинхронные) задачи конвертации
+    public static class Jobs {
+
+        private int workers = 2;
+        private int maxQueued = 50;
+        private Duration retention = Duration.ofHours(1);
+
+        public int getWorkers() {
+            return workers;
+        }
+
+        public void setWorkers(int workers) {
+            this.workers = workers;
+        }
+
+        public int getMaxQueued() {
+            return maxQueued;
+        }
+
+        public void setMaxQueued(int maxQueued) {
+            this.maxQueued = maxQueued;
+        }
+
+        public Duration getRetention() {
+            return retention;
+        }
+
+        public void setRetention(Duration retention) {
+            this.retention = retention;
+        }
+    }
+
+    // Лимиты одновременных конвертаций по типам
+    public static class Scheduler {
+
+        private static final int CPUS = Runtime.getRuntime().availableProcessors();
+
+        private final Bulkhead image = new Bulkhead(CPUS, 50, 30_000L, 5);
+        private final Bulkhead audio = new Bulkhead(CPUS, 50, 30_000L, 5);
+        private final Bulkhead video = new Bulkhead(Math.max(1, CPUS / 4), 10, 120_000L, 30);
+        private final Bulkhead document = new Bulkhead(2, 20, 60_000L, 10);
+        // На сколько секунд оценки стоимости ожидающая конвертация "дешевеет" за секунду ожидания:
+        // очередь идёт от коротких к длинным, но длинная пропускает вперёд не больше стоимость/agingRate секунд
+        private double agingRate = 1.0;
+
+        public double getAgingRate() {
+            return agingRate;
+        }
+
+        public void setAgingRate(double agingRate) {
+            this.agingRate = agingRate;
+        }
+
+        public Bulkhead getImage() {
+            return image;
+        }
+
+        public Bulkhead getAudio() {
+            return audio;
+        }
+
+        public Bulkhead getVideo() {
+            return video;
+        }
+
+        public Bulkhead getDocument() {
+            return document;
+        }
+
+        public Bulkhead get(MediaKind kind) {
+            switch (kind) {
+                case IMAGE:
+                    return image;
+                case AUDIO:
+                    return audio;
+                case VIDEO:
+                    return video;
+                case DOCUMENT:
+                    return document;
+                default:
+                    throw new IllegalArgumentException("Unknown media kind: " + kind);
+            }
+        }
+    }
+
+    public static class Bulkhead {
+
+        private int maxConcurrent;
+        private int queueCapacity;
+        private long queueTimeout;
+        private long retryAfter;
+        // Потолок оценки стоимости: более дорогие входы отклоняются до конвертации (413); null - без потолка
+        private Duration maxCost;
+
+        public Bulkhead(int maxConcurrent, int queueCapacity, long queueTimeout, long retryAfter) {
+            this.maxConcurrent = maxConcurrent;
+            this.queueCapacity = queueCapacity;
+            this.queueTimeout = queueTimeout;
+            this.retryAfter = retryAfter;
+        }
+
+        public int getMaxConcurrent() {
+            return maxConcurrent;
+        }
+
+        public void setMaxConcurrent(int maxConcurrent) {
+            this.maxConcurrent = maxConcurrent;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public long getQueueTimeout() {
+            return queueTimeout;
+        }
+
+        public void setQueueTimeout(long queueTimeout) {
+            this.queueTimeout = queueTimeout;
+        }
+
+        // Секунды для заголовка Retry-After
+        public long getRetryAfter() {
+            return retryAfter;
+        }
+
+        public void setRetryAfter(long retryAfter) {
+            this.retryAfter = retryAfter;
+        }
+
+        public Duration getMaxCost() {
+            return maxCost;
+        }
+
+        public void setMaxCost(Duration maxCost) {
+            this.maxCost = maxCost;
+        }
+    }
+
+    // Дисковый кэш результатов конвертации
+    public static class Cache {
+
+        private boolean enabled = true;
+        private String directory;
+        private DataSize maxSize = DataSize.ofGigabytes(1);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        public DataSize getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(DataSize maxSize) {
+            this.maxSize = maxSize;
+        }
+    }
+
+    public static class Ffmpeg {
+
+        // Конвертация через stdin/stdout без временных файлов, где формат это позволяет
+        private boolean pipeMode = true;
+
+        public boolean isPipeMode() {
+            return pipeMode;
+        }
+
+        public void setPipeMode(boolean pipeMode) {
+            this.pipeMode = pipeMode;
+        }
+    }
+
+    public static class Document {
+
+        private final Pool pool = new Pool();
+
+        public Pool getPool() {
+            return pool;
+        }
+    }
+
+    // Пул постоянно запущенных процессов LibreOffice
+    public static class Pool {
+
+        private boolean enabled = true;
+        private String officeHome;
+        private String workingDir;
+        private int[] portNumbers = {2002, 2003};
+        private int maxTasksPerProcess = 200;
+        private long taskExecutionTimeout = 120_000L;
+        private long taskQueueTimeout = 30_000L;
+        private long processTimeout = 120_000L;
+        private long processRetryInterval = 250L;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getOfficeHome() {
+            return officeHome;
+        }
+
+        public void setOfficeHome(String officeHome) {
+            this.officeHome = officeHome;
+        }
+
+        public String getWorkingDir() {
+            return workingDir;
+        }
+
+        public void setWorkingDir(String workingDir) {
+            this.workingDir = workingDir;
+        }
+
+        public int[] getPortNumbers() {
+            return portNumbers;
+        }
+
+        public void setPortNumbers(int[] portNumbers) {
+            this.portNumbers = portNumbers;
+        }
+
+        public int getMaxTasksPerProcess() {
+            return maxTasksPerProcess;
+        }
+
+        public void setMaxTasksPerProcess(int maxTasksPerProcess) {
+            this.maxTasksPerProcess = maxTasksPerProcess;
+        }
+
+        public long getTaskExecutionTimeout() {
+            return taskExecutionTimeout;
+        }
+
+        public void setTaskExecutionTimeout(long taskExecutionTimeout) {
+            this.taskExecutionTimeout = taskExecutionTimeout;
+        }
+
+        public long getTaskQueueTimeout() {
+            return taskQueueTimeout;
+        }
+
+        public void setTaskQueueTimeout(long taskQueueTimeout) {
+            this.taskQueueTimeout = taskQueueTimeout;
+        }
+
+        public long getProcessTimeout() {
+            return processTimeout;
+        }
+
+        public void setProcessTimeout(long processTimeout) {
+            this.processTimeout = processTimeout;
+        }
+
+        public long getProcessRetryInterval() {
+            return processRetryInterval;
+        }
+
+        public void setProcessRetryInterval(long processRetryInterval) {
+            this.processRetryInterval = processRetryInterval;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.iskander.converter;
+
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Оценка стоимости конвертации до запуска: объём работы входа в единицах своего типа
+// (видео - мегапиксель-секунды, изображение - мегапиксели, аудио и документы - мегабайты)
+// умножается на секунды на единицу, выученные по прошлым конвертациям этой пары форматов.
+// По оценке планировщик пропускает короткие конвертации вперёд, а слишком дорогие отклоняются сразу.
+@Component
+public class CostEstimator {
+
+    private static final Logger LOGGER = Logger.getLogger(CostEstimator.class.getName());
+
+    // Скользящее среднее секунд на единицу: новый замер весит 20%
+    private static final double RATE_ALPHA = 0.2;
+    private static final double MEGABYTE = 1024 * 1024;
+    private static final double MEGAPIXEL = 1_000_000;
+
+    private final ConverterProperties.Scheduler settings;
+    private final MediaProbe mediaProbe;
+    private final ConcurrentHashMap<String, PairRate> rates = new ConcurrentHashMap<>();
+
+    public CostEstimator(ConverterProperties properties, MediaProbe mediaProbe) {
+        this.settings = properties.getScheduler();
+        this.mediaProbe = mediaProbe;
+    }
+
+    // Вход уже на диске: видео измеряется через ffprobe, изображение - по заголовку
+    public Estimate estimate(MediaKind kind, File inputFile, String targetFormat) {
+        String source = extension(inputFile.getName());
+        double units;
+        switch (kind) {
+            case VIDEO:
+                units = videoUnits(inputFile);
+                break;
+            case IMAGE:
+                units = imageUnits(inputFile, inputFile.length());
+                break;
+            default:
+                units = inputFile.length() / MEGABYTE;
+                break;
+        }
+        return estimate(kind, source, targetFormat, units);
+    }
+
+    // Загрузка в памяти или во временном файле multipart; видео так не оценивается - нужен файл для ffprobe
+    public Estimate estimate(MediaKind kind, String sourceFormat, String targetFormat, InputStreamSource input, long size) {
+        double units = size / MEGABYTE;
+        if (kind == MediaKind.IMAGE) {
+            try (InputStream in = input.getInputStream()) {
+                units = imageUnits(in, size);
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Could not open upload for estimation: {0}", e.getMessage());
+            }
+        }
+        return estimate(kind, sourceFormat, targetFormat, units);
+    }
+
+    // Оценка для уже посчитанного объёма; ConversionTooCostlyException - оценка выше converter.scheduler.<kind>.max-cost
+    public Estimate estimate(MediaKind kind, String sourceFormat, String targetFormat, double units) {
+        String pair = kind.name().toLowerCase() + ":" + sourceFormat.toLowerCase() + "->" + targetFormat.toLowerCase();
+        PairRate rate = rates.computeIfAbsent(pair, k -> new PairRate(defaultRate(kind)));
+        Estimate estimate = new Estimate(kind, rate, units, units * rate.secondsPerUnit());
+
+        ConverterProperties.Bulkhead limits = settings.get(kind);
+        if (limits.getMaxCost() != null && estimate.getSeconds() > limits.getMaxCost().getSeconds()) {
+            LOGGER.log(Level.WARNING, "Rejecting {0} conversion estimated at {1} s (limit {2})",
+                    new Object[]{pair, Math.round(estimate.getSeconds()), limits.getMaxCost()});
+            throw new ConversionTooCostlyException(kind, estimate.getSeconds(), limits.getMaxCost().getSeconds());
+        }
+        return estimate;
+    }
+
+    // Текущие коэффициенты по парам форматов - для /api/scheduler/stats
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new TreeMap<>();
+        rates.forEach((pair, rate) -> result.put(pair, rate.snapshot()));
+        return result;
+    }
+
+    private double videoUnits(File inputFile) {
+        MediaInfo info = mediaProbe.probe(inputFile);
+        MediaInfo.Stream video = info.firstStream("video");
+        if (info.getDurationSeconds() <= 0 || video == null || video.getWidth() <= 0) {
+            // Грубо: мегабайт сжатого видео - около секунды 1080p (2 мегапикселя)
+            return inputFile.length() / MEGABYTE * 2;
+        }
+        return info.getDurationSeconds() * video.getWidth() * video.getHeight() / MEGAPIXEL;
+    }
+
+    // Размер изображения из заголовка, без декодирования; если формат не читается - по размеру файла.
+    // input - File или InputStream, как у ImageIO.createImageInputStream
+    private double imageUnits(Object input, long size) {
+        try (ImageInputStream stream = ImageIO.createImageInputStream(input)) {
+            Iterator<ImageReader> readers = stream == null ? null : ImageIO.getImageReaders(stream);
+            if (readers != null && readers.hasNext()) {
+                ImageReader reader = readers.next();
+                try {
+                    reader.setInput(stream, true, true);
+                    return (double) reader.getWidth(0) * reader.getHeight(0) / MEGAPIXEL;
+                } finally {
+                    reader.dispose();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.FINE, "Could not read image header: {0}", e.getMessage());
+        }
+        return size / MEGABYTE;
+    }
+
+    // Начальные коэффициенты до первых замеров
+    private static double defaultRate(MediaKind kind) {
+        switch (kind) {
+            case IMAGE:
+                return 0.05;
+            case AUDIO:
+                return 0.5;
+            case VIDEO:
+                return 0.1;
+            case DOCUMENT:
+                return 2;
+            default:
+                throw new IllegalArgumentException("Unknown media kind: " + kind);
+        }
+    }
+
+    private static String extension(String name) {
+        int lastDot = name.lastIndexOf('.');
+        return lastDot == -1 ? "" : name.substring(lastDot + 1).toLowerCase();
+    }
+
+    private static class PairRate {
+
+        private long count;
+        private double secondsPerUnit;
+
+        PairRate(double initial) {
+            this.secondsPerUnit = initial;
+        }
+
+        synchronized double secondsPerUnit() {
+            return secondsPerUnit;
+        }
+
+        synchronized void add(double units, long nanos) {
+            // Вход без объёма (пустой файл) ничего не говорит о скорости
+            if (units <= 0) return;
+            double observed = nanos / 1e9 / units;
+            secondsPerUnit = count == 0 ? observed : secondsPerUnit + RATE_ALPHA * (observed - secondsPerUnit);
+            count++;
+        }
+
+        synchronized Map<String, Object> snapshot() {
+            Map<String, Object> snapshot = new LinkedHashMap<>();
+            snapshot.put("samples", count);
+            snapshot.put("secondsPerUnit", secondsPerUnit);
+            return snapshot;
+        }
+    }
+
+    // Оценка одной конвертации; по её завершении фактическое время уточняет коэффициент пары
+    public static class Estimate {
+
+        private final MediaKind kind;
+        private final PairRate rate;
+        private final double units;
+        private final double seconds;
+
+        private Estimate(MediaKind kind, PairRate rate, double units, double seconds) {
+            this.kind = kind;
+            this.rate = rate;
+            this.units = units;
+            this.seconds = seconds;
+        }
+
+        public MediaKind getKind() {
+            return kind;
+        }
+
+        public double getUnits() {
+            return units;
+        }
+
+        public double getSeconds() {
+            return seconds;
+        }
+
+        // Объём умноженный на count (несколько вариантов из одного входа). Такие замеры в модель не идут:
+        // общее декодирование делает их дешевле отдельных конвертаций
+        public Estimate times(int count) {
+            return new Estimate(kind, null, units * count, seconds * count);
+        }
+
+        public void completed(long nanos) {
+            if (rate != null) rate.add(units, nanos);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.iskander.converter;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Пул платформенных потоков для вычислений внутри JVM (ImageIO, декодирование MP3).
+// Запросы и ожидание внешних процессов идут на виртуальных потоках; долгий расчёт на них занял бы
+// потоки-носители, и остальные запросы ждали бы. Поэтому расчёт уходит сюда, а виртуальный поток просто ждёт.
+@Component
+public class CpuPool {
+
+    private final ExecutorService executor;
+
+    public CpuPool(ConverterProperties properties) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(properties.getCpu().getThreads(), runnable -> {
+            Thread thread = new Thread(runnable, "cpu-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Выполняет task в пуле и ждёт результат; при прерывании ожидающего прерывается и расчёт
+    public <T> T call(Callable<T> task) throws ExecutionException, InterruptedException {
+        Future<T> future = executor.submit(task);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -1,14 +1,11 @@
 package com.iskander.converter;
 
-import org.springframework.core.io.InputStreamResource;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
+import org.springframework.core.io.Resource;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.*;
-import java.nio.file.Files;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -18,13 +15,33 @@ public class DocumentConverterController {
 
     private static final Logger LOGGER = Logger.getLogger(DocumentConverterController.class.getName());
 
+    private final EngineRouter router;
+    private final ConversionCache cache;
+    private final ConversionScheduler scheduler;
+    private final ConversionMetrics metrics;
+    private final WorkArea workArea;
+    private final CostEstimator costEstimator;
+
+    public DocumentConverterController(EngineRouter router, ConversionCache cache,
+                                       ConversionScheduler scheduler, ConversionMetrics metrics,
+                                       WorkArea workArea, CostEstimator costEstimator) {
+        this.router = router;
+        this.cache = cache;
+        this.scheduler = scheduler;
+        this.metrics = metrics;
+        this.workArea = workArea;
+        this.costEstimator = costEstimator;
+    }
+
     @CrossOrigin(origins = "*")
     @PostMapping("/convert")
-    public ResponseEntity<InputStreamResource> convertDocument(
+    public ResponseEntity<Resource> convertDocument(
             @RequestParam("file") MultipartFile file,
             @RequestParam("format") String format) {
-        File inputFile = null;
-        File outputDir = null;
+        WorkArea.Allocation work = null;
+        ConversionCache.Flight flight = null;
+        ConversionScheduler.Slot slot = null;
+        ConversionMetrics.Recording recording = null;
 
         try {
             // Проверка поддерживаемых форматов
@@ -39,77 +56,63 @@ public class DocumentConverterController {
                 return ResponseEntity.badRequest().body(null);
             }
 
-            inputFile = File.createTempFile("input_document", getExtension(file.getOriginalFilename()));
-            file.transferTo(inputFile);
+            String mimeType = resolveMimeType(format);
 
-            outputDir = Files.createTempDirectory("document_conversion_").toFile();
+            String originalFilename = file.getOriginalFilename();
+            String baseName = removeExtension(originalFilename);
+            String newFilename = baseName + "-converted." + format.toLowerCase();
 
-            String convertParam = resolveConvertParam(format);
-            if (convertParam == null) {
-                LOGGER.log(Level.WARNING, "No conversion parameter found for format: {0}", format);
-                return ResponseEntity.badRequest().body(null);
-            }
+            // Семейство документа - по содержимому: мусор отклоняется (415) до запуска soffice
+            String sourceFormat = InputSniffer.require(MediaKind.DOCUMENT, file, originalFilename)
+                    .extension(originalFilename);
 
-            ProcessBuilder processBuilder = new ProcessBuilder(
-                    "soffice", "--headless", "--convert-to", convertParam,
-                    "--outdir", outputDir.getAbsolutePath(),
-                    inputFile.getAbsolutePath()
-            );
-            processBuilder.redirectErrorStream(true);
-            Process process = processBuilder.start();
+            recording = metrics.start(MediaKind.DOCUMENT, originalFilename, format, file.getSize());
 
-            long startTime = System.currentTimeMillis();
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    LOGGER.log(Level.INFO, line);
-                }
+            // Тот же файл с теми же параметрами уже конвертировали - отдаём из кэша
+            flight = cache.join(cache.key(file, "document", format), format);
+            if (flight.isHit()) {
+                recording.cacheHit(flight.cachedFile().length());
+                return ConvertedFileResponse.attachment(flight.cachedFile(), mimeType, newFilename);
             }
 
-            int exitCode = process.waitFor();
-            long endTime = System.currentTimeMillis();
-            LOGGER.log(Level.INFO, "Document conversion completed in {0} ms", (endTime - startTime));
+            // Оценка стоимости (413, если выше потолка), место в рабочей области (503, если квота исчерпана),
+            // затем слот для этого типа конвертаций в порядке стоимости (или 503 при переполненной очереди)
+            CostEstimator.Estimate estimate = costEstimator.estimate(MediaKind.DOCUMENT,
+                    sourceFormat, format, file, file.getSize());
+            work = workArea.allocate(MediaKind.DOCUMENT, file.getSize());
+            slot = scheduler.acquire(MediaKind.DOCUMENT, estimate);
 
-            if (exitCode != 0) {
-                LOGGER.log(Level.SEVERE, "LibreOffice conversion failed with exit code {0}", exitCode);
-                return ResponseEntity.status(500).body(null);
+            File inputFile = work.file("input." + sourceFormat);
+            try (StageTimings.Stage stage = StageTimings.start("transfer")) {
+                file.transferTo(inputFile);
             }
 
-            File convertedFile = findConvertedFile(outputDir, format);
-            if (convertedFile == null || !convertedFile.exists()) {
-                LOGGER.log(Level.SEVERE, "Converted file not found. Possibly this conversion is not supported directly.");
+            File convertedFile = work.file("output." + format.toLowerCase());
+
+            // Пул LibreOffice или отдельный soffice - по замерам EngineRouter, с переходом на другой движок при ошибке
+            long startTime = System.currentTimeMillis();
+            if (!router.convert(MediaKind.DOCUMENT, inputFile, convertedFile, null)) {
                 return ResponseEntity.status(500).body(null);
             }
+            slot.succeeded();
+            LOGGER.log(Level.INFO, "Document conversion completed in {0} ms", (System.currentTimeMillis() - startTime));
 
-            byte[] fileBytes = Files.readAllBytes(convertedFile.toPath());
-            InputStreamResource resource = new InputStreamResource(new ByteArrayInputStream(fileBytes));
-
-            String mimeType = resolveMimeType(format);
-
-            String originalFilename = file.getOriginalFilename();
-            String baseName = removeExtension(originalFilename);
-            String newFilename = baseName + "-converted." + format.toLowerCase();
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.parseMediaType(mimeType));
-            headers.add(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + newFilename + "\"");
-
-            return ResponseEntity.ok()
-                    .headers(headers)
-                    .contentLength(fileBytes.length)
-                    .body(resource);
+            // Результат переносится в кэш и отдаётся потоком с диска
+            File result = flight.commit(convertedFile);
+            recording.success(result.length());
+            return ConvertedFileResponse.attachment(result, mimeType, newFilename);
 
+        } catch (ConversionRejectedException | ConversionTooCostlyException | UnsupportedInputException e) {
+            throw e;
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error during document conversion: {0}", e.getMessage());
             return ResponseEntity.status(500).body(null);
         } finally {
-            if (inputFile != null && inputFile.exists()) inputFile.delete();
-            if (outputDir != null && outputDir.exists()) {
-                for (File f : outputDir.listFiles()) {
-                    f.delete();
-                }
-                outputDir.delete();
-            }
+            if (slot != null) slot.close();
+            if (recording != null) recording.close();
+            // Рабочий каталог удаляется и файл кэша открепляется после отправки ответа
+            ConvertedFileResponse.releaseAfterResponse(work);
+            ConvertedFileResponse.releaseAfterResponse(flight);
         }
     }
 
@@ -132,15 +135,6 @@ public class DocumentConverterController {
         }
     }
 
-    private String getExtension(String filename) {
-        if (filename == null) return ".tmp";
-        int lastIndex = filename.lastIndexOf(".");
-        if (lastIndex == -1) {
-            return ".tmp";
-        }
-        return filename.substring(lastIndex);
-    }
-
     private String removeExtension(String filename) {
         if (filename == null) return "converted-file";
         int lastDot = filename.lastIndexOf('.');
@@ -149,29 +143,4 @@ public class DocumentConverterController {
         }
         return filename.substring(0, lastDot);
     }
-
-    private String resolveConvertParam(String format) {
-        // Попытка без фильтров для DOCX и ODT:
-        switch (format.toLowerCase()) {
-            case "pdf":
-                return "pdf:writer_pdf_Export";
-            case "docx":
-                return "docx"; // Без фильтра
-            case "odt":
-                return "odt";  // Без фильтра
-            default:
-                return null;
-        }
-    }
-
-    private File findConvertedFile(File outputDir, String format) {
-        File[] files = outputDir.listFiles();
-        if (files == null) return null;
-        for (File f : files) {
-            if (f.getName().toLowerCase().endsWith("." + format.toLowerCase())) {
-                return f;
-            }
-        }
-        return null;
-    }
 }
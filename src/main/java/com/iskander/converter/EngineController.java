@@ -0,0 +1,22 @@
+package com.iskander.converter;
+
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/engines")
+public class EngineController {
+
+    private final EngineRouter router;
+
+    public EngineController(EngineRouter router) {
+        this.router = router;
+    }
+
+    // Замеры движков по парам форматов: число конвертаций, средняя задержка, доля успеха
+    @GetMapping("/stats")
+    public Map<String, Object> stats() {
+        return router.stats();
+    }
+}
@@ -0,0 +1,188 @@
+package com.iskander.converter;
+
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.DoubleConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Выбор движка конвертации для пары форматов по измеренной задержке и доле успешных конвертаций.
+// Пока замеров мало, движки пробуются в порядке priority(); небольшая доля запросов уходит
+// не лучшему кандидату, чтобы замеры остальных не устаревали. При ошибке пробуется следующий движок.
+@Component
+public class EngineRouter {
+
+    private static final Logger LOGGER = Logger.getLogger(EngineRouter.class.getName());
+
+    // Скользящие средние: новая задержка весит 20%, новый исход - 10%
+    private static final double LATENCY_ALPHA = 0.2;
+    private static final double SUCCESS_ALPHA = 0.1;
+
+    private final List<ConversionEngine> engines;
+    private final ConverterProperties.Engines settings;
+    private final ConcurrentHashMap<String, PairStats> stats = new ConcurrentHashMap<>();
+
+    public EngineRouter(List<ConversionEngine> engines, ConverterProperties properties) {
+        this.engines = engines;
+        this.settings = properties.getEngines();
+    }
+
+    // Движки, поддерживающие пару, в порядке попыток
+    public List<ConversionEngine> candidates(MediaKind kind, String sourceFormat, String targetFormat) {
+        String source = sourceFormat.toLowerCase();
+        String target = targetFormat.toLowerCase();
+        List<ConversionEngine> result = new ArrayList<>();
+        for (ConversionEngine engine : engines) {
+            if (engine.supports(kind, source, target)) {
+                result.add(engine);
+            }
+        }
+        if (result.size() < 2) return result;
+
+        // Движки без достаточных замеров идут первыми (по priority) - так они их и набирают.
+        // Оценки снимаются один раз: статистика меняется параллельно и не должна меняться во время сортировки
+        Map<ConversionEngine, Double> scores = new HashMap<>();
+        for (ConversionEngine engine : result) {
+            PairStats pair = stats.get(key(engine, source, target));
+            scores.put(engine, pair != null && pair.count() >= settings.getMinSamples() ? pair.score() : -1);
+        }
+        result.sort(Comparator.comparingDouble((ConversionEngine engine) -> scores.get(engine))
+                .thenComparingInt(ConversionEngine::priority));
+
+        if (ThreadLocalRandom.current().nextDouble() < settings.getExploration()) {
+            Collections.swap(result, 0, 1 + ThreadLocalRandom.current().nextInt(result.size() - 1));
+        }
+        return result;
+    }
+
+    // true - для пары стоит использовать именно этот движок (для путей, которые вызывают движок напрямую)
+    public boolean prefers(ConversionEngine engine, MediaKind kind, String sourceFormat, String targetFormat) {
+        List<ConversionEngine> candidates = candidates(kind, sourceFormat, targetFormat);
+        return !candidates.isEmpty() && candidates.get(0) == engine;
+    }
+
+    // Файл -> файл через лучший доступный движок; false - ни один движок не справился
+    public boolean convert(MediaKind kind, File inputFile, File outputFile, DoubleConsumer progress)
+            throws InterruptedException {
+        String source = extension(inputFile);
+        String target = extension(outputFile);
+        List<ConversionEngine> candidates = candidates(kind, source, target);
+        if (candidates.isEmpty()) {
+            LOGGER.log(Level.WARNING, "No conversion engine for {0} -> {1}", new Object[]{source, target});
+            return false;
+        }
+
+        for (ConversionEngine engine : candidates) {
+            long startTime = System.nanoTime();
+            boolean success;
+            try (StageTimings.Stage stage = StageTimings.start("convert", engine.name())) {
+                success = engine.convert(inputFile, outputFile, progress);
+            } catch (InterruptedException e) {
+                outputFile.delete();
+                throw e;
+            } catch (ProcessTimeoutException e) {
+                // Время на конвертацию исчерпано - следующий движок на том же входе, скорее всего, тоже зависнет
+                LOGGER.log(Level.WARNING, "Engine {0} timed out on {1} -> {2}: {3}",
+                        new Object[]{engine.name(), source, target, e.getMessage()});
+                record(engine, source, target, System.nanoTime() - startTime, false);
+                outputFile.delete();
+                return false;
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Engine {0} failed on {1} -> {2}: {3}",
+                        new Object[]{engine.name(), source, target, e.getMessage()});
+                success = false;
+            }
+            record(engine, source, target, System.nanoTime() - startTime, success);
+            if (success) return true;
+            // Недописанный результат не должен достаться следующему движку или клиенту
+            outputFile.delete();
+        }
+        return false;
+    }
+
+    // Файл -> файл заданным движком, без перехода к другому: результат должен соответствовать ключу кэша этого движка
+    public boolean convert(ConversionEngine engine, File inputFile, File outputFile, DoubleConsumer progress)
+            throws InterruptedException {
+        String source = extension(inputFile);
+        String target = extension(outputFile);
+        long startTime = System.nanoTime();
+        boolean success;
+        try (StageTimings.Stage stage = StageTimings.start("convert", engine.name())) {
+            success = engine.convert(inputFile, outputFile, progress);
+        } catch (InterruptedException e) {
+            outputFile.delete();
+            throw e;
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Engine {0} failed on {1} -> {2}: {3}",
+                    new Object[]{engine.name(), source, target, e.getMessage()});
+            success = false;
+        }
+        record(engine, source, target, System.nanoTime() - startTime, success);
+        if (!success) outputFile.delete();
+        return success;
+    }
+
+    public void record(ConversionEngine engine, String sourceFormat, String targetFormat, long nanos, boolean success) {
+        stats.computeIfAbsent(key(engine, sourceFormat.toLowerCase(), targetFormat.toLowerCase()), k -> new PairStats())
+                .add(nanos, success);
+    }
+
+    // Текущие оценки по парам форматов - для /api/engines/stats
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new TreeMap<>();
+        stats.forEach((key, pair) -> result.put(key, pair.snapshot()));
+        return result;
+    }
+
+    private static String key(ConversionEngine engine, String source, String target) {
+        return engine.name() + ":" + source + "->" + target;
+    }
+
+    private static String extension(File file) {
+        String name = file.getName();
+        int lastDot = name.lastIndexOf('.');
+        return lastDot == -1 ? "" : name.substring(lastDot + 1).toLowerCase();
+    }
+
+    private static class PairStats {
+
+        private long count;
+        private long successes;
+        private double latencyMillis;
+        private double successRate = 1;
+
+        synchronized void add(long nanos, boolean success) {
+            double millis = nanos / 1_000_000d;
+            // Неудачи часто быстрые (ошибка на старте) - их задержку в оценку не берём
+            if (success) {
+                latencyMillis = successes == 0 ? millis : latencyMillis + LATENCY_ALPHA * (millis - latencyMillis);
+                successes++;
+            }
+            successRate += SUCCESS_ALPHA * ((success ? 1 : 0) - successRate);
+            count++;
+        }
+
+        synchronized long count() {
+            return count;
+        }
+
+        // Ожидаемая цена: задержка, делённая на долю успеха - ненадёжный движок "дорожает",
+        // а ни разу не сработавший уходит в конец
+        synchronized double score() {
+            if (successes == 0) return Double.MAX_VALUE;
+            return latencyMillis / Math.max(0.01, successRate);
+        }
+
+        synchronized Map<String, Object> snapshot() {
+            Map<String, Object> snapshot = new LinkedHashMap<>();
+            snapshot.put("count", count);
+            snapshot.put("latencyMillis", Math.round(latencyMillis * 10) / 10.0);
+            snapshot.put("successRate", Math.round(successRate * 1000) / 1000.0);
+            return snapshot;
+        }
+    }
+}
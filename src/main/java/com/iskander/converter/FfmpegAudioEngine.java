@@ -0,0 +1,45 @@
+package com.iskander.converter;
+
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.DoubleConsumer;
+
+// Конвертация аудио через ffmpeg - универсальный движок для всех аудиоформатов
+@Component
+public class FfmpegAudioEngine implements ConversionEngine {
+
+    private final ProcessRunner processRunner;
+
+    public FfmpegAudioEngine(ProcessRunner processRunner) {
+        this.processRunner = processRunner;
+    }
+
+    @Override
+    public String name() {
+        return "ffmpeg-audio";
+    }
+
+    @Override
+    public int priority() {
+        return 10;
+    }
+
+    @Override
+    public boolean supports(MediaKind kind, String sourceFormat, String targetFormat) {
+        return kind == MediaKind.AUDIO;
+    }
+
+    @Override
+    public boolean convert(File inputFile, File outputFile, DoubleConsumer progress) throws Exception {
+        // Пример: ffmpeg -y -f mp3 -i input.mp3 output.wav
+        // Входной формат задан по содержимому (InputSniffer), выходной ffmpeg определит по расширению
+        List<String> command = new ArrayList<>(List.of("ffmpeg", "-y"));   // -y для перезаписи без запроса
+        command.addAll(InputSniffer.ffmpegInput(inputFile));
+        command.add(outputFile.getAbsolutePath());
+        int exitCode = processRunner.run(MediaKind.AUDIO, command, "FFmpeg audio");
+        return exitCode == 0;
+    }
+}
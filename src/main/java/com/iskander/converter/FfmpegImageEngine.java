@@ -0,0 +1,44 @@
+package com.iskander.converter;
+
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.DoubleConsumer;
+
+// Конвертация изображений через ffmpeg - читает любые форматы, которые знает ffmpeg
+@Component
+public class FfmpegImageEngine implements ConversionEngine {
+
+    private final ProcessRunner processRunner;
+
+    public FfmpegImageEngine(ProcessRunner processRunner) {
+        this.processRunner = processRunner;
+    }
+
+    @Override
+    public String name() {
+        return "ffmpeg-image";
+    }
+
+    @Override
+    public int priority() {
+        return 10;
+    }
+
+    @Override
+    public boolean supports(MediaKind kind, String sourceFormat, String targetFormat) {
+        return kind == MediaKind.IMAGE;
+    }
+
+    @Override
+    public boolean convert(File inputFile, File outputFile, DoubleConsumer progress) throws Exception {
+        // Демуксер по содержимому: ffmpeg не перебирает форматы сам
+        List<String> command = new ArrayList<>(List.of("ffmpeg", "-y"));
+        command.addAll(InputSniffer.ffmpegInput(inputFile));
+        command.addAll(List.of("-vf", ImageTranscoder.SCALE_FILTER, outputFile.getAbsolutePath()));
+        int exitCode = processRunner.run(MediaKind.IMAGE, command, "FFmpeg");
+        return exitCode == 0;
+    }
+}
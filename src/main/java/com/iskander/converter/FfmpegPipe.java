@@ -0,0 +1,143 @@
+package com.iskander.converter;
+
+import java.io.*;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Процесс ffmpeg, работающий через stdin/stdout без временных файлов.
+// Загруженный файл пишется в stdin отдельным потоком, stdout читается как обычный InputStream
+// и отдаётся клиенту по мере кодирования. При close() процесс завершается и проверяется код выхода;
+// если результат дочитан не до конца (клиент отключился), всё дерево процессов убивается сразу.
+public class FfmpegPipe extends ConversionStream {
+
+    private static final Logger LOGGER = Logger.getLogger(FfmpegPipe.class.getName());
+
+    private final Process process;
+    private final PushbackInputStream output;
+    private final String tool;
+    private final String label;
+    private final ProcessRunner runner;
+    private final long startTime;
+    private final ProcessRunner.OutputTail tail = new ProcessRunner.OutputTail();
+    private final ProcessRunner.CpuSampler cpu;
+    private ProcessSupervisor.Supervision supervision;
+    private volatile boolean finished;
+    private boolean closed;
+
+    private FfmpegPipe(Process process, String tool, String label, ProcessRunner runner, long startTime) {
+        super(label);
+        this.process = process;
+        this.output = new PushbackInputStream(process.getInputStream(), 1);
+        this.tool = tool;
+        this.label = label;
+        this.runner = runner;
+        this.startTime = startTime;
+        this.cpu = new ProcessRunner.CpuSampler(process);
+    }
+
+    // command должен читать из pipe:0 и писать в pipe:1; запускается через ProcessRunner.startPipe
+    static FfmpegPipe start(List<String> command, InputStream source, String label, ProcessRunner runner,
+                            Function<Process, ProcessSupervisor.Supervision> supervise) throws IOException {
+        long startTime = System.nanoTime();
+        // Работа ffmpeg здесь совпадает с отдачей ответа - отдельно замеряется только запуск
+        Process process;
+        try (StageTimings.Stage stage = StageTimings.start("spawn", label)) {
+            process = new ProcessBuilder(command).start();
+        }
+        FfmpegPipe pipe = new FfmpegPipe(process, "ffmpeg", label, runner, startTime);
+        pipe.supervision = supervise.apply(process);
+
+        // Оба потока почти всё время ждут ввод-вывод - виртуальные, на каждый запрос их не жалко
+        Thread.ofVirtual().name(label + "-stdin").start(() -> pipe.feed(source));
+        Thread.ofVirtual().name(label + "-stderr").start(pipe::drainErrors);
+
+        return pipe;
+    }
+
+    // Ждёт первые байты результата. false - ffmpeg завершился, ничего не записав (ошибка входных данных и т.п.)
+    public boolean awaitOutput() throws IOException, InterruptedException {
+        int first = output.read();
+        if (first == -1) {
+            finished = true;
+            int exitCode = process.waitFor();
+            LOGGER.log(Level.SEVERE, "{0} process produced no output, exit code {1}", new Object[]{label, exitCode});
+            return false;
+        }
+        output.unread(first);
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = output.read();
+        if (b != -1) bytesRead++;
+        else finished = true;
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = output.read(b, off, len);
+        if (n > 0) {
+            bytesRead += n;
+            cpu.maybeSample();
+        } else if (n == -1) {
+            finished = true;
+        }
+        return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            cpu.sample();
+            if (!finished) {
+                // Клиент отключился раньше времени - ffmpeg больше не нужен
+                LOGGER.log(Level.WARNING, "{0} output was not read to the end, stopping the process", label);
+                supervision.cancel();
+                output.close();
+                return;
+            }
+            output.close();
+            if (!process.waitFor(5, TimeUnit.SECONDS)) {
+                LOGGER.log(Level.WARNING, "{0} process still running after output was closed, killing it", label);
+                ProcessSupervisor.destroyTree(process);
+                return;
+            }
+            int exitCode = process.exitValue();
+            succeeded = exitCode == 0 && !supervision.isKilled();
+            runner.finished(tool, label, System.nanoTime() - startTime, cpu.max(), exitCode, tail);
+        } catch (InterruptedException e) {
+            ProcessSupervisor.destroyTree(process);
+            Thread.currentThread().interrupt();
+        } finally {
+            supervision.close();
+            release();
+        }
+    }
+
+    private void feed(InputStream source) {
+        try (InputStream in = source; OutputStream stdin = process.getOutputStream()) {
+            in.transferTo(stdin);
+        } catch (IOException e) {
+            // ffmpeg может закрыть stdin раньше (ошибка или ему хватило данных)
+            LOGGER.log(Level.FINE, "{0} stopped reading input: {1}", new Object[]{label, e.getMessage()});
+        }
+    }
+
+    private void drainErrors() {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getErrorStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                tail.add(line);
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "{0} stderr closed: {1}", new Object[]{label, e.getMessage()});
+        }
+    }
+}
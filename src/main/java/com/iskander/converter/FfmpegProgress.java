@@ -0,0 +1,34 @@
+package com.iskander.converter;
+
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+
+// Разбор машиночитаемого вывода "ffmpeg -progress pipe:1" (строки key=value)
+// и пересчёт out_time_us в долю выполненной работы относительно длительности входа.
+public class FfmpegProgress implements Consumer<String> {
+
+    private final double durationSeconds;
+    private final DoubleConsumer listener;
+
+    public FfmpegProgress(double durationSeconds, DoubleConsumer listener) {
+        this.durationSeconds = durationSeconds;
+        this.listener = listener;
+    }
+
+    @Override
+    public void accept(String line) {
+        if (line.startsWith("out_time_us=") || line.startsWith("out_time_ms=")) {
+            // out_time_ms исторически тоже в микросекундах
+            if (durationSeconds <= 0) return;
+            try {
+                long micros = Long.parseLong(line.substring(line.indexOf('=') + 1).trim());
+                double fraction = micros / (durationSeconds * 1_000_000d);
+                listener.accept(Math.max(0, Math.min(1, fraction)));
+            } catch (NumberFormatException e) {
+                // "N/A" в начале кодирования
+            }
+        } else if (line.equals("progress=end")) {
+            listener.accept(1);
+        }
+    }
+}
@@ -1,14 +1,12 @@
 package com.iskander.converter;
 
-import org.springframework.core.io.InputStreamResource;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
+import org.springframework.core.io.Resource;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.*;
-import java.nio.file.Files;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -18,16 +16,50 @@ public class ImageConverterController {
 
     private static final Logger LOGGER = Logger.getLogger(ImageConverterController.class.getName());
 
+    private final ConverterProperties properties;
+    private final ConversionCache cache;
+    private final ConversionScheduler scheduler;
+    private final ProcessRunner processRunner;
+    private final ImageTranscoder transcoder;
+    private final ConversionMetrics metrics;
+    private final JvmImageEngine jvmEngine;
+    private final FfmpegImageEngine ffmpegEngine;
+    private final EngineRouter router;
+    private final WorkArea workArea;
+    private final CostEstimator costEstimator;
+
+    public ImageConverterController(ConverterProperties properties, ConversionCache cache,
+                                    ConversionScheduler scheduler, ProcessRunner processRunner,
+                                    ImageTranscoder transcoder, ConversionMetrics metrics,
+                                    JvmImageEngine jvmEngine, FfmpegImageEngine ffmpegEngine, EngineRouter router,
+                                    WorkArea workArea, CostEstimator costEstimator) {
+        this.properties = properties;
+        this.cache = cache;
+        this.scheduler = scheduler;
+        this.processRunner = processRunner;
+        this.transcoder = transcoder;
+        this.metrics = metrics;
+        this.jvmEngine = jvmEngine;
+        this.ffmpegEngine = ffmpegEngine;
+        this.router = router;
+        this.workArea = workArea;
+        this.costEstimator = costEstimator;
+    }
+
     @CrossOrigin(origins = "*")
     @PostMapping("/convert")
-    public ResponseEntity<InputStreamResource> convertImage(
+    public ResponseEntity<Resource> convertImage(
             @RequestParam("file") MultipartFile file,
             @RequestParam("format") String format) {
         File inputFile = null;
         File outputFile = null;
+        WorkArea.Allocation work = null;
+        ConversionCache.Flight flight = null;
+        ConversionScheduler.Slot slot = null;
+        ConversionMetrics.Recording recording = null;
 
         try {
-            if (!isSupportedFormat(format)) {
+            if (!transcoder.isSupportedFormat(format)) {
                 LOGGER.log(Level.WARNING, "Unsupported target format: {0}", format);
                 return ResponseEntity.badRequest().body(null);
             }
@@ -37,40 +69,6 @@ public class ImageConverterController {
                 return ResponseEntity.badRequest().body(null);
             }
 
-            inputFile = File.createTempFile("input", ".tmp");
-            file.transferTo(inputFile);
-
-            outputFile = File.createTempFile("output", "." + format);
-
-            ProcessBuilder processBuilder = new ProcessBuilder(
-                    "ffmpeg", "-y",
-                    "-i", inputFile.getAbsolutePath(),
-                    "-vf", "scale=1920:-1",
-                    outputFile.getAbsolutePath()
-            );
-            processBuilder.redirectErrorStream(true);
-            Process process = processBuilder.start();
-
-            long startTime = System.currentTimeMillis();
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    LOGGER.log(Level.INFO, line);
-                }
-            }
-
-            int exitCode = process.waitFor();
-            long endTime = System.currentTimeMillis();
-            LOGGER.log(Level.INFO, "FFmpeg process completed in {0} ms", (endTime - startTime));
-
-            if (exitCode != 0) {
-                LOGGER.log(Level.SEVERE, "FFmpeg process failed with exit code {0}", exitCode);
-                return ResponseEntity.status(500).body(null);
-            }
-
-            byte[] fileBytes = Files.readAllBytes(outputFile.toPath());
-            InputStreamResource resource = new InputStreamResource(new ByteArrayInputStream(fileBytes));
-
             String mimeType = resolveMimeType(format);
 
             // Получаем оригинальное имя файла без расширения
@@ -85,33 +83,117 @@ public class ImageConverterController {
             LOGGER.log(Level.INFO, "Base name: {0}", baseName);
             LOGGER.log(Level.INFO, "New filename: {0}", newFilename);
 
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.parseMediaType(mimeType));
-            headers.add(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + newFilename + "\"");
+            // Формат входа - по содержимому, а не по имени: не-изображение отклоняется (415) до хэширования и ffmpeg
+            InputFormat inputFormat = InputSniffer.require(MediaKind.IMAGE, file, originalFilename);
+            String sourceFormat = inputFormat.extension(originalFilename);
 
-            return ResponseEntity.ok()
-                    .headers(headers)
-                    .contentLength(fileBytes.length)
-                    .body(resource);
+            recording = metrics.start(MediaKind.IMAGE, originalFilename, format, file.getSize());
 
+            // Тот же файл с теми же параметрами и тем же движком уже конвертировали - отдаём из кэша.
+            // Движок выбирается заранее: imageio и ffmpeg дают разные файлы
+            ConversionEngine engine = transcoder.engine(sourceFormat, format);
+            if (engine == null) engine = ffmpegEngine;
+            flight = cache.join(cache.key(file, ImageTranscoder.cacheParams(format, engine)), format);
+            if (flight.isHit()) {
+                recording.cacheHit(flight.cachedFile().length());
+                return ConvertedFileResponse.attachment(flight.cachedFile(), mimeType, newFilename);
+            }
+
+            // Оценка стоимости по размеру кадра (413, если выше потолка), место в рабочей области
+            // (503, если квота исчерпана), затем слот для этого типа конвертаций в порядке стоимости
+            // (или 503 при переполненной очереди)
+            CostEstimator.Estimate estimate = costEstimator.estimate(MediaKind.IMAGE, sourceFormat, format, file, file.getSize());
+            work = workArea.allocate(MediaKind.IMAGE, file.getSize());
+            slot = scheduler.acquire(MediaKind.IMAGE, estimate);
+
+            // Распространённые растровые форматы - внутри JVM прямо из загрузки, если по замерам это быстрее ffmpeg
+            if (engine == jvmEngine) {
+                outputFile = work.file("output." + format);
+                long startTime = System.nanoTime();
+                boolean converted;
+                try (StageTimings.Stage stage = StageTimings.start("convert", jvmEngine.name());
+                     InputStream in = file.getInputStream()) {
+                    converted = jvmEngine.convert(in, outputFile, format);
+                }
+                router.record(jvmEngine, sourceFormat, format, System.nanoTime() - startTime, converted);
+                if (converted) {
+                    slot.succeeded();
+                    File result = flight.commit(outputFile);
+                    recording.success(result.length());
+                    return ConvertedFileResponse.attachment(result, mimeType, newFilename);
+                }
+                // imageio не справился - результат ffmpeg кэшируется под ключом ffmpeg
+                flight.close();
+                flight = cache.join(cache.key(file, ImageTranscoder.cacheParams(format, ffmpegEngine)), format);
+                if (flight.isHit()) {
+                    recording.cacheHit(flight.cachedFile().length());
+                    return ConvertedFileResponse.attachment(flight.cachedFile(), mimeType, newFilename);
+                }
+            }
+
+            // Одиночный кадр: читаем из stdin и пишем в stdout, без временных файлов
+            // (кроме запроса с Range: диапазон потока отдать нельзя).
+            // Замеры ffmpeg пишутся и здесь - иначе у него нет замеров и router.prefers всегда выбирает его
+            long ffmpegStart = System.nanoTime();
+            String pipeCodec = resolvePipeCodec(format);
+            if (properties.getFfmpeg().isPipeMode() && pipeCodec != null && inputFormat.isPipeReadable()
+                    && !ConvertedFileResponse.isRangeRequest()) {
+                FfmpegPipe pipe = processRunner.startPipe(MediaKind.IMAGE, List.of(
+                        "ffmpeg", "-f", inputFormat.getDemuxer(), "-i", "pipe:0",
+                        "-vf", ImageTranscoder.SCALE_FILTER,
+                        "-frames:v", "1",
+                        "-f", "image2pipe", "-c:v", pipeCodec, "pipe:1"
+                ), file.getInputStream(), "FFmpeg image");
+                // Слот освобождается, когда ответ дописан и ffmpeg завершён
+                pipe.releaseOnClose(slot.completeWith(pipe));
+                pipe.releaseOnClose(recording.completeWith(pipe));
+                pipe.releaseOnClose(() -> router.record(ffmpegEngine, sourceFormat, format,
+                        System.nanoTime() - ffmpegStart, pipe.succeeded()));
+                slot = null;
+                // Файлы не нужны - резерв освобождаем сразу
+                work.close();
+                if (!pipe.awaitOutput()) {
+                    pipe.close();
+                    return ResponseEntity.status(500).body(null);
+                }
+                return ConvertedFileResponse.stream(flight.tee(pipe), mimeType, newFilename);
+            }
+
+            // Расширение по содержимому
+            inputFile = work.file("input." + sourceFormat);
+            try (StageTimings.Stage stage = StageTimings.start("transfer")) {
+                file.transferTo(inputFile);
+            }
+
+            if (outputFile == null) {
+                outputFile = work.file("output." + format);
+            }
+
+            // Через EngineRouter - он же пишет замер
+            if (!transcoder.transcode(ffmpegEngine, inputFile, outputFile)) {
+                return ResponseEntity.status(500).body(null);
+            }
+            slot.succeeded();
+
+            // Результат переносится в кэш и отдаётся потоком с диска
+            File result = flight.commit(outputFile);
+            recording.success(result.length());
+            return ConvertedFileResponse.attachment(result, mimeType, newFilename);
+
+        } catch (ConversionRejectedException | ConversionTooCostlyException | UnsupportedInputException e) {
+            throw e;
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error during image conversion: {0}", e.getMessage());
             return ResponseEntity.status(500).body(null);
         } finally {
-            if (inputFile != null && inputFile.exists()) inputFile.delete();
-            if (outputFile != null && outputFile.exists()) outputFile.delete();
+            if (slot != null) slot.close();
+            if (recording != null) recording.close();
+            // Рабочий каталог удаляется и файл кэша открепляется после отправки ответа
+            ConvertedFileResponse.releaseAfterResponse(work);
+            ConvertedFileResponse.releaseAfterResponse(flight);
         }
     }
 
-    private boolean isSupportedFormat(String format) {
-        return format.equalsIgnoreCase("jpg") ||
-                format.equalsIgnoreCase("jpeg") ||
-                format.equalsIgnoreCase("png") ||
-                format.equalsIgnoreCase("bmp") ||
-                format.equalsIgnoreCase("tiff") ||
-                format.equalsIgnoreCase("webp");
-    }
-
     private String resolveMimeType(String format) {
         switch (format.toLowerCase()) {
             case "jpg":
@@ -130,6 +212,25 @@ public class ImageConverterController {
         }
     }
 
+    // Кодек ffmpeg для записи кадра в image2pipe
+    private String resolvePipeCodec(String format) {
+        switch (format.toLowerCase()) {
+            case "jpg":
+            case "jpeg":
+                return "mjpeg";
+            case "png":
+                return "png";
+            case "bmp":
+                return "bmp";
+            case "tiff":
+                return "tiff";
+            case "webp":
+                return "libwebp";
+            default:
+                return null;
+        }
+    }
+
     private String removeExtension(String filename) {
         if (filename == null) return "converted-file";
         int lastDot = filename.lastIndexOf('.');
@@ -0,0 +1,45 @@
+package com.iskander.converter;
+
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.util.List;
+
+// Конвертация изображения (файл -> файл) через движок, выбранный EngineRouter
+@Component
+public class ImageTranscoder {
+
+    // Фильтр масштабирования, входит и в ключ кэша вместе с движком
+    public static final String SCALE_FILTER = "scale=1920:-1";
+
+    private final EngineRouter router;
+
+    public ImageTranscoder(EngineRouter router) {
+        this.router = router;
+    }
+
+    public boolean isSupportedFormat(String format) {
+        return format.equalsIgnoreCase("jpg") ||
+                format.equalsIgnoreCase("jpeg") ||
+                format.equalsIgnoreCase("png") ||
+                format.equalsIgnoreCase("bmp") ||
+                format.equalsIgnoreCase("tiff") ||
+                format.equalsIgnoreCase("webp");
+    }
+
+    // Движок для пары форматов по замерам EngineRouter; выбирается до обращения к кэшу -
+    // imageio и ffmpeg дают разные файлы (кодеры, качество JPEG, ресэмплинг), поэтому движок входит в ключ
+    public ConversionEngine engine(String sourceFormat, String targetFormat) {
+        List<ConversionEngine> candidates = router.candidates(MediaKind.IMAGE, sourceFormat, targetFormat);
+        return candidates.isEmpty() ? null : candidates.get(0);
+    }
+
+    public static String[] cacheParams(String format, ConversionEngine engine) {
+        return new String[]{"image", format, SCALE_FILTER, engine.name()};
+    }
+
+    // Только выбранным движком: при неудаче результат другого движка не попадёт под его ключ кэша
+    public boolean transcode(ConversionEngine engine, File inputFile, File outputFile) throws InterruptedException {
+        return router.convert(engine, inputFile, outputFile, null);
+    }
+}
@@ -0,0 +1,94 @@
+package com.iskander.converter;
+
+// Формат входа, определённый InputSniffer по содержимому: тип конвертации, расширение для рабочего файла
+// (по нему EngineRouter выбирает движок) и демуксер ffmpeg, чтобы ffmpeg не угадывал формат сам
+public enum InputFormat {
+
+    JPEG(MediaKind.IMAGE, "jpg", "jpeg_pipe", true, "jpeg"),
+    PNG(MediaKind.IMAGE, "png", "png_pipe", true),
+    GIF(MediaKind.IMAGE, "gif", "gif", false),
+    BMP(MediaKind.IMAGE, "bmp", "bmp_pipe", true),
+    TIFF(MediaKind.IMAGE, "tiff", "tiff_pipe", true, "tif"),
+    WEBP(MediaKind.IMAGE, "webp", "webp_pipe", true),
+
+    MP3(MediaKind.AUDIO, "mp3", "mp3", true),
+    WAV(MediaKind.AUDIO, "wav", "wav", true),
+    FLAC(MediaKind.AUDIO, "flac", "flac", true),
+    OGG(MediaKind.AUDIO, "ogg", "ogg", true, "oga", "opus"),
+    AAC(MediaKind.AUDIO, "aac", "aac", true),
+    AIFF(MediaKind.AUDIO, "aiff", "aiff", false, "aif"),
+    M4A(MediaKind.AUDIO, "m4a", "mov", false),
+
+    MP4(MediaKind.VIDEO, "mp4", "mov", false, "m4v", "3gp"),
+    MOV(MediaKind.VIDEO, "mov", "mov", false),
+    MKV(MediaKind.VIDEO, "mkv", "matroska", false, "mka"),
+    WEBM(MediaKind.VIDEO, "webm", "matroska", false),
+    AVI(MediaKind.VIDEO, "avi", "avi", false),
+    FLV(MediaKind.VIDEO, "flv", "flv", false),
+    MPEG_TS(MediaKind.VIDEO, "ts", "mpegts", false, "mts", "m2ts"),
+    MPEG_PS(MediaKind.VIDEO, "mpg", "mpeg", false, "mpeg", "vob"),
+    ASF(MediaKind.VIDEO, "wmv", "asf", false, "wma", "asf"),
+
+    PDF(MediaKind.DOCUMENT, "pdf", null, false),
+    RTF(MediaKind.DOCUMENT, "rtf", null, false),
+    // Составной файл OLE2: тип (Word, Excel, PowerPoint) по началу файла не различить - soffice определит сам
+    OLE2(MediaKind.DOCUMENT, "doc", null, false, "xls", "ppt", "dot", "xlt", "pot"),
+    DOCX(MediaKind.DOCUMENT, "docx", null, false, "docm", "dotx"),
+    XLSX(MediaKind.DOCUMENT, "xlsx", null, false, "xlsm"),
+    PPTX(MediaKind.DOCUMENT, "pptx", null, false, "pptm", "ppsx"),
+    ODT(MediaKind.DOCUMENT, "odt", null, false, "ott"),
+    ODS(MediaKind.DOCUMENT, "ods", null, false, "ots"),
+    ODP(MediaKind.DOCUMENT, "odp", null, false, "otp"),
+    ODG(MediaKind.DOCUMENT, "odg", null, false),
+    TEXT(MediaKind.DOCUMENT, "txt", null, false, "csv", "html", "htm", "xml", "md");
+
+    private final MediaKind kind;
+    private final String extension;
+    private final String demuxer;
+    private final boolean pipeReadable;
+    private final String[] aliases;
+
+    InputFormat(MediaKind kind, String extension, String demuxer, boolean pipeReadable, String... aliases) {
+        this.kind = kind;
+        this.extension = extension;
+        this.demuxer = demuxer;
+        this.pipeReadable = pipeReadable;
+        this.aliases = aliases;
+    }
+
+    public MediaKind getKind() {
+        return kind;
+    }
+
+    // Демуксер для ffmpeg -f; null - вход не для ffmpeg
+    public String getDemuxer() {
+        return demuxer;
+    }
+
+    // ffmpeg читает формат последовательно из stdin (MP4/MOV с moov в конце требуют seek)
+    public boolean isPipeReadable() {
+        return pipeReadable;
+    }
+
+    // Можно ли отдать вход конвертации типа requested: из видеоконтейнера извлекают звук,
+    // в OGG бывает видео (Theora), а GIF конвертируют в видео
+    public boolean accepts(MediaKind requested) {
+        if (requested == kind) return true;
+        if (requested == MediaKind.AUDIO) return kind == MediaKind.VIDEO;
+        if (requested == MediaKind.VIDEO) return this == OGG || this == GIF;
+        return false;
+    }
+
+    // Расширение рабочего файла без точки. Расширение клиента сохраняется, если оно из того же семейства
+    // (xls для OLE2, csv для текста) - soffice выбирает по нему фильтр импорта
+    public String extension(String filename) {
+        if (filename != null) {
+            int lastDot = filename.lastIndexOf('.');
+            String clientExtension = lastDot == -1 ? "" : filename.substring(lastDot + 1).toLowerCase();
+            for (String alias : aliases) {
+                if (alias.equals(clientExtension)) return alias;
+            }
+        }
+        return extension;
+    }
+}
@@ -0,0 +1,234 @@
+package com.iskander.converter;
+
+import org.springframework.core.io.InputStreamSource;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// Определение формата входа по сигнатуре в первых байтах - в JVM, до запуска ffmpeg/soffice.
+// Мусор и вход не того типа отклоняются сразу (415), а ffmpeg получает демуксер через -f
+// и не перебирает форматы сам. Расширение имени файла клиента не учитывается.
+public final class InputSniffer {
+
+    // Достаточно для сигнатур, тега ID3 без обложки и имён первых записей zip (OOXML, ODF)
+    static final int HEADER_BYTES = 8192;
+
+    private static final int TS_PACKET = 188;
+
+    private InputSniffer() {
+    }
+
+    // Формат входа для конвертации типа kind; UnsupportedInputException - содержимое не распознано
+    // или другого типа. filename - имя у клиента, из него берётся расширение внутри семейства
+    public static InputFormat require(MediaKind kind, InputStreamSource source, String filename) throws IOException {
+        try (InputStream in = source.getInputStream()) {
+            return require(kind, sniff(in), filename);
+        }
+    }
+
+    public static InputFormat require(MediaKind kind, File file, String filename) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            return require(kind, sniff(in), filename);
+        }
+    }
+
+    private static InputFormat require(MediaKind kind, InputFormat format, String filename) {
+        if (format == null) {
+            throw new UnsupportedInputException(kind, filename, "content is not a recognised " + name(kind) + " format");
+        }
+        if (!format.accepts(kind)) {
+            throw new UnsupportedInputException(kind, filename,
+                    "content is " + format.name().toLowerCase() + ", not " + name(kind));
+        }
+        return format;
+    }
+
+    // Аргументы входа ffmpeg/ffprobe: -f <демуксер> -i <файл>. Рабочие файлы уже проверены при загрузке,
+    // поэтому нераспознанный или нечитаемый файл просто отдаётся ffmpeg без -f
+    public static List<String> ffmpegInput(File file) {
+        List<String> args = new ArrayList<>();
+        InputFormat format = null;
+        try (InputStream in = new FileInputStream(file)) {
+            format = sniff(in);
+        } catch (IOException e) {
+            // ffmpeg сообщит об ошибке сам
+        }
+        if (format != null && format.getDemuxer() != null) {
+            args.add("-f");
+            args.add(format.getDemuxer());
+        }
+        args.add("-i");
+        args.add(file.getAbsolutePath());
+        return args;
+    }
+
+    // null - формат не распознан
+    public static InputFormat sniff(InputStream in) throws IOException {
+        byte[] header = in.readNBytes(HEADER_BYTES);
+        return sniff(header, header.length);
+    }
+
+    public static InputFormat sniff(byte[] b, int length) {
+        if (length < 4) return null;
+
+        // Изображения
+        if (startsWith(b, length, 0, 0xFF, 0xD8, 0xFF)) return InputFormat.JPEG;
+        if (startsWith(b, length, 0, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)) return InputFormat.PNG;
+        if (ascii(b, length, 0, "GIF87a") || ascii(b, length, 0, "GIF89a")) return InputFormat.GIF;
+        if (startsWith(b, length, 0, 'I', 'I', 0x2A, 0x00) || startsWith(b, length, 0, 'M', 'M', 0x00, 0x2A)) {
+            return InputFormat.TIFF;
+        }
+
+        // RIFF: WAV, AVI, WebP
+        if (ascii(b, length, 0, "RIFF")) {
+            if (ascii(b, length, 8, "WAVE")) return InputFormat.WAV;
+            if (ascii(b, length, 8, "AVI ")) return InputFormat.AVI;
+            if (ascii(b, length, 8, "WEBP")) return InputFormat.WEBP;
+            return null;
+        }
+        if (ascii(b, length, 0, "FORM") && (ascii(b, length, 8, "AIFF") || ascii(b, length, 8, "AIFC"))) {
+            return InputFormat.AIFF;
+        }
+        if (ascii(b, length, 0, "fLaC")) return InputFormat.FLAC;
+        if (ascii(b, length, 0, "OggS")) return InputFormat.OGG;
+
+        // ISO BMFF: бренд в ftyp отличает QuickTime и аудио M4A; у старых MOV ftyp нет
+        if (ascii(b, length, 4, "ftyp")) {
+            if (ascii(b, length, 8, "qt  ")) return InputFormat.MOV;
+            if (ascii(b, length, 8, "M4A ") || ascii(b, length, 8, "M4B ")) return InputFormat.M4A;
+            return InputFormat.MP4;
+        }
+        if (ascii(b, length, 4, "moov") || ascii(b, length, 4, "mdat") || ascii(b, length, 4, "wide")) {
+            return InputFormat.MOV;
+        }
+
+        // EBML: WebM - Matroska с DocType "webm"
+        if (startsWith(b, length, 0, 0x1A, 0x45, 0xDF, 0xA3)) {
+            return indexOf(b, Math.min(length, 64), "webm") != -1 ? InputFormat.WEBM : InputFormat.MKV;
+        }
+        if (ascii(b, length, 0, "FLV") && b[3] == 0x01) return InputFormat.FLV;
+        if (startsWith(b, length, 0, 0x30, 0x26, 0xB2, 0x75, 0x8E, 0x66, 0xCF, 0x11)) return InputFormat.ASF;
+        if (startsWith(b, length, 0, 0x00, 0x00, 0x01, 0xBA)) return InputFormat.MPEG_PS;
+        if (isTransportStream(b, length)) return InputFormat.MPEG_TS;
+
+        // Документы
+        if (indexOf(b, Math.min(length, 1024), "%PDF-") != -1) return InputFormat.PDF;
+        if (ascii(b, length, 0, "{\\rtf")) return InputFormat.RTF;
+        if (startsWith(b, length, 0, 0xD0, 0xCF, 0x11, 0xE0, 0xA1, 0xB1, 0x1A, 0xE1)) return InputFormat.OLE2;
+        if (startsWith(b, length, 0, 'P', 'K', 0x03, 0x04)) return zipDocument(b, length);
+
+        // Звук без контейнера: ID3 и кадры MPEG/ADTS. Сигнатура короткая - проверяются и поля заголовка кадра
+        if (ascii(b, length, 0, "ID3")) return afterId3(b, length);
+        InputFormat frame = audioFrame(b, length, 0);
+        if (frame != null) return frame;
+
+        // BMP - в конце: "BM" встречается и в начале текста
+        if (ascii(b, length, 0, "BM") && length >= 18 && (b[14] == 12 || b[14] == 40 || b[14] == 56
+                || b[14] == 108 || b[14] == 124) && b[15] == 0) {
+            return InputFormat.BMP;
+        }
+        return isText(b, length) ? InputFormat.TEXT : null;
+    }
+
+    // Тег ID3v2 перед первым кадром; длина тега - synchsafe-целое. Тег длиннее заголовка (обложка) - считаем MP3
+    private static InputFormat afterId3(byte[] b, int length) {
+        if (length < 10) return null;
+        int size = ((b[6] & 0x7F) << 21) | ((b[7] & 0x7F) << 14) | ((b[8] & 0x7F) << 7) | (b[9] & 0x7F);
+        int offset = 10 + size + ((b[5] & 0x10) != 0 ? 10 : 0);
+        if (offset + 4 > length) return InputFormat.MP3;
+        if (ascii(b, length, offset, "fLaC")) return InputFormat.FLAC;
+        InputFormat frame = audioFrame(b, length, offset);
+        return frame != null ? frame : InputFormat.MP3;
+    }
+
+    // Заголовок кадра MPEG Layer II/III или AAC ADTS
+    private static InputFormat audioFrame(byte[] b, int length, int offset) {
+        if (offset + 4 > length || (b[offset] & 0xFF) != 0xFF) return null;
+        int b1 = b[offset + 1] & 0xFF;
+        int b2 = b[offset + 2] & 0xFF;
+        if ((b1 & 0xF6) == 0xF0) {
+            // ADTS: профиль и частота дискретизации в пределах таблицы
+            return ((b2 >> 2) & 0x0F) < 13 ? InputFormat.AAC : null;
+        }
+        int layer = (b1 >> 1) & 0x03;
+        int version = (b1 >> 3) & 0x03;
+        int bitrate = b2 >> 4;
+        int sampleRate = (b2 >> 2) & 0x03;
+        if ((b1 & 0xE0) == 0xE0 && version != 1 && (layer == 1 || layer == 2) && bitrate != 0x0F && sampleRate != 3) {
+            return InputFormat.MP3;
+        }
+        return null;
+    }
+
+    // Пакеты MPEG-TS по 188 байт, каждый начинается с 0x47
+    private static boolean isTransportStream(byte[] b, int length) {
+        if (length < TS_PACKET * 2 + 1) return false;
+        return b[0] == 0x47 && b[TS_PACKET] == 0x47 && b[TS_PACKET * 2] == 0x47;
+    }
+
+    // ODF хранит первой записью несжатый mimetype; в OOXML части word/, xl/, ppt/ идут сразу за [Content_Types].xml.
+    // Другой zip (архив, EPUB) документом не считается
+    private static InputFormat zipDocument(byte[] b, int length) {
+        if (ascii(b, length, 30, "mimetype")) {
+            if (ascii(b, length, 38, "application/vnd.oasis.opendocument.text")) return InputFormat.ODT;
+            if (ascii(b, length, 38, "application/vnd.oasis.opendocument.spreadsheet")) return InputFormat.ODS;
+            if (ascii(b, length, 38, "application/vnd.oasis.opendocument.presentation")) return InputFormat.ODP;
+            if (ascii(b, length, 38, "application/vnd.oasis.opendocument.graphics")) return InputFormat.ODG;
+            return null;
+        }
+        if (indexOf(b, length, "word/") != -1) return InputFormat.DOCX;
+        if (indexOf(b, length, "xl/") != -1) return InputFormat.XLSX;
+        if (indexOf(b, length, "ppt/") != -1) return InputFormat.PPTX;
+        // Части документа дальше заголовка - по [Content_Types].xml ясно только, что это OOXML
+        return indexOf(b, length, "[Content_Types].xml") != -1 ? InputFormat.DOCX : null;
+    }
+
+    // Текст (TXT, CSV, HTML): нет управляющих символов, кроме пробельных; UTF-16 - по BOM
+    private static boolean isText(byte[] b, int length) {
+        if (startsWith(b, length, 0, 0xFF, 0xFE) || startsWith(b, length, 0, 0xFE, 0xFF)) return true;
+        for (int i = 0; i < length; i++) {
+            int c = b[i] & 0xFF;
+            if (c < 0x20 && c != '\t' && c != '\n' && c != '\r' && c != '\f' && c != 0x1B) return false;
+            if (c == 0x7F) return false;
+        }
+        return true;
+    }
+
+    private static boolean startsWith(byte[] b, int length, int offset, int... signature) {
+        if (offset + signature.length > length) return false;
+        for (int i = 0; i < signature.length; i++) {
+            if ((b[offset + i] & 0xFF) != signature[i]) return false;
+        }
+        return true;
+    }
+
+    private static boolean ascii(byte[] b, int length, int offset, String signature) {
+        byte[] expected = signature.getBytes(StandardCharsets.US_ASCII);
+        if (offset + expected.length > length) return false;
+        for (int i = 0; i < expected.length; i++) {
+            if (b[offset + i] != expected[i]) return false;
+        }
+        return true;
+    }
+
+    private static int indexOf(byte[] b, int length, String text) {
+        byte[] pattern = text.getBytes(StandardCharsets.US_ASCII);
+        search:
+        for (int i = 0; i + pattern.length <= length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (b[i + j] != pattern[j]) continue search;
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static String name(MediaKind kind) {
+        return kind.name().toLowerCase();
+    }
+}
@@ -0,0 +1,72 @@
+package com.iskander.converter;
+
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.function.DoubleConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// MP3 -> WAV внутри JVM (jlayer), без процесса ffmpeg
+@Component
+public class JlayerMp3Engine implements ConversionEngine {
+
+    private static final Logger LOGGER = Logger.getLogger(JlayerMp3Engine.class.getName());
+
+    private final ConverterProperties.Audio settings;
+    private final CpuPool cpuPool;
+
+    public JlayerMp3Engine(ConverterProperties properties, CpuPool cpuPool) {
+        this.settings = properties.getAudio();
+        this.cpuPool = cpuPool;
+    }
+
+    @Override
+    public String name() {
+        return "jlayer";
+    }
+
+    @Override
+    public int priority() {
+        return 0;
+    }
+
+    @Override
+    public boolean supports(MediaKind kind, String sourceFormat, String targetFormat) {
+        return settings.isJvmMp3() && kind == MediaKind.AUDIO
+                && sourceFormat.equals("mp3") && targetFormat.equals("wav");
+    }
+
+    // WAV, декодируемый из MP3 по мере чтения; null - вход не удалось разобрать как MP3, нужен ffmpeg.
+    // Декодирует поток, читающий результат: в ответе это чередуется с записью в сокет, где виртуальный поток уступает носитель
+    public ConversionStream mp3ToWav(InputStreamSource source) throws IOException {
+        Mp3PcmDecoder.Info info;
+        try (InputStream in = source.getInputStream()) {
+            info = Mp3PcmDecoder.scan(in);
+        } catch (IOException e) {
+            LOGGER.log(Level.INFO, "MP3 stream not readable by jlayer: {0}", e.getMessage());
+            return null;
+        }
+        if (info == null || !WavPcmStream.fits(info)) return null;
+        return new WavPcmStream(new Mp3PcmDecoder(source.getInputStream(), info), info);
+    }
+
+    @Override
+    public boolean convert(File inputFile, File outputFile, DoubleConsumer progress) throws Exception {
+        ConversionStream wav = mp3ToWav(new FileSystemResource(inputFile));
+        if (wav == null) return false;
+        // Файл в файл - сплошной расчёт, он идёт в пуле вычислений
+        return cpuPool.call(() -> {
+            try (ConversionStream in = wav; OutputStream out = new FileOutputStream(outputFile)) {
+                in.transferTo(out);
+            }
+            return wav.succeeded();
+        });
+    }
+}
@@ -0,0 +1,41 @@
+package com.iskander.converter;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+// Очередь фоновых задач между API-узлами и отдельными воркерами (converter.cluster.role).
+// Вход и результат задачи лежат в хранилище, доступном обеим сторонам.
+public interface JobQueue {
+
+    // Каталог задачи в общем хранилище; API-узел кладёт туда вход до enqueue
+    File directory(String id) throws IOException;
+
+    void enqueue(QueuedJob job) throws IOException;
+
+    // Следующая задача одного из типов kinds (самая старая), закреплённая за воркером; null - очередь пуста
+    QueuedJob claim(String workerId, Set<MediaKind> kinds) throws IOException;
+
+    // false - задачу удалили (отменили), воркеру пора остановиться
+    boolean update(String id, QueuedJobState state) throws IOException;
+
+    // null - состояние ещё не опубликовано
+    QueuedJobState state(String id);
+
+    // false - задачу удалили; в отличие от directory ничего не создаёт
+    boolean exists(String id);
+
+    // Удаляет задачу вместе с файлами
+    void delete(String id);
+
+    void advertise(WorkerInfo worker) throws IOException;
+
+    void withdraw(String workerId);
+
+    List<WorkerInfo> workers();
+
+    // Возвращает в очередь задачи воркеров, которые не объявлялись дольше heartbeatTimeout; число таких задач
+    int requeueAbandoned(Duration heartbeatTimeout);
+}
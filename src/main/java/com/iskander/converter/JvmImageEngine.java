@@ -0,0 +1,195 @@
+package com.iskander.converter;
+
+import org.springframework.stereotype.Component;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.concurrent.ExecutionException;
+import java.util.function.DoubleConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Конвертация растровых изображений внутри JVM (ImageIO): декодирование, масштабирование, кодирование.
+// Для мелких картинок запуск ffmpeg стоит на порядки дороже самой работы.
+// Форматы, которые ImageIO не читает/не пишет (WEBP и т.п.), остаются за ffmpeg.
+@Component
+public class JvmImageEngine implements ConversionEngine {
+
+    private static final Logger LOGGER = Logger.getLogger(JvmImageEngine.class.getName());
+
+    // Та же ширина, что в ImageTranscoder.SCALE_FILTER ("scale=1920:-1"); сами файлы у imageio и ffmpeg разные,
+    // поэтому движок входит в ключ кэша (ImageTranscoder.cacheParams)
+    static final int TARGET_WIDTH = 1920;
+
+    private final ConverterProperties.Image settings;
+    private final CpuPool cpuPool;
+
+    public JvmImageEngine(ConverterProperties properties, CpuPool cpuPool) {
+        this.settings = properties.getImage();
+        this.cpuPool = cpuPool;
+        // Без дискового кэша ImageIO для потоков - всё в памяти
+        ImageIO.setUseCache(false);
+    }
+
+    @Override
+    public String name() {
+        return "imageio";
+    }
+
+    @Override
+    public int priority() {
+        return 0;
+    }
+
+    @Override
+    public boolean supports(MediaKind kind, String sourceFormat, String targetFormat) {
+        return kind == MediaKind.IMAGE && supports(sourceFormat, targetFormat);
+    }
+
+    // inputExtension - с точкой, как из getExtension(), или без неё
+    public boolean supports(String inputExtension, String format) {
+        return settings.isJvmEngine() && isJvmFormat(inputExtension.replace(".", "")) && isJvmFormat(format);
+    }
+
+    @Override
+    public boolean convert(File inputFile, File outputFile, DoubleConsumer progress) throws Exception {
+        String name = outputFile.getName();
+        try (InputStream in = new FileInputStream(inputFile)) {
+            return convert(in, outputFile, name.substring(name.lastIndexOf('.') + 1));
+        }
+    }
+
+    // false - изображение не удалось обработать в JVM (неизвестный вариант формата, слишком большое) -
+    // вызывающий переходит на ffmpeg
+    public boolean convert(InputStream source, File outputFile, String format) throws InterruptedException {
+        try {
+            return cpuPool.call(() -> convertNow(source, outputFile, format));
+        } catch (ExecutionException e) {
+            LOGGER.log(Level.WARNING, "JVM image conversion failed: {0}", e.getCause().toString());
+            return false;
+        }
+    }
+
+    private boolean convertNow(InputStream source, File outputFile, String format) throws IOException {
+        BufferedImage image = read(source);
+        if (image == null) return false;
+
+        String formatName = writerFormat(format);
+        BufferedImage scaled = scale(image, hasAlpha(formatName) && image.getColorModel().hasAlpha());
+
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(formatName);
+        if (!writers.hasNext()) return false;
+        ImageWriter writer = writers.next();
+        outputFile.delete();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(outputFile)) {
+            writer.setOutput(out);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (formatName.equals("jpeg")) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(settings.getJpegQuality());
+            }
+            writer.write(null, new IIOImage(scaled, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return true;
+    }
+
+    private BufferedImage read(InputStream source) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(source)) {
+            if (in == null) return null;
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) return null;
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                // Размер проверяем по заголовку, до выделения памяти под пиксели
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if (pixels > settings.getMaxPixels()) {
+                    LOGGER.log(Level.INFO, "Image of {0} pixels is too large for the JVM engine", pixels);
+                    return null;
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private BufferedImage scale(BufferedImage image, boolean keepAlpha) {
+        int width = TARGET_WIDTH;
+        int height = Math.max(1, (int) Math.round((double) image.getHeight() * TARGET_WIDTH / image.getWidth()));
+        int type = keepAlpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+
+        // Сильное уменьшение - несколькими шагами вдвое, иначе билинейная интерполяция даёт алиасинг
+        BufferedImage current = image;
+        while (current.getWidth() / 2 >= width) {
+            current = draw(current, new BufferedImage(current.getWidth() / 2,
+                    Math.max(1, current.getHeight() / 2), type));
+        }
+
+        // Холст каждый раз новый: переиспользовать его в ThreadLocal бессмысленно на виртуальных потоках,
+        // а на потоках CpuPool он держал бы самый большой кадр бессрочно
+        return draw(current, new BufferedImage(width, height, type));
+    }
+
+    private static BufferedImage draw(BufferedImage source, BufferedImage target) {
+        Graphics2D g = target.createGraphics();
+        try {
+            if (!target.getColorModel().hasAlpha()) {
+                // Прозрачность при записи в JPG/BMP заливается белым, как у большинства редакторов
+                g.setColor(Color.WHITE);
+                g.fillRect(0, 0, target.getWidth(), target.getHeight());
+            } else {
+                g.setComposite(AlphaComposite.Src);
+            }
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(source, 0, 0, target.getWidth(), target.getHeight(), null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    private static boolean isJvmFormat(String format) {
+        return format.equalsIgnoreCase("jpg") ||
+                format.equalsIgnoreCase("jpeg") ||
+                format.equalsIgnoreCase("png") ||
+                format.equalsIgnoreCase("bmp") ||
+                format.equalsIgnoreCase("tiff") ||
+                format.equalsIgnoreCase("tif");
+    }
+
+    private static String writerFormat(String format) {
+        switch (format.toLowerCase()) {
+            case "jpg":
+            case "jpeg":
+                return "jpeg";
+            case "tif":
+            case "tiff":
+                return "tiff";
+            default:
+                return format.toLowerCase();
+        }
+    }
+
+    private static boolean hasAlpha(String formatName) {
+        return formatName.equals("png") || formatName.equals("tiff");
+    }
+}
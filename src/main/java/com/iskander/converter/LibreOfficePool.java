@@ -0,0 +1,108 @@
+package com.iskander.converter;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.jodconverter.core.office.OfficeException;
+import org.jodconverter.local.LocalConverter;
+import org.jodconverter.local.office.LocalOfficeManager;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.util.function.DoubleConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Пул долгоживущих headless-процессов LibreOffice.
+// Каждый процесс слушает свой порт и работает со своим профилем (в workingDir),
+// перезапускается после maxTasksPerProcess задач и при падении/зависании.
+@Component
+public class LibreOfficePool implements ConversionEngine {
+
+    private static final Logger LOGGER = Logger.getLogger(LibreOfficePool.class.getName());
+
+    private final ConverterProperties.Pool settings;
+    private LocalOfficeManager officeManager;
+    private LocalConverter converter;
+
+    public LibreOfficePool(ConverterProperties properties) {
+        this.settings = properties.getDocument().getPool();
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!settings.isEnabled()) {
+            LOGGER.log(Level.INFO, "LibreOffice pool is disabled, falling back to one soffice process per request");
+            return;
+        }
+
+        LocalOfficeManager.Builder builder = LocalOfficeManager.builder()
+                .portNumbers(settings.getPortNumbers())
+                .maxTasksPerProcess(settings.getMaxTasksPerProcess())
+                .taskExecutionTimeout(settings.getTaskExecutionTimeout())
+                .taskQueueTimeout(settings.getTaskQueueTimeout())
+                .processTimeout(settings.getProcessTimeout())
+                .processRetryInterval(settings.getProcessRetryInterval());
+        if (settings.getOfficeHome() != null) {
+            builder.officeHome(settings.getOfficeHome());
+        }
+        if (settings.getWorkingDir() != null) {
+            builder.workingDir(settings.getWorkingDir());
+        }
+
+        try {
+            LocalOfficeManager manager = builder.build();
+            manager.start();
+            officeManager = manager;
+            converter = LocalConverter.make(manager);
+            LOGGER.log(Level.INFO, "LibreOffice pool started with {0} processes", settings.getPortNumbers().length);
+        } catch (OfficeException | IllegalStateException e) {
+            // LibreOffice не установлен или не стартует - работаем без пула
+            LOGGER.log(Level.WARNING, "Could not start LibreOffice pool: {0}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (officeManager == null) return;
+        try {
+            officeManager.stop();
+        } catch (OfficeException e) {
+            LOGGER.log(Level.WARNING, "Error while stopping LibreOffice pool: {0}", e.getMessage());
+        }
+    }
+
+    public boolean isAvailable() {
+        return officeManager != null && officeManager.isRunning();
+    }
+
+    @Override
+    public String name() {
+        return "libreoffice-pool";
+    }
+
+    @Override
+    public int priority() {
+        return 0;
+    }
+
+    // Без запущенного пула движок не участвует в выборе
+    @Override
+    public boolean supports(MediaKind kind, String sourceFormat, String targetFormat) {
+        return kind == MediaKind.DOCUMENT && isAvailable();
+    }
+
+    @Override
+    public boolean convert(File inputFile, File outputFile, DoubleConsumer progress) throws Exception {
+        // При ошибке пул сам перезапустит упавший процесс, а маршрутизатор попробует следующий движок
+        convert(inputFile, outputFile);
+        return outputFile.exists();
+    }
+
+    // Конвертация на одном из тёплых процессов пула; формат определяется по расширению outputFile
+    public void convert(File inputFile, File outputFile) throws OfficeException {
+        if (!isAvailable()) {
+            throw new IllegalStateException("LibreOffice pool is not running");
+        }
+        converter.convert(inputFile).to(outputFile).execute();
+    }
+}
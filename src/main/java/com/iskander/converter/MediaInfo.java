@@ -0,0 +1,78 @@
+package com.iskander.converter;
+
+import java.util.List;
+
+// Результат ffprobe: длительность и потоки входного файла
+public class MediaInfo {
+
+    public static final MediaInfo UNKNOWN = new MediaInfo(-1, List.of());
+
+    private final double durationSeconds;
+    private final List<Stream> streams;
+
+    public MediaInfo(double durationSeconds, List<Stream> streams) {
+        this.durationSeconds = durationSeconds;
+        this.streams = streams;
+    }
+
+    // -1, если длительность неизвестна
+    public double getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    public List<Stream> getStreams() {
+        return streams;
+    }
+
+    // Первый поток заданного типа ("video", "audio") или null
+    public Stream firstStream(String codecType) {
+        for (Stream stream : streams) {
+            if (codecType.equals(stream.getCodecType())) {
+                return stream;
+            }
+        }
+        return null;
+    }
+
+    public static class Stream {
+
+        private final int index;
+        private final String codecType;
+        private final String codecName;
+        // Размер кадра видеопотока; 0 - неизвестен или не видео
+        private final int width;
+        private final int height;
+
+        public Stream(int index, String codecType, String codecName) {
+            this(index, codecType, codecName, 0, 0);
+        }
+
+        public Stream(int index, String codecType, String codecName, int width, int height) {
+            this.index = index;
+            this.codecType = codecType;
+            this.codecName = codecName;
+            this.width = width;
+            this.height = height;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public String getCodecType() {
+            return codecType;
+        }
+
+        public String getCodecName() {
+            return codecName;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.iskander.converter;
+
+// Тип конвертации - у каждого свои лимиты, очередь и инструмент
+public enum MediaKind {
+    IMAGE,
+    AUDIO,
+    VIDEO,
+    DOCUMENT
+}
@@ -0,0 +1,83 @@
+package com.iskander.converter;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Сведения о входном файле через ffprobe
+@Component
+public class MediaProbe {
+
+    private static final Logger LOGGER = Logger.getLogger(MediaProbe.class.getName());
+
+    private final ObjectMapper objectMapper;
+    private final ProcessSupervisor supervisor;
+    private final Duration timeout;
+
+    public MediaProbe(ObjectMapper objectMapper, ProcessSupervisor supervisor, ConverterProperties properties) {
+        this.objectMapper = objectMapper;
+        this.supervisor = supervisor;
+        this.timeout = properties.getProcesses().getProbeTimeout();
+    }
+
+    // Длительность в секундах, -1 если определить не удалось (картинка, повреждённый файл)
+    public double durationSeconds(File file) {
+        return probe(file).getDurationSeconds();
+    }
+
+    // Длительность, кодеки и размер кадра потоков; MediaInfo.UNKNOWN, если ffprobe не справился
+    public MediaInfo probe(File file) {
+        // Демуксер по содержимому - ffprobe не перебирает форматы
+        List<String> command = new ArrayList<>(List.of(
+                "ffprobe", "-v", "error",
+                "-show_entries", "format=duration:stream=index,codec_type,codec_name,width,height",
+                "-of", "json"
+        ));
+        command.addAll(InputSniffer.ffmpegInput(file));
+        ProcessBuilder processBuilder = new ProcessBuilder(command);
+        try (StageTimings.Stage stage = StageTimings.start("probe")) {
+            Process process = processBuilder.start();
+            JsonNode root;
+            try (ProcessSupervisor.Supervision supervision = supervisor.supervise(process, timeout, "FFprobe", true)) {
+                try (InputStream in = process.getInputStream()) {
+                    root = objectMapper.readTree(in);
+                } catch (IOException e) {
+                    // Убитый сторожем ffprobe оставляет обрезанный JSON
+                    if (supervision.isKilled()) {
+                        LOGGER.log(Level.WARNING, "Probe of {0} {1}", new Object[]{file.getName(), supervision.getKillReason()});
+                        return MediaInfo.UNKNOWN;
+                    }
+                    throw e;
+                }
+                if (process.waitFor() != 0 || root == null || supervision.isKilled()) return MediaInfo.UNKNOWN;
+            }
+
+            List<MediaInfo.Stream> streams = new ArrayList<>();
+            for (JsonNode stream : root.path("streams")) {
+                streams.add(new MediaInfo.Stream(
+                        stream.path("index").asInt(),
+                        stream.path("codec_type").asText(""),
+                        stream.path("codec_name").asText(""),
+                        stream.path("width").asInt(0),
+                        stream.path("height").asInt(0)));
+            }
+            double duration = root.path("format").path("duration").asDouble(-1);
+            return new MediaInfo(duration > 0 ? duration : -1, streams);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not probe {0}: {1}", new Object[]{file.getName(), e.getMessage()});
+            return MediaInfo.UNKNOWN;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return MediaInfo.UNKNOWN;
+        }
+    }
+}
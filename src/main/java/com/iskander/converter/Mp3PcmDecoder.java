@@ -0,0 +1,143 @@
+package com.iskander.converter;
+
+import javazoom.jl.decoder.Bitstream;
+import javazoom.jl.decoder.BitstreamException;
+import javazoom.jl.decoder.Decoder;
+import javazoom.jl.decoder.DecoderException;
+import javazoom.jl.decoder.Header;
+import javazoom.jl.decoder.SampleBuffer;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Декодирование MP3 в 16-битный PCM внутри JVM (jlayer), покадрово - без временных файлов и процессов.
+// Кадры читаются по требованию, так что PCM можно отдавать любому потребителю (WAV, другие кодеры).
+public class Mp3PcmDecoder implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(Mp3PcmDecoder.class.getName());
+
+    // Параметры потока, известные до декодирования: частота, число каналов и общее число сэмплов
+    public static class Info {
+
+        private final int sampleRate;
+        private final int channels;
+        private final long totalSamples;
+
+        Info(int sampleRate, int channels, long totalSamples) {
+            this.sampleRate = sampleRate;
+            this.channels = channels;
+            this.totalSamples = totalSamples;
+        }
+
+        public int getSampleRate() {
+            return sampleRate;
+        }
+
+        public int getChannels() {
+            return channels;
+        }
+
+        // Сэмплов на канал
+        public long getTotalSamples() {
+            return totalSamples;
+        }
+    }
+
+    private final Bitstream bitstream;
+    private final Decoder decoder = new Decoder();
+    private final short[] silence;
+    private final int channels;
+    private short[] samples;
+
+    public Mp3PcmDecoder(InputStream source, Info info) {
+        this.bitstream = new Bitstream(new BufferedInputStream(source));
+        this.channels = info.getChannels();
+        this.silence = new short[1152 * channels];
+    }
+
+    // Быстрый проход только по заголовкам кадров (без декодирования), чтобы заранее знать длину PCM.
+    // null - это не MP3 или каналы/частота меняются по ходу файла
+    public static Info scan(InputStream source) throws IOException {
+        Bitstream bitstream = new Bitstream(new BufferedInputStream(source));
+        try {
+            int sampleRate = -1;
+            int channels = -1;
+            long totalSamples = 0;
+            Header header;
+            while ((header = bitstream.readFrame()) != null) {
+                int frameChannels = channelCount(header);
+                if (sampleRate == -1) {
+                    sampleRate = header.frequency();
+                    channels = frameChannels;
+                } else if (sampleRate != header.frequency() || channels != frameChannels) {
+                    return null;
+                }
+                totalSamples += samplesPerFrame(header);
+                bitstream.closeFrame();
+            }
+            return sampleRate == -1 ? null : new Info(sampleRate, channels, totalSamples);
+        } catch (BitstreamException e) {
+            throw new IOException("Invalid MP3 stream", e);
+        } finally {
+            try {
+                bitstream.close();
+            } catch (BitstreamException e) {
+                LOGGER.log(Level.FINE, "Error while closing MP3 stream: {0}", e.getMessage());
+            }
+        }
+    }
+
+    // Декодирует следующий кадр и возвращает число сэмплов в samples() (каналы чередуются); -1 - конец потока.
+    // Повреждённый кадр заменяется тишиной той же длины, чтобы не сбить длину, объявленную в заголовке
+    public int nextFrame() throws IOException {
+        try {
+            Header header = bitstream.readFrame();
+            if (header == null) return -1;
+            try {
+                SampleBuffer output = (SampleBuffer) decoder.decodeFrame(header, bitstream);
+                samples = output.getBuffer();
+                return output.getBufferLength();
+            } catch (DecoderException e) {
+                LOGGER.log(Level.FINE, "Skipping undecodable MP3 frame: {0}", e.getMessage());
+                samples = silence;
+                return samplesPerFrame(header) * channels;
+            } finally {
+                bitstream.closeFrame();
+            }
+        } catch (BitstreamException e) {
+            throw new IOException("Invalid MP3 stream", e);
+        }
+    }
+
+    // Буфер последнего кадра; переиспользуется декодером, действителен до следующего nextFrame()
+    public short[] samples() {
+        return samples;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            bitstream.close();
+        } catch (BitstreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static int channelCount(Header header) {
+        return header.mode() == Header.SINGLE_CHANNEL ? 1 : 2;
+    }
+
+    private static int samplesPerFrame(Header header) {
+        switch (header.layer()) {
+            case 1:
+                return 384;
+            case 2:
+                return 1152;
+            default:
+                return header.version() == Header.MPEG1 ? 1152 : 576;
+        }
+    }
+}
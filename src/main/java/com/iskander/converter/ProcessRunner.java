@@ -0,0 +1,152 @@
+package com.iskander.converter;
+
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Запуск внешнего инструмента (ffmpeg, ffprobe, soffice) с чтением его вывода.
+// Вывод пишется в лог только на уровне FINE; при ошибке - последние строки на SEVERE.
+@Component
+public class ProcessRunner {
+
+    private static final Logger LOGGER = Logger.getLogger(ProcessRunner.class.getName());
+
+    static final int OUTPUT_TAIL_LINES = 20;
+    private static final long CPU_SAMPLE_INTERVAL_NANOS = 200_000_000L;
+
+    private final ConversionMetrics metrics;
+    private final ProcessSupervisor supervisor;
+
+    public ProcessRunner(ConversionMetrics metrics, ProcessSupervisor supervisor) {
+        this.metrics = metrics;
+        this.supervisor = supervisor;
+    }
+
+    // Возвращает код выхода; каждая строка вывода (stdout + stderr) передаётся в lineListener.
+    // Процесс запускается с ограничениями типа kind; по таймауту - ProcessTimeoutException,
+    // при прерывании потока процесс убивается и выбрасывается InterruptedException.
+    // Отключение клиента во время такой конвертации не прерывает её - процесс работает до конца или до таймаута
+    public int run(MediaKind kind, List<String> command, String label, Consumer<String> lineListener)
+            throws IOException, InterruptedException {
+        ProcessBuilder processBuilder = new ProcessBuilder(supervisor.command(kind, command));
+        processBuilder.redirectErrorStream(true);
+        long startTime = System.nanoTime();
+        Process process;
+        try (StageTimings.Stage stage = StageTimings.start("spawn", label)) {
+            process = processBuilder.start();
+        }
+
+        OutputTail tail = new OutputTail();
+        CpuSampler cpu = new CpuSampler(process);
+        try (ProcessSupervisor.Supervision supervision = supervisor.supervise(kind, process, label, true);
+             StageTimings.Stage stage = StageTimings.start("process", label)) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    tail.add(line);
+                    cpu.maybeSample();
+                    if (lineListener != null) {
+                        lineListener.accept(line);
+                    }
+                }
+            }
+            cpu.sample();
+
+            int exitCode;
+            try {
+                exitCode = process.waitFor();
+            } catch (InterruptedException e) {
+                ProcessSupervisor.destroyTree(process);
+                throw e;
+            }
+            long wallNanos = System.nanoTime() - startTime;
+            finished(command.get(0), label, wallNanos, cpu.max(), exitCode, tail);
+            if (supervision.isTimedOut()) {
+                throw new ProcessTimeoutException(label + " process " + supervision.getKillReason());
+            }
+            if (supervision.isKilled()) {
+                // Поток прерван, пока процесс писал вывод: сторож его уже убил
+                throw new InterruptedException(label + " process " + supervision.getKillReason());
+            }
+            return exitCode;
+        }
+    }
+
+    public int run(MediaKind kind, List<String> command, String label) throws IOException, InterruptedException {
+        return run(kind, command, label, null);
+    }
+
+    // ffmpeg в pipe-режиме: вход из source, результат читается из возвращаемого потока
+    public FfmpegPipe startPipe(MediaKind kind, List<String> command, InputStream source, String label)
+            throws IOException {
+        return FfmpegPipe.start(supervisor.command(kind, command), source, label, this,
+                process -> supervisor.supervise(kind, process, label, false));
+    }
+
+    void finished(String tool, String label, long wallNanos, Duration cpuTime, int exitCode, OutputTail tail) {
+        LOGGER.log(Level.INFO, "{0} process completed in {1} ms", new Object[]{label, wallNanos / 1_000_000});
+        if (exitCode != 0) {
+            LOGGER.log(Level.SEVERE, "{0} process failed with exit code {1}, last output:\n{2}",
+                    new Object[]{label, exitCode, tail});
+        }
+        metrics.recordProcess(tool, wallNanos, cpuTime, exitCode);
+    }
+
+    // Последние строки вывода - для диагностики при ошибке
+    static class OutputTail {
+
+        private final ArrayDeque<String> lines = new ArrayDeque<>();
+
+        synchronized void add(String line) {
+            LOGGER.log(Level.FINE, line);
+            if (lines.size() == OUTPUT_TAIL_LINES) {
+                lines.removeFirst();
+            }
+            lines.addLast(line);
+        }
+
+        @Override
+        public synchronized String toString() {
+            return String.join("\n", lines);
+        }
+    }
+
+    // Процессорное время процесса. После выхода ОС его уже не отдаёт,
+    // поэтому снимаем по ходу работы и берём последнее (максимальное) значение.
+    static class CpuSampler {
+
+        private final Process process;
+        private long lastSample;
+        private Duration max;
+
+        CpuSampler(Process process) {
+            this.process = process;
+        }
+
+        synchronized void maybeSample() {
+            if (System.nanoTime() - lastSample >= CPU_SAMPLE_INTERVAL_NANOS) {
+                sample();
+            }
+        }
+
+        synchronized void sample() {
+            lastSample = System.nanoTime();
+            process.info().totalCpuDuration().ifPresent(cpu -> {
+                if (max == null || cpu.compareTo(max) > 0) max = cpu;
+            });
+        }
+
+        synchronized Duration max() {
+            return max;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.iskander.converter;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Контроль внешних процессов: ограничения ресурсов при запуске (ulimit, потоки ffmpeg) и сторож,
+// который убивает всё дерево процессов по таймауту типа конвертации, при прерывании потока-владельца
+// (отмена задачи) или при остановке приложения. Убивать нужно дерево: soffice и обёртка sh порождают дочерние процессы.
+// Отключение HTTP-клиента замечается только у потоковых ответов (FfmpegPipe, ZIP пакетной конвертации): синхронная
+// конвертация в файл (видео без progressive, документы, запасной путь через файл) о нём не узнаёт - её ограничивает таймаут.
+@Component
+public class ProcessSupervisor {
+
+    private static final Logger LOGGER = Logger.getLogger(ProcessSupervisor.class.getName());
+
+    private static final long CHECK_INTERVAL_MILLIS = 500;
+
+    private final ConverterProperties.Processes settings;
+    private final Set<Supervision> active = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService watchdog;
+    private final AtomicLong timedOut = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+
+    public ProcessSupervisor(ConverterProperties properties) {
+        this.settings = properties.getProcesses();
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "process-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        watchdog.scheduleWithFixedDelay(this::check, CHECK_INTERVAL_MILLIS, CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    // Команда с ограничениями типа kind
+    public List<String> command(MediaKind kind, List<String> command) {
+        return limitedCommand(command, settings.get(kind));
+    }
+
+    // ffmpeg получает -threads для кодирования и -filter_threads для фильтров, если вызывающий не задал их сам
+    // (сегменты делят лимит между собой); процессорное время и память ограничиваются через ulimit в sh, который затем заменяется самой командой
+    static List<String> limitedCommand(List<String> command, ConverterProperties.ProcessLimits limits) {
+        List<String> result = new ArrayList<>(command);
+        if (limits.getThreads() > 0 && "ffmpeg".equals(result.get(0)) && !result.contains("-threads")) {
+            String threads = String.valueOf(limits.getThreads());
+            // Перед выходом - относится к кодеру результата
+            result.addAll(result.size() - 1, List.of("-threads", threads));
+            result.addAll(1, List.of("-filter_threads", threads));
+        }
+
+        List<String> ulimits = new ArrayList<>();
+        if (limits.getCpuTime() != null) {
+            ulimits.add("ulimit -t " + Math.max(1, limits.getCpuTime().getSeconds()));
+        }
+        if (limits.getMemory() != null) {
+            ulimits.add("ulimit -v " + Math.max(1, limits.getMemory().toKilobytes()));
+        }
+        if (ulimits.isEmpty() || isWindows()) return result;
+
+        List<String> wrapped = new ArrayList<>();
+        wrapped.add("sh");
+        wrapped.add("-c");
+        wrapped.add(String.join(" && ", ulimits) + " && exec \"$0\" \"$@\"");
+        wrapped.addAll(result);
+        return wrapped;
+    }
+
+    // Таймаут типа kind. cancelOnInterrupt - убить, если поток-владелец (текущий) прерван: так отменяются задачи
+    public Supervision supervise(MediaKind kind, Process process, String label, boolean cancelOnInterrupt) {
+        return supervise(process, settings.get(kind).getTimeout(), label, cancelOnInterrupt);
+    }
+
+    public Supervision supervise(Process process, Duration timeout, String label, boolean cancelOnInterrupt) {
+        Supervision supervision = new Supervision(process, timeout, label,
+                cancelOnInterrupt ? Thread.currentThread() : null);
+        active.add(supervision);
+        return supervision;
+    }
+
+    public int running() {
+        return active.size();
+    }
+
+    public long timedOut() {
+        return timedOut.get();
+    }
+
+    public long cancelled() {
+        return cancelled.get();
+    }
+
+    private void check() {
+        long now = System.nanoTime();
+        for (Supervision supervision : active) {
+            if (supervision.isKilled() || !supervision.process.isAlive()) continue;
+            if (supervision.limited && now - supervision.deadline >= 0) {
+                timedOut.incrementAndGet();
+                supervision.timeoutReached = true;
+                supervision.kill("timed out after " + supervision.timeout);
+            } else if (supervision.owner != null && supervision.owner.isInterrupted()) {
+                supervision.cancel();
+            }
+        }
+    }
+
+    // Потомков собираем до остановки родителя: после его смерти они уходят к init и из дерева пропадают
+    static void destroyTree(Process process) {
+        List<ProcessHandle> descendants = process.descendants().toList();
+        process.destroyForcibly();
+        descendants.forEach(ProcessHandle::destroyForcibly);
+    }
+
+    private static boolean isWindows() {
+        return System.getProperty("os.name", "").toLowerCase().startsWith("windows");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        watchdog.shutdownNow();
+        for (Supervision supervision : active) {
+            supervision.kill("application is shutting down");
+        }
+    }
+
+    // Наблюдение за одним процессом; закрывается, когда процесс завершён
+    public class Supervision implements AutoCloseable {
+
+        private final Process process;
+        private final Duration timeout;
+        private final String label;
+        private final Thread owner;
+        private final boolean limited;
+        private final long deadline;
+        private volatile boolean timeoutReached;
+        private volatile String killReason;
+
+        private Supervision(Process process, Duration timeout, String label, Thread owner) {
+            this.process = process;
+            this.timeout = timeout;
+            this.label = label;
+            this.owner = owner;
+            this.limited = timeout != null && !timeout.isZero() && !timeout.isNegative();
+            this.deadline = limited ? System.nanoTime() + timeout.toNanos() : 0;
+        }
+
+        // Результат больше не нужен (клиент отключился) - процесс убивается сразу
+        public void cancel() {
+            if (isKilled() || !process.isAlive()) return;
+            cancelled.incrementAndGet();
+            kill("cancelled");
+        }
+
+        public boolean isTimedOut() {
+            return timeoutReached;
+        }
+
+        public boolean isKilled() {
+            return killReason != null;
+        }
+
+        public String getKillReason() {
+            return killReason;
+        }
+
+        synchronized void kill(String reason) {
+            if (killReason != null) return;
+            killReason = reason;
+            LOGGER.log(Level.WARNING, "Killing {0} process tree: {1}", new Object[]{label, reason});
+            destroyTree(process);
+        }
+
+        @Override
+        public void close() {
+            active.remove(this);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.iskander.converter;
+
+import java.io.IOException;
+
+// Внешний процесс не уложился в converter.processes.<kind>.timeout и был убит
+public class ProcessTimeoutException extends IOException {
+
+    public ProcessTimeoutException(String message) {
+        super(message);
+    }
+}
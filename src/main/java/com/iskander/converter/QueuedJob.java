@@ -0,0 +1,83 @@
+package com.iskander.converter;
+
+// Описание задачи в общей очереди: всё, что нужно воркеру на другом узле, чтобы её выполнить.
+// Вход и результат лежат в каталоге задачи (JobQueue.directory)
+public class QueuedJob {
+
+    private String id;
+    private MediaKind kind;
+    private String format;
+    private String inputName;
+    private String outputName;
+    private long createdAt;
+    // Оценка стоимости на API-узле, секунды; по ней воркеры берут короткие задачи раньше
+    private double estimatedSeconds;
+
+    public QueuedJob() {
+    }
+
+    public QueuedJob(String id, MediaKind kind, String format, String inputName, String outputName) {
+        this.id = id;
+        this.kind = kind;
+        this.format = format;
+        this.inputName = inputName;
+        this.outputName = outputName;
+        this.createdAt = System.currentTimeMillis();
+    }
+
+    public double getEstimatedSeconds() {
+        return estimatedSeconds;
+    }
+
+    public void setEstimatedSeconds(double estimatedSeconds) {
+        this.estimatedSeconds = estimatedSeconds;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public MediaKind getKind() {
+        return kind;
+    }
+
+    public void setKind(MediaKind kind) {
+        this.kind = kind;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public void setFormat(String format) {
+        this.format = format;
+    }
+
+    public String getInputName() {
+        return inputName;
+    }
+
+    public void setInputName(String inputName) {
+        this.inputName = inputName;
+    }
+
+    public String getOutputName() {
+        return outputName;
+    }
+
+    public void setOutputName(String outputName) {
+        this.outputName = outputName;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(long createdAt) {
+        this.createdAt = createdAt;
+    }
+}
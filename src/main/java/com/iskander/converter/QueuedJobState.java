@@ -0,0 +1,62 @@
+package com.iskander.converter;
+
+// Состояние задачи в общей очереди, которое воркер публикует для API-узлов
+public class QueuedJobState {
+
+    private ConversionJob.Status status = ConversionJob.Status.QUEUED;
+    private double progress;
+    private String error;
+    private String worker;
+    private long updatedAt;
+
+    public QueuedJobState() {
+    }
+
+    public QueuedJobState(ConversionJob.Status status, double progress, String error, String worker) {
+        this.status = status;
+        this.progress = progress;
+        this.error = error;
+        this.worker = worker;
+        this.updatedAt = System.currentTimeMillis();
+    }
+
+    public ConversionJob.Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(ConversionJob.Status status) {
+        this.status = status;
+    }
+
+    public double getProgress() {
+        return progress;
+    }
+
+    public void setProgress(double progress) {
+        this.progress = progress;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public String getWorker() {
+        return worker;
+    }
+
+    public void setWorker(String worker) {
+        this.worker = worker;
+    }
+
+    public long getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(long updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -0,0 +1,53 @@
+package com.iskander.converter;
+
+// Один вариант результата для /api/renditions/convert: формат, рамка по размеру и качество.
+// Пустые maxWidth/maxHeight - без ограничения по этой стороне; quality (1-100) - null для настроек кодека по умолчанию
+public class Rendition {
+
+    private String format;
+    private Integer maxWidth;
+    private Integer maxHeight;
+    // По умолчанию маленькие картинки не растягиваются до рамки
+    private boolean upscale;
+    private Integer quality;
+
+    public String getFormat() {
+        return format;
+    }
+
+    public void setFormat(String format) {
+        this.format = format;
+    }
+
+    public Integer getMaxWidth() {
+        return maxWidth;
+    }
+
+    public void setMaxWidth(Integer maxWidth) {
+        this.maxWidth = maxWidth;
+    }
+
+    public Integer getMaxHeight() {
+        return maxHeight;
+    }
+
+    public void setMaxHeight(Integer maxHeight) {
+        this.maxHeight = maxHeight;
+    }
+
+    public boolean isUpscale() {
+        return upscale;
+    }
+
+    public void setUpscale(boolean upscale) {
+        this.upscale = upscale;
+    }
+
+    public Integer getQuality() {
+        return quality;
+    }
+
+    public void setQuality(Integer quality) {
+        this.quality = quality;
+    }
+}
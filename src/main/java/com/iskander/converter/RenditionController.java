@@ -0,0 +1,267 @@
+package com.iskander.converter;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+// Несколько вариантов одного изображения/аудио за одну загрузку и одно декодирование.
+// Пример renditions: [{"format":"webp","maxWidth":640,"quality":80},{"format":"jpg","maxWidth":1280}]
+// Ответ - zip с вариантами в порядке запроса и manifest.json.
+@RestController
+@RequestMapping("/api/renditions")
+public class RenditionController {
+
+    private static final Logger LOGGER = Logger.getLogger(RenditionController.class.getName());
+
+    private final ConverterProperties.Renditions settings;
+    private final RenditionTranscoder transcoder;
+    private final ConversionCache cache;
+    private final ConversionScheduler scheduler;
+    private final ConversionMetrics metrics;
+    private final ObjectMapper objectMapper;
+    private final WorkArea workArea;
+    private final CostEstimator costEstimator;
+
+    public RenditionController(ConverterProperties properties, RenditionTranscoder transcoder,
+                               ConversionCache cache, ConversionScheduler scheduler,
+                               ConversionMetrics metrics, ObjectMapper objectMapper, WorkArea workArea,
+                               CostEstimator costEstimator) {
+        this.settings = properties.getRenditions();
+        this.transcoder = transcoder;
+        this.cache = cache;
+        this.scheduler = scheduler;
+        this.metrics = metrics;
+        this.objectMapper = objectMapper;
+        this.workArea = workArea;
+        this.costEstimator = costEstimator;
+    }
+
+    @CrossOrigin(origins = "*")
+    @PostMapping("/convert")
+    public ResponseEntity<StreamingResponseBody> convert(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam("type") String type,
+            @RequestParam("renditions") String renditionsJson) {
+        MediaKind kind = resolveKind(type);
+        List<Rendition> renditions = parseRenditions(renditionsJson);
+        if (kind == null || renditions == null || renditions.isEmpty()
+                || renditions.size() > settings.getMaxRenditions()) {
+            LOGGER.log(Level.WARNING, "Invalid rendition request: type {0}, renditions {1}",
+                    new Object[]{type, renditionsJson});
+            return ResponseEntity.badRequest().body(null);
+        }
+        for (Rendition rendition : renditions) {
+            if (!transcoder.isSupported(kind, rendition)) {
+                LOGGER.log(Level.WARNING, "Unsupported rendition: {0} {1}",
+                        new Object[]{rendition.getFormat(), String.join(" ", transcoder.cacheParams(kind, rendition))});
+                return ResponseEntity.badRequest().body(null);
+            }
+        }
+
+        String originalFilename = file.getOriginalFilename() != null ? file.getOriginalFilename() : "unknown-file";
+        WorkArea.Allocation work = null;
+        Map<String, ConversionCache.Flight> flights = new HashMap<>();
+        boolean streaming = false;
+        ConversionMetrics.Recording recording = null;
+
+        try {
+            // Формат входа - по содержимому: вход не того типа отклоняется (415) до хэширования и ffmpeg
+            String sourceFormat = InputSniffer.require(kind, file, originalFilename).extension(originalFilename);
+            recording = metrics.start(kind, originalFilename, "renditions", file.getSize());
+            // Резерв на вход и все варианты
+            work = workArea.allocate(kind, file.getSize() * renditions.size());
+
+            // Загрузка хэшируется по ходу записи на диск - один проход на все ключи вариантов
+            File inputFile = work.file("input." + sourceFormat);
+            MessageDigest digest = ConversionCache.sha256();
+            try (StageTimings.Stage stage = StageTimings.start("transfer");
+                 InputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+                Files.copy(in, inputFile.toPath());
+            }
+
+            List<String> keys = new ArrayList<>();
+            for (Rendition rendition : renditions) {
+                keys.add(cache.key(clone(digest), transcoder.cacheParams(kind, rendition)));
+            }
+            // Одинаковые варианты конвертируются один раз. Ключи захватываются в одном (сортированном) порядке
+            // во всех запросах - два запроса не могут ждать друг друга по кругу
+            Map<String, Rendition> byKey = new TreeMap<>();
+            for (int i = 0; i < renditions.size(); i++) {
+                byKey.putIfAbsent(keys.get(i), renditions.get(i));
+            }
+            for (Map.Entry<String, Rendition> entry : byKey.entrySet()) {
+                flights.put(entry.getKey(), cache.join(entry.getKey(), entry.getValue().getFormat()));
+            }
+
+            // Недостающие варианты - одним процессом ffmpeg
+            List<Rendition> pending = new ArrayList<>();
+            List<File> pendingOutputs = new ArrayList<>();
+            List<String> pendingKeys = new ArrayList<>();
+            for (Map.Entry<String, Rendition> entry : byKey.entrySet()) {
+                if (flights.get(entry.getKey()).isHit()) continue;
+                pending.add(entry.getValue());
+                pendingOutputs.add(work.file("out-" + pending.size() + "." + entry.getValue().getFormat().toLowerCase()));
+                pendingKeys.add(entry.getKey());
+            }
+
+            Map<String, File> results = new HashMap<>();
+            for (Map.Entry<String, ConversionCache.Flight> entry : flights.entrySet()) {
+                if (entry.getValue().isHit()) results.put(entry.getKey(), entry.getValue().cachedFile());
+            }
+            if (!pending.isEmpty()) {
+                // Декодирование одно, кодирование - на каждый вариант: стоимость как у pending.size() конвертаций
+                // в формат первого варианта
+                CostEstimator.Estimate estimate = costEstimator.estimate(kind, inputFile, pending.get(0).getFormat())
+                        .times(pending.size());
+                boolean converted;
+                try (ConversionScheduler.Slot slot = scheduler.acquire(kind, estimate)) {
+                    converted = transcoder.transcode(kind, inputFile, pending, pendingOutputs);
+                    if (converted) slot.succeeded();
+                }
+                if (!converted) {
+                    work.close();
+                    return ResponseEntity.status(500).body(null);
+                }
+                for (int i = 0; i < pending.size(); i++) {
+                    results.put(pendingKeys.get(i), flights.get(pendingKeys.get(i)).commit(pendingOutputs.get(i)));
+                }
+            }
+            inputFile.delete();
+
+            long totalBytes = results.values().stream().mapToLong(File::length).sum();
+            if (pending.isEmpty()) recording.cacheHit(totalBytes);
+            else recording.success(totalBytes);
+
+            WorkArea.Allocation responseWork = work;
+            String baseName = removeExtension(originalFilename);
+            Collection<ConversionCache.Flight> responseFlights = flights.values();
+            StreamingResponseBody body = out -> writeZip(baseName, renditions, keys, results, responseWork,
+                    responseFlights, out);
+            // Файлы из кэша закреплены, пока архив не записан
+            streaming = true;
+
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.parseMediaType("application/zip"));
+            headers.add(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + baseName + "-renditions.zip\"");
+            return ResponseEntity.ok().headers(headers).body(body);
+
+        } catch (ConversionRejectedException | ConversionTooCostlyException | UnsupportedInputException e) {
+            if (work != null) work.close();
+            throw e;
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error during rendition conversion: {0}", e.getMessage());
+            if (work != null) work.close();
+            return ResponseEntity.status(500).body(null);
+        } finally {
+            if (!streaming) flights.values().forEach(ConversionCache.Flight::close);
+            if (recording != null) recording.close();
+        }
+    }
+
+    private void writeZip(String baseName, List<Rendition> renditions, List<String> keys, Map<String, File> results,
+                          WorkArea.Allocation work, Collection<ConversionCache.Flight> flights, OutputStream out)
+            throws IOException {
+        try {
+            List<Map<String, Object>> manifest = new ArrayList<>();
+            Set<String> usedNames = new HashSet<>();
+            try (ZipOutputStream zip = new ZipOutputStream(out)) {
+                for (int i = 0; i < renditions.size(); i++) {
+                    Rendition rendition = renditions.get(i);
+                    File output = results.get(keys.get(i));
+                    String entryName = uniqueName(baseName + "-" + label(rendition) + "." + rendition.getFormat().toLowerCase(), usedNames);
+                    zip.putNextEntry(new ZipEntry(entryName));
+                    Files.copy(output.toPath(), zip);
+                    zip.closeEntry();
+
+                    Map<String, Object> entry = new LinkedHashMap<>();
+                    entry.put("output", entryName);
+                    entry.put("format", rendition.getFormat().toLowerCase());
+                    entry.put("maxWidth", rendition.getMaxWidth());
+                    entry.put("maxHeight", rendition.getMaxHeight());
+                    entry.put("upscale", rendition.isUpscale());
+                    entry.put("quality", rendition.getQuality());
+                    entry.put("bytes", output.length());
+                    manifest.add(entry);
+                }
+                zip.putNextEntry(new ZipEntry("manifest.json"));
+                zip.write(objectMapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(manifest));
+                zip.closeEntry();
+            }
+        } finally {
+            work.close();
+            flights.forEach(ConversionCache.Flight::close);
+        }
+    }
+
+    private List<Rendition> parseRenditions(String json) {
+        try {
+            return objectMapper.readValue(json, new TypeReference<List<Rendition>>() {
+            });
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Invalid renditions parameter: {0}", e.getMessage());
+            return null;
+        }
+    }
+
+    // Хэш содержимого нужен для каждого ключа, а key() его завершает
+    private MessageDigest clone(MessageDigest digest) {
+        try {
+            return (MessageDigest) digest.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private MediaKind resolveKind(String type) {
+        switch (type.toLowerCase()) {
+            case "image":
+                return MediaKind.IMAGE;
+            case "audio":
+                return MediaKind.AUDIO;
+            default:
+                return null;
+        }
+    }
+
+    // Имя варианта в архиве: 640x480, 640w, 480h или original
+    private String label(Rendition rendition) {
+        if (rendition.getMaxWidth() != null && rendition.getMaxHeight() != null) {
+            return rendition.getMaxWidth() + "x" + rendition.getMaxHeight();
+        }
+        if (rendition.getMaxWidth() != null) return rendition.getMaxWidth() + "w";
+        if (rendition.getMaxHeight() != null) return rendition.getMaxHeight() + "h";
+        return "original";
+    }
+
+    private String uniqueName(String name, Set<String> usedNames) {
+        String candidate = name;
+        for (int i = 2; !usedNames.add(candidate); i++) {
+            candidate = removeExtension(name) + "-" + i + name.substring(removeExtension(name).length());
+        }
+        return candidate;
+    }
+
+    private String removeExtension(String filename) {
+        if (filename == null) return "converted-file";
+        int lastDot = filename.lastIndexOf('.');
+        if (lastDot == -1) {
+            return filename;
+        }
+        return filename.substring(0, lastDot);
+    }
+}
@@ -0,0 +1,143 @@
+package com.iskander.converter;
+
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Несколько вариантов из одного декодирования: один процесс ffmpeg, поток делится фильтром split/asplit,
+// у каждой ветки свой масштаб и свой выход со своими настройками кодека.
+@Component
+public class RenditionTranscoder {
+
+    private final ConverterProperties.Renditions settings;
+    private final ImageTranscoder imageTranscoder;
+    private final AudioTranscoder audioTranscoder;
+    private final ProcessRunner processRunner;
+
+    public RenditionTranscoder(ConverterProperties properties, ImageTranscoder imageTranscoder,
+                               AudioTranscoder audioTranscoder, ProcessRunner processRunner) {
+        this.settings = properties.getRenditions();
+        this.imageTranscoder = imageTranscoder;
+        this.audioTranscoder = audioTranscoder;
+        this.processRunner = processRunner;
+    }
+
+    public boolean isSupported(MediaKind kind, Rendition rendition) {
+        if (rendition.getFormat() == null) return false;
+        if (rendition.getQuality() != null && (rendition.getQuality() < 1 || rendition.getQuality() > 100)) {
+            return false;
+        }
+        switch (kind) {
+            case IMAGE:
+                return imageTranscoder.isSupportedFormat(rendition.getFormat())
+                        && isValidDimension(rendition.getMaxWidth())
+                        && isValidDimension(rendition.getMaxHeight());
+            case AUDIO:
+                return audioTranscoder.isSupportedFormat(rendition.getFormat())
+                        && rendition.getMaxWidth() == null && rendition.getMaxHeight() == null;
+            default:
+                return false;
+        }
+    }
+
+    // Параметры, которые вместе с хэшем загрузки образуют ключ кэша варианта
+    public String[] cacheParams(MediaKind kind, Rendition rendition) {
+        String quality = rendition.getQuality() == null ? "default" : String.valueOf(rendition.getQuality());
+        return kind == MediaKind.IMAGE
+                ? new String[]{"image-rendition", rendition.getFormat(), scaleFilter(rendition), quality}
+                : new String[]{"audio-rendition", rendition.getFormat(), quality};
+    }
+
+    // outputs[i] - файл для renditions[i]
+    public boolean transcode(MediaKind kind, File inputFile, List<Rendition> renditions, List<File> outputs)
+            throws IOException, InterruptedException {
+        int exitCode = processRunner.run(kind, command(kind, inputFile, renditions, outputs), "FFmpeg renditions");
+        return exitCode == 0;
+    }
+
+    static List<String> command(MediaKind kind, File inputFile, List<Rendition> renditions, List<File> outputs) {
+        List<String> command = new ArrayList<>(List.of("ffmpeg", "-y"));
+        command.addAll(InputSniffer.ffmpegInput(inputFile));
+        command.add("-filter_complex");
+        command.add(filterGraph(kind, renditions));
+
+        for (int i = 0; i < renditions.size(); i++) {
+            Rendition rendition = renditions.get(i);
+            command.add("-map");
+            command.add("[out" + i + "]");
+            if (kind == MediaKind.IMAGE) {
+                // Анимированный вход (GIF и т.п.) - берём первый кадр
+                command.add("-frames:v");
+                command.add("1");
+            }
+            command.addAll(qualityArgs(rendition));
+            command.add(outputs.get(i).getAbsolutePath());
+        }
+        return command;
+    }
+
+    // [0:v]split=2[in0][in1];[in0]scale=...[out0];[in1]null[out1]
+    static String filterGraph(MediaKind kind, List<Rendition> renditions) {
+        boolean image = kind == MediaKind.IMAGE;
+        StringBuilder graph = new StringBuilder(image ? "[0:v]split=" : "[0:a]asplit=").append(renditions.size());
+        for (int i = 0; i < renditions.size(); i++) {
+            graph.append("[in").append(i).append(']');
+        }
+        for (int i = 0; i < renditions.size(); i++) {
+            graph.append(";[in").append(i).append(']')
+                    .append(image ? scaleFilter(renditions.get(i)) : "anull")
+                    .append("[out").append(i).append(']');
+        }
+        return graph.toString();
+    }
+
+    // Вписывает изображение в рамку с сохранением пропорций; без upscale меньшие картинки остаются как есть
+    static String scaleFilter(Rendition rendition) {
+        Integer width = rendition.getMaxWidth();
+        Integer height = rendition.getMaxHeight();
+        if (width == null && height == null) return "null";
+
+        String w = width == null ? "-1" : bound(width, "iw", rendition.isUpscale());
+        String h = height == null ? "-1" : bound(height, "ih", rendition.isUpscale());
+        if (width != null && height != null) {
+            return "scale=" + w + ":" + h + ":force_original_aspect_ratio=decrease";
+        }
+        return "scale=" + w + ":" + h;
+    }
+
+    private static String bound(int limit, String side, boolean upscale) {
+        // Запятая внутри выражения экранируется кавычками фильтрграфа
+        return upscale ? String.valueOf(limit) : "'min(" + limit + "," + side + ")'";
+    }
+
+    // quality 1-100 переводится в шкалу конкретного кодека; для форматов без потерь игнорируется
+    static List<String> qualityArgs(Rendition rendition) {
+        Integer quality = rendition.getQuality();
+        if (quality == null) return List.of();
+        switch (rendition.getFormat().toLowerCase()) {
+            case "jpg":
+            case "jpeg":
+                // mjpeg: 2 (лучшее) - 31
+                return List.of("-q:v", String.valueOf(2 + Math.round((100 - quality) * 29 / 100f)));
+            case "webp":
+                return List.of("-quality", String.valueOf(quality));
+            case "mp3":
+                // libmp3lame VBR: 0 (лучшее) - 9
+                return List.of("-q:a", String.valueOf(Math.round((100 - quality) * 9 / 100f)));
+            case "ogg":
+                // libvorbis: 0 - 10 (лучшее)
+                return List.of("-q:a", String.valueOf(Math.round(quality / 10f)));
+            case "aac":
+                return List.of("-b:a", (32 + Math.round(quality * 2.88f)) + "k");
+            default:
+                return List.of();
+        }
+    }
+
+    private boolean isValidDimension(Integer dimension) {
+        return dimension == null || (dimension > 0 && dimension <= settings.getMaxDimension());
+    }
+}
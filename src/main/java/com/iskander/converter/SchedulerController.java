@@ -0,0 +1,36 @@
+package com.iskander.converter;
+
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/scheduler")
+public class SchedulerController {
+
+    private final ConversionScheduler scheduler;
+    private final CostEstimator costEstimator;
+
+    public SchedulerController(ConversionScheduler scheduler, CostEstimator costEstimator) {
+        this.scheduler = scheduler;
+        this.costEstimator = costEstimator;
+    }
+
+    // Загрузка по типам и выученные секунды на единицу объёма по парам форматов
+    @GetMapping("/stats")
+    public Map<String, Object> stats() {
+        Map<String, Object> kinds = new LinkedHashMap<>();
+        for (MediaKind kind : MediaKind.values()) {
+            Map<String, Object> kindStats = new LinkedHashMap<>();
+            kindStats.put("running", scheduler.running(kind));
+            kindStats.put("queued", scheduler.queued(kind));
+            kindStats.put("rejected", scheduler.rejected(kind));
+            kinds.put(kind.name().toLowerCase(), kindStats);
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("kinds", kinds);
+        stats.put("costs", costEstimator.stats());
+        return stats;
+    }
+}
@@ -0,0 +1,193 @@
+package com.iskander.converter;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.DoubleConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Параллельное кодирование длинного видео: видеопоток режется по ключевым кадрам без перекодирования,
+// куски кодируются отдельными процессами ffmpeg, затем склеиваются concat-демультиплексором без потерь.
+// Звук не режется: он копируется или кодируется один раз по всему входу при склейке - иначе задержка
+// и добивка кадров AAC/Opus на каждом стыке дают щелчки и расхождение звука с картинкой.
+@Component
+public class SegmentedVideoTranscoder {
+
+    private static final Logger LOGGER = Logger.getLogger(SegmentedVideoTranscoder.class.getName());
+
+    // Доля прогресса на кодирование сегментов; остальное - нарезка и склейка
+    private static final double ENCODE_SHARE = 0.95;
+
+    private final ProcessRunner processRunner;
+    private final ConverterProperties.Video settings;
+    private final ConverterProperties.ProcessLimits limits;
+    private final ExecutorService executor;
+
+    public SegmentedVideoTranscoder(ProcessRunner processRunner, ConverterProperties properties) {
+        this.processRunner = processRunner;
+        this.settings = properties.getVideo();
+        this.limits = properties.getProcesses().getVideo();
+
+        // Потоки только ждут ffmpeg - виртуальные; параллелизм задаёт размер пула
+        this.executor = Executors.newFixedThreadPool(settings.getSegmentParallelism(),
+                Thread.ofVirtual().name("video-segment-", 1).factory());
+    }
+
+    // Число сегментов для входа такой длительности; меньше 2 - резать не имеет смысла
+    public int segmentCount(double durationSeconds) {
+        if (!settings.isSegmented() || durationSeconds <= 0) return 1;
+        double minSeconds = Math.max(1, settings.getMinSegmentDuration().toSeconds());
+        return (int) Math.max(1, Math.min(settings.getMaxSegments(), Math.floor(durationSeconds / minSeconds)));
+    }
+
+    // copyAudio - звук входа допустим в целевом контейнере и копируется, иначе кодируется.
+    // false - сегментированное кодирование не удалось, вызывающий может перекодировать целиком
+    public boolean transcode(File inputFile, File outputFile, double durationSeconds, int segments,
+                             boolean copyAudio, DoubleConsumer progress) throws IOException, InterruptedException {
+        // Куски - рядом с результатом, в рабочем каталоге конвертации (и в её резерве)
+        Path workDir = Files.createTempDirectory(outputFile.getAbsoluteFile().getParentFile().toPath(), "segments_");
+        String format = extension(outputFile);
+        try {
+            // 1. Нарезка видео копированием потока: сегмент-муксер режет только по ключевым кадрам,
+            // поэтому фактическое число кусков может немного отличаться от запрошенного
+            List<String> split = new ArrayList<>(List.of("ffmpeg", "-y"));
+            split.addAll(InputSniffer.ffmpegInput(inputFile));
+            split.addAll(List.of(
+                    "-map", "0:v:0",
+                    "-c", "copy",
+                    "-f", "segment",
+                    "-segment_time", String.format(Locale.ROOT, "%.3f", durationSeconds / segments),
+                    "-reset_timestamps", "1",
+                    workDir.resolve("part_%03d.mkv").toString()));
+            if (processRunner.run(MediaKind.VIDEO, split, "FFmpeg video split") != 0) {
+                return false;
+            }
+            File[] parts = workDir.toFile().listFiles((dir, name) -> name.startsWith("part_"));
+            if (parts == null || parts.length == 0) {
+                return false;
+            }
+            Arrays.sort(parts);
+            LOGGER.log(Level.INFO, "Transcoding {0} in {1} segments", new Object[]{inputFile.getName(), parts.length});
+
+            // 2. Кодирование кусков параллельно, прогресс - среднее по сегментам.
+            // Вызывающий занимает одно место VIDEO: лимит потоков одного процесса делится между сегментами
+            int threads = segmentThreads(limits.getThreads(), Runtime.getRuntime().availableProcessors(),
+                    Math.min(settings.getSegmentParallelism(), parts.length));
+            double[] fractions = new double[parts.length];
+            List<File> encoded = new ArrayList<>();
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < parts.length; i++) {
+                File part = parts[i];
+                File out = workDir.resolve("encoded_" + String.format("%03d", i) + "." + format).toFile();
+                encoded.add(out);
+                DoubleConsumer partProgress = progress == null ? null : partListener(fractions, i, progress);
+                double partDuration = durationSeconds / parts.length;
+                futures.add(executor.submit(() -> processRunner.run(MediaKind.VIDEO,
+                        segmentCommand(part, out, threads),
+                        "FFmpeg video segment",
+                        partProgress == null ? null : new FfmpegProgress(partDuration, partProgress))));
+            }
+            try {
+                for (Future<Integer> future : futures) {
+                    if (future.get() != 0) {
+                        return false;
+                    }
+                }
+            } catch (ExecutionException e) {
+                // Таймаут сегмента - таймаут всей конвертации: повтор одним процессом не поможет
+                if (e.getCause() instanceof ProcessTimeoutException) {
+                    throw (ProcessTimeoutException) e.getCause();
+                }
+                LOGGER.log(Level.SEVERE, "Segment transcoding failed: {0}", e.getCause().getMessage());
+                return false;
+            } finally {
+                futures.forEach(future -> future.cancel(true));
+            }
+
+            // 3. Склейка видео без перекодирования и звук целиком из входа
+            Path list = workDir.resolve("segments.txt");
+            StringBuilder listContent = new StringBuilder();
+            for (File file : encoded) {
+                listContent.append("file '").append(file.getAbsolutePath().replace("'", "'\\''")).append("'\n");
+            }
+            Files.writeString(list, listContent, StandardCharsets.UTF_8);
+            if (processRunner.run(MediaKind.VIDEO, concatCommand(list.toFile(), inputFile, outputFile, copyAudio),
+                    "FFmpeg video concat") != 0) {
+                return false;
+            }
+            if (progress != null) {
+                progress.accept(1);
+            }
+            return true;
+        } finally {
+            FileSystemUtils.deleteRecursively(workDir);
+        }
+    }
+
+    // Потоков на сегмент: лимит процесса (не задан - число ядер) на число одновременно кодируемых сегментов
+    static int segmentThreads(int processThreads, int processors, int parallelism) {
+        int budget = processThreads > 0 ? processThreads : processors;
+        return Math.max(1, budget / Math.max(1, parallelism));
+    }
+
+    // -threads задан явно - ProcessSupervisor не подставит лимит целого процесса
+    static List<String> segmentCommand(File part, File out, int threads) {
+        return List.of("ffmpeg", "-y", "-filter_threads", String.valueOf(threads),
+                "-f", "matroska", "-i", part.getAbsolutePath(),
+                "-progress", "pipe:1", "-nostats",
+                "-threads", String.valueOf(threads), out.getAbsolutePath());
+    }
+
+    static List<String> concatCommand(File list, File inputFile, File outputFile, boolean copyAudio) {
+        List<String> command = new ArrayList<>(List.of(
+                "ffmpeg", "-y",
+                "-f", "concat", "-safe", "0",
+                "-i", list.getAbsolutePath()));
+        command.addAll(InputSniffer.ffmpegInput(inputFile));
+        command.addAll(List.of("-map", "0:v:0", "-map", "1:a:0?", "-c:v", "copy"));
+        if (copyAudio) {
+            command.addAll(List.of("-c:a", "copy"));
+        }
+        command.add(outputFile.getAbsolutePath());
+        return command;
+    }
+
+    private static DoubleConsumer partListener(double[] fractions, int index, DoubleConsumer progress) {
+        return fraction -> {
+            double total;
+            synchronized (fractions) {
+                fractions[index] = fraction;
+                total = 0;
+                for (double value : fractions) {
+                    total += value;
+                }
+            }
+            progress.accept(ENCODE_SHARE * total / fractions.length);
+        };
+    }
+
+    private static String extension(File file) {
+        String name = file.getName();
+        return name.substring(name.lastIndexOf('.') + 1).toLowerCase();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
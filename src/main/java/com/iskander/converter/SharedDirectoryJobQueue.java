@@ -0,0 +1,248 @@
+package com.iskander.converter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Очередь на общем каталоге (NFS или локальный диск, если API и воркеры на одной машине).
+// Захват задачи - атомарное переименование маркера из queue/<kind>/ в claimed/, поэтому
+// два воркера не получат одну задачу; состояние и объявления воркеров - JSON-файлы, заменяемые целиком.
+//
+//   jobs/<id>/job.json, state.json, вход и результат
+//   queue/<kind>/<order>-<id>       ожидающие задачи, имя задаёт порядок
+//   claimed/<order>-<id>            захваченные; содержимое - id воркера
+//   workers/<workerId>.json         объявления воркеров
+@Component
+public class SharedDirectoryJobQueue implements JobQueue {
+
+    private static final Logger LOGGER = Logger.getLogger(SharedDirectoryJobQueue.class.getName());
+
+    private final Path root;
+    private final double agingRate;
+    private final ObjectMapper objectMapper;
+
+    public SharedDirectoryJobQueue(ConverterProperties properties, ObjectMapper objectMapper) {
+        ConverterProperties.Cluster settings = properties.getCluster();
+        this.root = settings.getDirectory() != null
+                ? Paths.get(settings.getDirectory())
+                : Paths.get(System.getProperty("java.io.tmpdir"), "converter-cluster");
+        this.agingRate = properties.getScheduler().getAgingRate();
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public File directory(String id) throws IOException {
+        return Files.createDirectories(root.resolve("jobs").resolve(id)).toFile();
+    }
+
+    @Override
+    public void enqueue(QueuedJob job) throws IOException {
+        Path jobDir = directory(job.getId()).toPath();
+        writeJson(jobDir.resolve("job.json"), job);
+        writeJson(jobDir.resolve("state.json"), new QueuedJobState(ConversionJob.Status.QUEUED, 0, null, null));
+        // Маркер появляется последним - воркер не увидит задачу без входа и описания
+        Path queueDir = Files.createDirectories(root.resolve("queue").resolve(job.getKind().name().toLowerCase()));
+        Files.createFile(queueDir.resolve(markerName(job)));
+    }
+
+    @Override
+    public QueuedJob claim(String workerId, Set<MediaKind> kinds) throws IOException {
+        List<Path> pending = new ArrayList<>();
+        for (MediaKind kind : kinds) {
+            File[] markers = root.resolve("queue").resolve(kind.name().toLowerCase()).toFile().listFiles();
+            if (markers == null) continue;
+            for (File marker : markers) {
+                pending.add(marker.toPath());
+            }
+        }
+        pending.sort(Comparator.comparing(path -> path.getFileName().toString()));
+
+        Path claimedDir = Files.createDirectories(root.resolve("claimed"));
+        for (Path marker : pending) {
+            Path claimed = claimedDir.resolve(marker.getFileName());
+            try {
+                Files.move(marker, claimed, StandardCopyOption.ATOMIC_MOVE);
+            } catch (NoSuchFileException e) {
+                // Задачу забрал другой воркер
+                continue;
+            }
+            Files.writeString(claimed, workerId, StandardCharsets.UTF_8);
+            String id = idFromMarker(marker.getFileName().toString());
+            try {
+                return objectMapper.readValue(root.resolve("jobs").resolve(id).resolve("job.json").toFile(), QueuedJob.class);
+            } catch (IOException e) {
+                // Задачу удалили, пока она ждала в очереди
+                LOGGER.log(Level.WARNING, "Dropping queued job {0} without description: {1}", new Object[]{id, e.getMessage()});
+                Files.deleteIfExists(claimed);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean update(String id, QueuedJobState state) throws IOException {
+        Path jobDir = root.resolve("jobs").resolve(id);
+        if (!Files.isDirectory(jobDir)) {
+            releaseClaim(id);
+            return false;
+        }
+        try {
+            writeJson(jobDir.resolve("state.json"), state);
+        } catch (NoSuchFileException e) {
+            // Каталог удалили во время записи
+            releaseClaim(id);
+            return false;
+        }
+        if (state.getStatus() == ConversionJob.Status.COMPLETED || state.getStatus() == ConversionJob.Status.FAILED) {
+            releaseClaim(id);
+        }
+        return true;
+    }
+
+    @Override
+    public QueuedJobState state(String id) {
+        File file = root.resolve("jobs").resolve(id).resolve("state.json").toFile();
+        if (!file.exists()) return null;
+        try {
+            return objectMapper.readValue(file, QueuedJobState.class);
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Could not read state of job {0}: {1}", new Object[]{id, e.getMessage()});
+            return null;
+        }
+    }
+
+    @Override
+    public boolean exists(String id) {
+        return Files.isDirectory(root.resolve("jobs").resolve(id));
+    }
+
+    @Override
+    public void delete(String id) {
+        removeMarker(root.resolve("queue"), id);
+        releaseClaim(id);
+        FileSystemUtils.deleteRecursively(root.resolve("jobs").resolve(id).toFile());
+    }
+
+    @Override
+    public void advertise(WorkerInfo worker) throws IOException {
+        Path workersDir = Files.createDirectories(root.resolve("workers"));
+        writeJson(workersDir.resolve(worker.getId() + ".json"), worker);
+    }
+
+    @Override
+    public void withdraw(String workerId) {
+        root.resolve("workers").resolve(workerId + ".json").toFile().delete();
+    }
+
+    @Override
+    public List<WorkerInfo> workers() {
+        List<WorkerInfo> workers = new ArrayList<>();
+        File[] files = root.resolve("workers").toFile().listFiles((dir, name) -> name.endsWith(".json"));
+        if (files == null) return workers;
+        for (File file : files) {
+            try {
+                workers.add(objectMapper.readValue(file, WorkerInfo.class));
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Could not read worker advertisement {0}: {1}", new Object[]{file, e.getMessage()});
+            }
+        }
+        return workers;
+    }
+
+    @Override
+    public int requeueAbandoned(Duration heartbeatTimeout) {
+        File[] claimed = root.resolve("claimed").toFile().listFiles();
+        if (claimed == null) return 0;
+        long threshold = System.currentTimeMillis() - heartbeatTimeout.toMillis();
+        int requeued = 0;
+        for (File marker : claimed) {
+            try {
+                String workerId = Files.readString(marker.toPath(), StandardCharsets.UTF_8).trim();
+                if (isAlive(workerId, threshold) || (workerId.isEmpty() && marker.lastModified() > threshold)) {
+                    continue;
+                }
+                String id = idFromMarker(marker.getName());
+                QueuedJob job = objectMapper.readValue(root.resolve("jobs").resolve(id).resolve("job.json").toFile(), QueuedJob.class);
+                Path queueDir = Files.createDirectories(root.resolve("queue").resolve(job.getKind().name().toLowerCase()));
+                Files.move(marker.toPath(), queueDir.resolve(marker.getName()), StandardCopyOption.ATOMIC_MOVE);
+                writeJson(root.resolve("jobs").resolve(id).resolve("state.json"),
+                        new QueuedJobState(ConversionJob.Status.QUEUED, 0, null, null));
+                LOGGER.log(Level.WARNING, "Requeued job {0} abandoned by worker {1}", new Object[]{id, workerId});
+                requeued++;
+            } catch (NoSuchFileException e) {
+                // Задача завершилась или уже возвращена другим узлом
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Could not requeue {0}: {1}", new Object[]{marker.getName(), e.getMessage()});
+            }
+        }
+        return requeued;
+    }
+
+    private boolean isAlive(String workerId, long threshold) {
+        if (workerId.isEmpty()) return false;
+        File file = root.resolve("workers").resolve(workerId + ".json").toFile();
+        if (!file.exists()) return false;
+        try {
+            return objectMapper.readValue(file, WorkerInfo.class).getHeartbeat() > threshold;
+        } catch (IOException e) {
+            // Файл переписывается прямо сейчас - значит, воркер жив
+            return true;
+        }
+    }
+
+    private void releaseClaim(String id) {
+        removeMarker(root.resolve("claimed"), id);
+    }
+
+    private void removeMarker(Path dir, String id) {
+        try (var paths = Files.walk(dir, 2)) {
+            paths.filter(path -> path.getFileName().toString().endsWith("-" + id))
+                    .forEach(path -> path.toFile().delete());
+        } catch (NoSuchFileException e) {
+            // Каталога ещё нет
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not remove queue marker of job {0}: {1}", new Object[]{id, e.getMessage()});
+        }
+    }
+
+    // Запись через временный файл и переименование - читатель на другом узле не увидит половину JSON
+    private void writeJson(Path target, Object value) throws IOException {
+        Path part = target.resolveSibling(target.getFileName() + ".part");
+        objectMapper.writeValue(part.toFile(), value);
+        try {
+            Files.move(part, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(part, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // Порядок как у ConversionScheduler: стоимость со старением. Ключ cost + agingRate * createdAt
+    // упорядочивает так же, как createdAt + cost / agingRate, - в миллисекундах он годится для имени файла
+    private String markerName(QueuedJob job) {
+        long order = agingRate > 0
+                ? job.getCreatedAt() + Math.round(job.getEstimatedSeconds() * 1000 / agingRate)
+                : Math.round(job.getEstimatedSeconds() * 1000);
+        return String.format("%015d-%s", order, job.getId());
+    }
+
+    private static String idFromMarker(String name) {
+        return name.substring(name.indexOf('-') + 1);
+    }
+}
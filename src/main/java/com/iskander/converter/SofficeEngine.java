@@ -0,0 +1,97 @@
+package com.iskander.converter;
+
+import org.springframework.stereotype.Component;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.function.DoubleConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Конвертация документа отдельным процессом soffice - работает и без пула, но с холодным стартом
+@Component
+public class SofficeEngine implements ConversionEngine {
+
+    private static final Logger LOGGER = Logger.getLogger(SofficeEngine.class.getName());
+
+    private final ProcessRunner processRunner;
+
+    public SofficeEngine(ProcessRunner processRunner) {
+        this.processRunner = processRunner;
+    }
+
+    @Override
+    public String name() {
+        return "soffice";
+    }
+
+    @Override
+    public int priority() {
+        return 10;
+    }
+
+    @Override
+    public boolean supports(MediaKind kind, String sourceFormat, String targetFormat) {
+        return kind == MediaKind.DOCUMENT && resolveConvertParam(targetFormat) != null;
+    }
+
+    // Запуск отдельного процесса soffice со своим профилем, чтобы параллельные запросы не делили один профиль
+    @Override
+    public boolean convert(File inputFile, File outputFile, DoubleConsumer progress) throws Exception {
+        String name = outputFile.getName();
+        String format = name.substring(name.lastIndexOf('.') + 1);
+        // Профиль и каталог вывода - в рабочем каталоге конвертации, рядом с результатом
+        Path workDir = outputFile.getAbsoluteFile().getParentFile().toPath();
+        File profileDir = Files.createTempDirectory(workDir, "soffice_profile_").toFile();
+        File outputDir = Files.createTempDirectory(workDir, "soffice_output_").toFile();
+        try {
+            int exitCode = processRunner.run(MediaKind.DOCUMENT, List.of(
+                    "soffice", "-env:UserInstallation=" + profileDir.toPath().toUri(),
+                    "--headless", "--convert-to", resolveConvertParam(format),
+                    "--outdir", outputDir.getAbsolutePath(),
+                    inputFile.getAbsolutePath()
+            ), "LibreOffice");
+            if (exitCode != 0) return false;
+
+            File convertedFile = findConvertedFile(outputDir, format);
+            if (convertedFile == null) {
+                LOGGER.log(Level.SEVERE, "Converted file not found. Possibly this conversion is not supported directly.");
+                return false;
+            }
+            Files.move(convertedFile.toPath(), outputFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            return true;
+        } finally {
+            FileSystemUtils.deleteRecursively(profileDir);
+            FileSystemUtils.deleteRecursively(outputDir);
+        }
+    }
+
+    private String resolveConvertParam(String format) {
+        // Попытка без фильтров для DOCX и ODT:
+        switch (format.toLowerCase()) {
+            case "pdf":
+                return "pdf:writer_pdf_Export";
+            case "docx":
+                return "docx"; // Без фильтра
+            case "odt":
+                return "odt";  // Без фильтра
+            default:
+                return null;
+        }
+    }
+
+    private File findConvertedFile(File outputDir, String format) {
+        File[] files = outputDir.listFiles();
+        if (files == null) return null;
+        for (File f : files) {
+            if (f.getName().toLowerCase().endsWith("." + format.toLowerCase())) {
+                return f;
+            }
+        }
+        return null;
+    }
+}
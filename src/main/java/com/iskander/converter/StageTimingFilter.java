@@ -0,0 +1,145 @@
+package com.iskander.converter;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import jakarta.servlet.http.Part;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Collection;
+
+// Замер этапов для запросов к /api: приём multipart-загрузки (upload) - время разбора частей,
+// которые контейнер пишет на диск до вызова контроллера; отдача ответа (response) - от первого байта тела
+// до конца. Заголовок Server-Timing выставляется перед телом, поэтому response в него не входит - только в JFR.
+@Component
+public class StageTimingFilter extends OncePerRequestFilter {
+
+    static final String HEADER = "Server-Timing";
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith(request.getContextPath() + "/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        StageTimings timings = new StageTimings(request.getRequestURI());
+        request.setAttribute(StageTimings.ATTRIBUTE, timings);
+        TimedResponse timedResponse = new TimedResponse(response, timings);
+        try {
+            chain.doFilter(new TimedRequest(request, timings), timedResponse);
+        } finally {
+            if (request.isAsyncStarted()) {
+                // StreamingResponseBody пишет тело после выхода из фильтра
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        timedResponse.finish();
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            } else {
+                timedResponse.finish();
+            }
+        }
+    }
+
+    // Повторные вызовы getParts() контейнер обслуживает из уже разобранного запроса - считается только первый
+    private static class TimedRequest extends HttpServletRequestWrapper {
+
+        private final StageTimings timings;
+        private boolean parsed;
+
+        TimedRequest(HttpServletRequest request, StageTimings timings) {
+            super(request);
+            this.timings = timings;
+        }
+
+        @Override
+        public Collection<Part> getParts() throws IOException, ServletException {
+            if (parsed) return super.getParts();
+            parsed = true;
+            try (StageTimings.Stage stage = timings.begin("upload", null)) {
+                return super.getParts();
+            }
+        }
+
+        @Override
+        public Part getPart(String name) throws IOException, ServletException {
+            if (parsed) return super.getPart(name);
+            parsed = true;
+            try (StageTimings.Stage stage = timings.begin("upload", null)) {
+                return super.getPart(name);
+            }
+        }
+    }
+
+    private static class TimedResponse extends HttpServletResponseWrapper {
+
+        private final StageTimings timings;
+        private StageTimings.Stage responseStage;
+
+        TimedResponse(HttpServletResponse response, StageTimings timings) {
+            super(response);
+            this.timings = timings;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            beforeBody();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            beforeBody();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            beforeBody();
+            super.flushBuffer();
+        }
+
+        // Все этапы до ответа уже закончились - самое позднее место для заголовка
+        private synchronized void beforeBody() {
+            if (responseStage != null) return;
+            if (!isCommitted()) {
+                setHeader(HEADER, timings.serverTiming());
+            }
+            responseStage = timings.begin("response", null);
+        }
+
+        // Ответ без тела (204, 503 с Retry-After) получает заголовок здесь
+        synchronized void finish() {
+            if (responseStage == null && !isCommitted()) {
+                setHeader(HEADER, timings.serverTiming());
+            }
+            if (responseStage != null) {
+                responseStage.close();
+            }
+        }
+    }
+}
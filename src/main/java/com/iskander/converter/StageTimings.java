@@ -0,0 +1,94 @@
+package com.iskander.converter;
+
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Время этапов одного запроса: приём загрузки, перенос на диск, очередь, запуск процесса, работа инструмента, ответ.
+// Каждый этап пишется JFR-событием ConversionStageEvent, а сумма по этапам уходит клиенту
+// в заголовке Server-Timing (его выставляет StageTimingFilter перед телом ответа).
+public final class StageTimings {
+
+    static final String ATTRIBUTE = StageTimings.class.getName();
+
+    // Вне HTTP-запроса (фоновые задачи, воркер, параллельные сегменты) этапы попадают только в JFR
+    private static final StageTimings DETACHED = new StageTimings(null);
+
+    private final String request;
+    private final long startTime = System.nanoTime();
+    private final Map<String, Long> totals = new LinkedHashMap<>();
+
+    StageTimings(String request) {
+        this.request = request;
+    }
+
+    // Замер запроса, который обрабатывает текущий поток
+    public static StageTimings current() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        Object timings = attributes == null ? null : attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        return timings instanceof StageTimings ? (StageTimings) timings : DETACHED;
+    }
+
+    public static Stage start(String stage) {
+        return current().begin(stage, null);
+    }
+
+    public static Stage start(String stage, String detail) {
+        return current().begin(stage, detail);
+    }
+
+    public Stage begin(String stage, String detail) {
+        return new Stage(stage, detail);
+    }
+
+    // Server-Timing: этапы в порядке первого появления (повторы суммируются) и total - время с начала запроса
+    public String serverTiming() {
+        List<String> metrics = new ArrayList<>();
+        synchronized (totals) {
+            totals.forEach((stage, nanos) -> metrics.add(metric(stage, nanos)));
+        }
+        metrics.add(metric("total", System.nanoTime() - startTime));
+        return String.join(", ", metrics);
+    }
+
+    private static String metric(String stage, long nanos) {
+        return stage + ";dur=" + String.format(Locale.ROOT, "%.1f", nanos / 1_000_000d);
+    }
+
+    private void add(String stage, long nanos) {
+        if (request == null) return;
+        synchronized (totals) {
+            totals.merge(stage, nanos, Long::sum);
+        }
+    }
+
+    public final class Stage implements AutoCloseable {
+
+        private final String name;
+        private final ConversionStageEvent event = new ConversionStageEvent();
+        private final long stageStart = System.nanoTime();
+        private boolean closed;
+
+        private Stage(String name, String detail) {
+            this.name = name;
+            event.stage = name;
+            event.detail = detail;
+            event.request = request;
+            event.begin();
+        }
+
+        // Этап может закончиться в другом потоке (поток ответа)
+        @Override
+        public synchronized void close() {
+            if (closed) return;
+            closed = true;
+            event.commit();
+            add(name, System.nanoTime() - stageStart);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.iskander.converter;
+
+// Содержимое загрузки не распознано или не того типа - клиенту отвечаем 415 до запуска внешнего процесса
+public class UnsupportedInputException extends RuntimeException {
+
+    private final MediaKind kind;
+
+    public UnsupportedInputException(MediaKind kind, String filename, String message) {
+        super(filename + ": " + message);
+        this.kind = kind;
+    }
+
+    public MediaKind getKind() {
+        return kind;
+    }
+}
@@ -0,0 +1,144 @@
+package com.iskander.converter;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Загрузка больших файлов по частям по протоколу tus 1.0 (core + creation + termination).
+// Завершённая загрузка передаётся в конвертацию параметром uploadId вместо multipart-файла.
+@RestController
+@RequestMapping("/api/uploads")
+@CrossOrigin(origins = "*", exposedHeaders = {"Location", "Upload-Offset", "Upload-Length", "Tus-Resumable"})
+public class UploadController {
+
+    private static final Logger LOGGER = Logger.getLogger(UploadController.class.getName());
+
+    private static final String TUS_RESUMABLE = "Tus-Resumable";
+    private static final String TUS_VERSION = "1.0.0";
+    private static final String OFFSET_CONTENT_TYPE = "application/offset+octet-stream";
+
+    private final UploadService uploads;
+
+    public UploadController(UploadService uploads) {
+        this.uploads = uploads;
+    }
+
+    // Возможности сервера для tus-клиентов
+    @RequestMapping(method = RequestMethod.OPTIONS)
+    public ResponseEntity<Void> options() {
+        return ResponseEntity.noContent()
+                .header(TUS_RESUMABLE, TUS_VERSION)
+                .header("Tus-Version", TUS_VERSION)
+                .header("Tus-Extension", "creation,termination")
+                .header("Tus-Max-Size", String.valueOf(uploads.maxSize()))
+                .build();
+    }
+
+    @PostMapping
+    public ResponseEntity<Void> create(
+            @RequestHeader("Upload-Length") long length,
+            @RequestHeader(value = "Upload-Metadata", required = false) String metadata) {
+        if (length <= 0) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (length > uploads.maxSize()) {
+            LOGGER.log(Level.WARNING, "Upload of {0} bytes exceeds the limit", length);
+            return ResponseEntity.status(413).header(TUS_RESUMABLE, TUS_VERSION).build();
+        }
+
+        try {
+            ChunkedUpload upload = uploads.create(length, metadataValue(metadata, "filename"));
+            return ResponseEntity.created(URI.create("/api/uploads/" + upload.getId()))
+                    .header(TUS_RESUMABLE, TUS_VERSION)
+                    .header("Upload-Offset", "0")
+                    .build();
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Error while creating upload: {0}", e.getMessage());
+            return ResponseEntity.status(500).build();
+        }
+    }
+
+    // Текущее смещение - с него клиент продолжает после обрыва
+    @RequestMapping(value = "/{id}", method = RequestMethod.HEAD)
+    public ResponseEntity<Void> offset(@PathVariable("id") String id) {
+        ChunkedUpload upload = uploads.get(id);
+        if (upload == null) {
+            return ResponseEntity.notFound().header(TUS_RESUMABLE, TUS_VERSION).build();
+        }
+        return ResponseEntity.ok()
+                .header(TUS_RESUMABLE, TUS_VERSION)
+                .header("Upload-Offset", String.valueOf(upload.getOffset()))
+                .header("Upload-Length", String.valueOf(upload.getLength()))
+                .header(HttpHeaders.CACHE_CONTROL, "no-store")
+                .build();
+    }
+
+    // Тело запроса читается потоком, без буферизации в памяти или во временном multipart-файле
+    @PatchMapping("/{id}")
+    public ResponseEntity<Void> append(
+            @PathVariable("id") String id,
+            @RequestHeader("Upload-Offset") long offset,
+            @RequestHeader(value = HttpHeaders.CONTENT_TYPE, required = false) String contentType,
+            InputStream body) {
+        if (!OFFSET_CONTENT_TYPE.equals(contentType)) {
+            return ResponseEntity.status(415).header(TUS_RESUMABLE, TUS_VERSION).build();
+        }
+        ChunkedUpload upload = uploads.get(id);
+        if (upload == null) {
+            return ResponseEntity.notFound().header(TUS_RESUMABLE, TUS_VERSION).build();
+        }
+
+        long newOffset = uploads.append(upload, offset, body);
+        if (newOffset < 0) {
+            // Смещение не совпало или параллельный PATCH - клиент должен запросить HEAD
+            return ResponseEntity.status(409).header(TUS_RESUMABLE, TUS_VERSION).build();
+        }
+        return ResponseEntity.noContent()
+                .header(TUS_RESUMABLE, TUS_VERSION)
+                .header("Upload-Offset", String.valueOf(newOffset))
+                .build();
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<ChunkedUpload> status(@PathVariable("id") String id) {
+        ChunkedUpload upload = uploads.get(id);
+        if (upload == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(upload);
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> delete(@PathVariable("id") String id) {
+        ChunkedUpload upload = uploads.get(id);
+        if (upload == null) {
+            return ResponseEntity.notFound().header(TUS_RESUMABLE, TUS_VERSION).build();
+        }
+        uploads.delete(upload);
+        return ResponseEntity.noContent().header(TUS_RESUMABLE, TUS_VERSION).build();
+    }
+
+    // Upload-Metadata: "key base64value,key2 base64value2"
+    private String metadataValue(String metadata, String key) {
+        if (metadata == null) return null;
+        for (String pair : metadata.split(",")) {
+            String[] parts = pair.trim().split(" ", 2);
+            if (parts[0].equals(key) && parts.length == 2) {
+                try {
+                    return new String(Base64.getDecoder().decode(parts[1]), StandardCharsets.UTF_8);
+                } catch (IllegalArgumentException e) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,126 @@
+package com.iskander.converter;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Возобновляемые загрузки: части пишутся прямо в файл рабочей области и сразу хэшируются,
+// поэтому после обрыва клиент продолжает с последнего смещения, а для кэша не нужен второй проход по файлу.
+// У каждой загрузки свой каталог в WorkArea: объём учитывается в квоте, мелкие загрузки попадают в память,
+// а каталоги упавшего процесса подбирает очистка рабочей области.
+@Component
+public class UploadService {
+
+    private static final Logger LOGGER = Logger.getLogger(UploadService.class.getName());
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ConverterProperties.Uploads settings;
+    private final WorkArea workArea;
+    private final ConcurrentHashMap<String, ChunkedUpload> uploads = new ConcurrentHashMap<>();
+
+    public UploadService(ConverterProperties properties, WorkArea workArea) {
+        this.settings = properties.getUploads();
+        this.workArea = workArea;
+    }
+
+    public long maxSize() {
+        return settings.getMaxSize().toBytes();
+    }
+
+    // Место под файл резервируется сразу на объявленную длину; ConversionRejectedException - квота исчерпана
+    public ChunkedUpload create(long length, String filename) throws IOException {
+        String id = UUID.randomUUID().toString().replace("-", "");
+        WorkArea.Allocation work = workArea.allocateExact(MediaKind.VIDEO, length);
+        File file = work.file(id + ".upload");
+        try {
+            Files.createFile(file.toPath());
+        } catch (IOException e) {
+            work.close();
+            throw e;
+        }
+        ChunkedUpload upload = new ChunkedUpload(id, length, filename, work, file);
+        uploads.put(id, upload);
+        return upload;
+    }
+
+    public ChunkedUpload get(String id) {
+        return uploads.get(id);
+    }
+
+    // Дописывает тело запроса с указанного смещения; -1 - смещение не совпадает или идёт другой PATCH
+    public long append(ChunkedUpload upload, long offset, InputStream body) {
+        if (!upload.tryLock()) return -1;
+        try {
+            if (offset != upload.getOffset()) return -1;
+
+            try (FileChannel channel = FileChannel.open(upload.getFile().toPath(), StandardOpenOption.WRITE)) {
+                channel.position(offset);
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while (!upload.isComplete() && (read = body.read(buffer)) != -1) {
+                    // Лишние байты сверх объявленной длины отбрасываем
+                    int accepted = (int) Math.min(read, upload.getLength() - upload.getOffset());
+                    ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, accepted);
+                    try {
+                        while (chunk.hasRemaining()) {
+                            channel.write(chunk);
+                        }
+                    } catch (IOException e) {
+                        // Частично записанный буфер не учтён в хэше - обрезаем до подтверждённого смещения
+                        channel.truncate(upload.getOffset());
+                        throw e;
+                    }
+                    upload.accept(buffer, accepted);
+                }
+            } catch (IOException e) {
+                // Обрыв соединения: принятое остаётся, клиент продолжит с getOffset()
+                LOGGER.log(Level.WARNING, "Upload {0} interrupted at offset {1}: {2}",
+                        new Object[]{upload.getId(), upload.getOffset(), e.getMessage()});
+            }
+            return upload.getOffset();
+        } finally {
+            upload.unlock();
+        }
+    }
+
+    // Перемещает файл завершённой загрузки в рабочий каталог конвертации без копирования
+    public void moveTo(ChunkedUpload upload, File target) throws IOException {
+        Files.move(upload.getFile().toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // Возвращает файл на место, если конвертацию не удалось поставить в очередь
+    public void restore(ChunkedUpload upload, File source) throws IOException {
+        Files.move(source.toPath(), upload.getFile().toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public void delete(ChunkedUpload upload) {
+        uploads.remove(upload.getId());
+        upload.getWork().close();
+    }
+
+    // Удаление загрузок без активности дольше converter.uploads.expiry; загрузку, которую сейчас конвертируют, не трогаем
+    @Scheduled(fixedDelayString = "${converter.uploads.sweep-interval:300000}")
+    public void expireStaleUploads() {
+        Instant threshold = Instant.now().minus(settings.getExpiry());
+        for (ChunkedUpload upload : uploads.values()) {
+            if (!upload.isInUse() && upload.getUpdatedAt().isBefore(threshold)) {
+                LOGGER.log(Level.INFO, "Expiring upload {0}", upload.getId());
+                delete(upload);
+            }
+        }
+    }
+}
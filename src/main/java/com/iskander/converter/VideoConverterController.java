@@ -1,14 +1,16 @@
 package com.iskander.converter;
 
-import org.springframework.core.io.InputStreamResource;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.*;
+import java.net.URI;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.DoubleConsumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -18,92 +20,344 @@ public class VideoConverterController {
 
     private static final Logger LOGGER = Logger.getLogger(VideoConverterController.class.getName());
 
+    private final ConversionCache cache;
+    private final ConversionScheduler scheduler;
+    private final EngineRouter router;
+    private final ConversionJobService jobService;
+    private final ConversionMetrics metrics;
+    private final UploadService uploads;
+    private final WorkArea workArea;
+    private final VideoTranscoder transcoder;
+    private final CostEstimator costEstimator;
+
+    public VideoConverterController(ConversionCache cache,
+                                    ConversionScheduler scheduler,
+                                    EngineRouter router, ConversionJobService jobService, ConversionMetrics metrics,
+                                    UploadService uploads, WorkArea workArea, VideoTranscoder transcoder,
+                                    CostEstimator costEstimator) {
+        this.cache = cache;
+        this.scheduler = scheduler;
+        this.router = router;
+        this.jobService = jobService;
+        this.metrics = metrics;
+        this.uploads = uploads;
+        this.workArea = workArea;
+        this.transcoder = transcoder;
+        this.costEstimator = costEstimator;
+    }
+
     @CrossOrigin(origins = "*") // Если нужно принимать запросы с другого домена
     @PostMapping("/convert")
-    public ResponseEntity<InputStreamResource> convertVideo(
+    public ResponseEntity<Resource> convertVideo(
             @RequestParam("file") MultipartFile file,
-            @RequestParam("format") String format) {
-        File inputFile = null;
-        File outputFile = null;
-
-        try {
-            // Проверка поддерживаемых форматов
-            if (!isSupportedFormat(format)) {
-                LOGGER.log(Level.WARNING, "Unsupported target video format: {0}", format);
-                return ResponseEntity.badRequest().body(null);
-            }
+            @RequestParam("format") String format,
+            @RequestParam(value = "progressive", defaultValue = "false") boolean progressive) {
+        // Проверка поддерживаемых форматов
+        if (!isSupportedFormat(format)) {
+            LOGGER.log(Level.WARNING, "Unsupported target video format: {0}", format);
+            return ResponseEntity.badRequest().body(null);
+        }
 
-            // Ограничение на размер файла (напр. 200 MB для видео)
-            if (file.getSize() > 200 * 1024 * 1024) {
-                LOGGER.log(Level.WARNING, "File size exceeds the limit of 200 MB");
-                return ResponseEntity.badRequest().body(null);
-            }
+        // Ограничение на размер файла (напр. 200 MB для видео)
+        if (file.getSize() > 200 * 1024 * 1024) {
+            LOGGER.log(Level.WARNING, "File size exceeds the limit of 200 MB");
+            return ResponseEntity.badRequest().body(null);
+        }
 
-            // Сохранение исходного файла
-            inputFile = File.createTempFile("input_video", getExtension(file.getOriginalFilename()));
-            file.transferTo(inputFile);
+        try {
+            // Формат входа - по содержимому: не-видео отклоняется (415) до хэширования, ffprobe и ffmpeg
+            String extension = InputSniffer.require(MediaKind.VIDEO, file, file.getOriginalFilename())
+                    .extension(file.getOriginalFilename());
+            String key = cache.key(file, cacheParams(format, progressive));
+            return convert(file.getOriginalFilename(), file.getSize(), format, progressive, key, work -> {
+                // Сохранение исходного файла в рабочий каталог
+                File inputFile = work.file("input." + extension);
+                try (StageTimings.Stage stage = StageTimings.start("transfer")) {
+                    file.transferTo(inputFile);
+                }
+                return inputFile;
+            }, null);
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Error during video conversion: {0}", e.getMessage());
+            return ResponseEntity.status(500).body(null);
+        }
+    }
 
-            // Создание выходного файла с нужным расширением
-            outputFile = File.createTempFile("output_video", "." + format.toLowerCase());
+    // Конвертация файла, загруженного заранее по частям через /api/uploads
+    @CrossOrigin(origins = "*")
+    @PostMapping(value = "/convert", params = "uploadId")
+    public ResponseEntity<Resource> convertUploadedVideo(
+            @RequestParam("uploadId") String uploadId,
+            @RequestParam("format") String format,
+            @RequestParam(value = "progressive", defaultValue = "false") boolean progressive) {
+        if (!isSupportedFormat(format)) {
+            LOGGER.log(Level.WARNING, "Unsupported target video format: {0}", format);
+            return ResponseEntity.badRequest().body(null);
+        }
 
-            // Вызов FFmpeg для конвертации видео
-            // Пример простой команды: ffmpeg -y -i input.mp4 output.mkv
-            // При необходимости можно добавить параметры (кодек, битрейт, разрешение и т.д.)
-            ProcessBuilder processBuilder = new ProcessBuilder(
-                    "ffmpeg", "-y",
-                    "-i", inputFile.getAbsolutePath(),
-                    outputFile.getAbsolutePath()
-            );
-            processBuilder.redirectErrorStream(true);
-            Process process = processBuilder.start();
-
-            // Логирование вывода FFmpeg
-            long startTime = System.currentTimeMillis();
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    LOGGER.log(Level.INFO, line);
-                }
-            }
+        ChunkedUpload upload = uploads.get(uploadId);
+        if (upload == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!upload.isComplete()) {
+            return ResponseEntity.status(409).build();
+        }
+        try {
+            InputSniffer.require(MediaKind.VIDEO, upload.getFile(), upload.getFilename());
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Could not read upload {0}: {1}", new Object[]{uploadId, e.getMessage()});
+            return ResponseEntity.status(500).body(null);
+        }
 
-            int exitCode = process.waitFor();
-            long endTime = System.currentTimeMillis();
-            LOGGER.log(Level.INFO, "FFmpeg video process completed in {0} ms", (endTime - startTime));
+        // Хэш посчитан по ходу загрузки - второго чтения файла для ключа кэша нет.
+        // Файл загрузки конвертируется на месте и удаляется только после успеха, чтобы можно было повторить;
+        // пока ответ не записан, загрузка закреплена от истечения срока
+        String key = cache.key(upload.contentDigest(), cacheParams(format, progressive));
+        upload.retain();
+        try {
+            return convert(upload.getFilename(), upload.getLength(), format, progressive, key,
+                    work -> upload.getFile(), () -> uploads.delete(upload));
+        } finally {
+            ConvertedFileResponse.releaseAfterResponse(upload);
+        }
+    }
 
-            if (exitCode != 0) {
-                LOGGER.log(Level.SEVERE, "FFmpeg video process failed with exit code {0}", exitCode);
-                return ResponseEntity.status(500).body(null);
-            }
+    // Источник входного файла: копия multipart-загрузки в рабочем каталоге или файл загрузки по частям
+    @FunctionalInterface
+    private interface VideoInput {
+        File open(WorkArea.Allocation work) throws IOException;
+    }
 
-            // Читаем выходной файл в память
-            byte[] fileBytes = Files.readAllBytes(outputFile.toPath());
-            InputStreamResource resource = new InputStreamResource(new ByteArrayInputStream(fileBytes));
+    // onConverted - после успешной конвертации (при потоковой отдаче - когда ffmpeg дописал результат)
+    private ResponseEntity<Resource> convert(String originalFilename, long size, String format, boolean progressive,
+                                             String cacheKey, VideoInput input, Runnable onConverted) {
+        WorkArea.Allocation work = null;
+        ConversionCache.Flight flight = null;
+        ConversionScheduler.Slot slot = null;
+        ConversionMetrics.Recording recording = null;
 
+        try {
             // Определяем MIME-тип для видео
             String mimeType = resolveMimeType(format);
 
             // Получаем оригинальное имя файла без расширения
-            String originalFilename = file.getOriginalFilename();
             String baseName = removeExtension(originalFilename);
             String newFilename = baseName + "-converted." + format;
 
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.parseMediaType(mimeType));
-            headers.add(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + newFilename + "\"");
+            recording = metrics.start(MediaKind.VIDEO, originalFilename, format, size);
+
+            // Тот же файл с теми же параметрами уже конвертировали - отдаём из кэша
+            flight = cache.join(cacheKey, format);
+            if (flight.isHit()) {
+                recording.cacheHit(flight.cachedFile().length());
+                if (onConverted != null) onConverted.run();
+                return ConvertedFileResponse.attachment(flight.cachedFile(), mimeType, newFilename);
+            }
+
+            // Место в рабочей области (503, если квота исчерпана), оценка стоимости по длительности и размеру кадра
+            // (413, если выше потолка), затем слот для этого типа конвертаций в порядке стоимости
+            // (или 503 при переполненной очереди)
+            work = workArea.allocate(MediaKind.VIDEO, size);
+            File inputFile = input.open(work);
+            CostEstimator.Estimate estimate = costEstimator.estimate(MediaKind.VIDEO, inputFile, format);
+            slot = scheduler.acquire(MediaKind.VIDEO, estimate);
+
+            // Потоковая отдача: фрагменты уходят клиенту chunked-ответом по мере кодирования
+            if (fragmented(format, progressive)) {
+                FfmpegPipe pipe = transcoder.startFragmented(inputFile, format.toLowerCase());
+                if (pipe == null) {
+                    return ResponseEntity.status(500).body(null);
+                }
+                // Слот и рабочий каталог освобождаются, когда ответ дописан и ffmpeg завершён
+                pipe.releaseOnClose(slot.completeWith(pipe));
+                pipe.releaseOnClose(work);
+                pipe.releaseOnClose(recording.completeWith(pipe));
+                if (onConverted != null) {
+                    pipe.releaseOnClose(() -> {
+                        if (pipe.succeeded()) onConverted.run();
+                    });
+                }
+                slot = null;
+                return ConvertedFileResponse.stream(flight.tee(pipe), mimeType, newFilename);
+            }
+
+            // Создание выходного файла с нужным расширением
+            File outputFile = work.file("output." + format.toLowerCase());
+
+            // Вызов FFmpeg для конвертации видео
+            if (!router.convert(MediaKind.VIDEO, inputFile, outputFile, null)) {
+                return ResponseEntity.status(500).body(null);
+            }
+            slot.succeeded();
 
-            return ResponseEntity.ok()
-                    .headers(headers)
-                    .contentLength(fileBytes.length)
-                    .body(resource);
+            // Результат переносится в кэш и отдаётся потоком с диска
+            File result = flight.commit(outputFile);
+            recording.success(result.length());
+            if (onConverted != null) onConverted.run();
+            return ConvertedFileResponse.attachment(result, mimeType, newFilename);
 
+        } catch (ConversionRejectedException | ConversionTooCostlyException e) {
+            throw e;
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error during video conversion: {0}", e.getMessage());
             return ResponseEntity.status(500).body(null);
         } finally {
-            // Удаляем временные файлы
-            if (inputFile != null && inputFile.exists()) inputFile.delete();
-            if (outputFile != null && outputFile.exists()) outputFile.delete();
+            if (slot != null) slot.close();
+            if (recording != null) recording.close();
+            // Рабочий каталог удаляется и файл кэша открепляется после отправки ответа;
+            // файл загрузки по частям лежит в каталоге загрузки и удаляется вместе с ней
+            ConvertedFileResponse.releaseAfterResponse(work);
+            ConvertedFileResponse.releaseAfterResponse(flight);
+        }
+    }
+
+    // Асинхронная конвертация: сразу возвращает id задачи, не держа соединение на время кодирования
+    @CrossOrigin(origins = "*")
+    @PostMapping("/jobs")
+    public ResponseEntity<ConversionJob> submitJob(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam("format") String format) {
+        // Кроме файлов задача может собрать пакет HLS/DASH (format=hls, dash или cmaf)
+        if (!isSupportedFormat(format) && !AbrPackager.isPackageFormat(format)) {
+            LOGGER.log(Level.WARNING, "Unsupported target video format: {0}", format);
+            return ResponseEntity.badRequest().body(null);
+        }
+
+        if (file.getSize() > 200 * 1024 * 1024) {
+            LOGGER.log(Level.WARNING, "File size exceeds the limit of 200 MB");
+            return ResponseEntity.badRequest().body(null);
+        }
+
+        try {
+            String extension = InputSniffer.require(MediaKind.VIDEO, file, file.getOriginalFilename())
+                    .extension(file.getOriginalFilename());
+            String newFilename = removeExtension(file.getOriginalFilename()) + "-converted." + format;
+            ConversionJob job = jobService.submit(MediaKind.VIDEO, file, format, resolveMimeType(format),
+                    newFilename, "." + extension, this::convertInBackground);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/video/jobs/" + job.getId()))
+                    .body(job);
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Error while submitting video job: {0}", e.getMessage());
+            return ResponseEntity.status(500).body(null);
+        }
+    }
+
+    @CrossOrigin(origins = "*")
+    @PostMapping(value = "/jobs", params = "uploadId")
+    public ResponseEntity<ConversionJob> submitUploadJob(
+            @RequestParam("uploadId") String uploadId,
+            @RequestParam("format") String format,
+            @RequestParam(value = "progressive", defaultValue = "false") boolean progressive) {
+        if (!isSupportedFormat(format) && !AbrPackager.isPackageFormat(format)) {
+            LOGGER.log(Level.WARNING, "Unsupported target video format: {0}", format);
+            return ResponseEntity.badRequest().body(null);
+        }
+
+        ChunkedUpload upload = uploads.get(uploadId);
+        if (upload == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!upload.isComplete()) {
+            return ResponseEntity.status(409).build();
+        }
+
+        try {
+            String extension = InputSniffer.require(MediaKind.VIDEO, upload.getFile(), upload.getFilename())
+                    .extension(upload.getFilename());
+            String newFilename = removeExtension(upload.getFilename()) + "-converted." + format;
+            ConversionJob job = jobService.submit(MediaKind.VIDEO, uploads, upload, format, resolveMimeType(format),
+                    newFilename, "." + extension, this::convertInBackground);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/video/jobs/" + job.getId()))
+                    .body(job);
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Error while submitting video job: {0}", e.getMessage());
+            return ResponseEntity.status(500).body(null);
+        }
+    }
+
+    @CrossOrigin(origins = "*")
+    @GetMapping("/jobs/{id}")
+    public ResponseEntity<ConversionJob> jobStatus(@PathVariable("id") String id) {
+        ConversionJob job = jobService.get(id);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(job);
+    }
+
+    @CrossOrigin(origins = "*")
+    @GetMapping("/jobs/{id}/result")
+    public ResponseEntity<Resource> jobResult(@PathVariable("id") String id) {
+        ConversionJob job = jobService.get(id);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (job.getStatus() != ConversionJob.Status.COMPLETED) {
+            return ResponseEntity.status(409).build();
+        }
+        // Пакет - каталог: плеер начинает с манифеста, остальные файлы берёт по относительным ссылкам из него
+        if (AbrPackager.isPackageFormat(job.getFormat())) {
+            return ResponseEntity.status(HttpStatus.SEE_OTHER)
+                    .location(URI.create("/api/video/jobs/" + id + "/package/" + AbrPackager.manifestName(job.getFormat())))
+                    .build();
+        }
+        // Файл остаётся до истечения срока хранения - можно докачивать через Range
+        return ConvertedFileResponse.attachment(job.getOutputFile(), job.getMimeType(), job.getFilename());
+    }
+
+    // Манифесты и сегменты пакета HLS/DASH прямо из каталога задачи, с Range и кэшированием до истечения срока хранения
+    @CrossOrigin(origins = "*")
+    @GetMapping("/jobs/{id}/package/{*path}")
+    public ResponseEntity<Resource> packageFile(@PathVariable("id") String id, @PathVariable("path") String path) {
+        ConversionJob job = jobService.get(id);
+        if (job == null || !AbrPackager.isPackageFormat(job.getFormat())) {
+            return ResponseEntity.notFound().build();
+        }
+        if (job.getStatus() != ConversionJob.Status.COMPLETED) {
+            return ResponseEntity.status(409).build();
+        }
+        Path packageDir = job.getOutputFile().toPath().toAbsolutePath().normalize();
+        Path file = packageDir.resolve(path.startsWith("/") ? path.substring(1) : path).normalize();
+        // Только файлы внутри пакета
+        if (!file.startsWith(packageDir) || !Files.isRegularFile(file)) {
+            return ResponseEntity.notFound().build();
         }
+        String name = file.getFileName().toString();
+        boolean manifest = name.endsWith(".m3u8") || name.endsWith(".mpd");
+        return ConvertedFileResponse.cacheable(file.toFile(), resolvePackageMimeType(name),
+                jobService.remainingRetention(job), !manifest);
+    }
+
+    // Невыполненная задача отменяется: ffmpeg останавливается, файлы удаляются
+    @CrossOrigin(origins = "*")
+    @DeleteMapping("/jobs/{id}")
+    public ResponseEntity<Void> deleteJob(@PathVariable("id") String id) {
+        ConversionJob job = jobService.get(id);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        jobService.delete(job);
+        return ResponseEntity.noContent().build();
+    }
+
+    private boolean convertInBackground(File inputFile, File outputFile, DoubleConsumer progress)
+            throws InterruptedException {
+        return router.convert(MediaKind.VIDEO, inputFile, outputFile, progress);
+    }
+
+    // Фрагментированный результат отличается от обычного файла - у него свой ключ в кэше
+    private String[] cacheParams(String format, boolean progressive) {
+        if (fragmented(format, progressive)) {
+            return new String[]{"video", format, "fragmented"};
+        }
+        return new String[]{"video", format};
+    }
+
+    // Потоковая отдача фрагментов; запрос с Range получает обычный файл - диапазон потока отдать нельзя
+    private boolean fragmented(String format, boolean progressive) {
+        return progressive && VideoTranscoder.supportsFragmented(format) && !ConvertedFileResponse.isRangeRequest();
     }
 
     private boolean isSupportedFormat(String format) {
@@ -127,18 +381,22 @@ public class VideoConverterController {
                 return "video/x-msvideo";
             case "webm":
                 return "video/webm";
+            case "hls":
+            case "cmaf":
+                return "application/vnd.apple.mpegurl";
+            case "dash":
+                return "application/dash+xml";
             default:
                 return "application/octet-stream";
         }
     }
 
-    private String getExtension(String filename) {
-        if (filename == null) return ".tmp";
-        int lastIndex = filename.lastIndexOf(".");
-        if (lastIndex == -1) {
-            return ".tmp";
-        }
-        return filename.substring(lastIndex);
+    private String resolvePackageMimeType(String name) {
+        if (name.endsWith(".m3u8")) return "application/vnd.apple.mpegurl";
+        if (name.endsWith(".mpd")) return "application/dash+xml";
+        if (name.endsWith(".m4s")) return "video/iso.segment";
+        if (name.endsWith(".mp4")) return "video/mp4";
+        return "application/octet-stream";
     }
 
     private String removeExtension(String filename) {
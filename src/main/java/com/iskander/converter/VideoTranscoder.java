@@ -0,0 +1,220 @@
+package com.iskander.converter;
+
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.DoubleConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Конвертация видеофайла через ffmpeg - общая для синхронного API и фоновых задач.
+// Если кодеки входа допустимы в целевом контейнере, потоки копируются без перекодирования (remux),
+// перекодируется только то, что в контейнер не подходит. Длинные видео кодируются по сегментам параллельно.
+@Component
+public class VideoTranscoder implements ConversionEngine {
+
+    private static final Logger LOGGER = Logger.getLogger(VideoTranscoder.class.getName());
+
+    // Кодеки, которые можно без перекодирования положить в контейнер
+    private static final Map<String, Set<String>> VIDEO_CODECS = Map.of(
+            "mp4", Set.of("h264", "hevc", "mpeg4", "av1"),
+            "mov", Set.of("h264", "hevc", "mpeg4", "prores", "mjpeg"),
+            "mkv", Set.of("h264", "hevc", "mpeg4", "av1", "vp8", "vp9", "mpeg2video", "theora"),
+            "webm", Set.of("vp8", "vp9", "av1"),
+            "avi", Set.of("mpeg4", "h264", "mjpeg", "msmpeg4v2", "msmpeg4v3"));
+    private static final Map<String, Set<String>> AUDIO_CODECS = Map.of(
+            "mp4", Set.of("aac", "mp3", "ac3"),
+            "mov", Set.of("aac", "mp3", "ac3", "alac", "pcm_s16le"),
+            "mkv", Set.of("aac", "mp3", "ac3", "opus", "vorbis", "flac", "pcm_s16le"),
+            "webm", Set.of("opus", "vorbis"),
+            "avi", Set.of("mp3", "ac3", "pcm_s16le"));
+
+    private final ProcessRunner processRunner;
+    private final MediaProbe mediaProbe;
+    private final SegmentedVideoTranscoder segmentedTranscoder;
+    private final ConverterProperties.Video settings;
+
+    public VideoTranscoder(ProcessRunner processRunner, MediaProbe mediaProbe,
+                           SegmentedVideoTranscoder segmentedTranscoder, ConverterProperties properties) {
+        this.processRunner = processRunner;
+        this.mediaProbe = mediaProbe;
+        this.segmentedTranscoder = segmentedTranscoder;
+        this.settings = properties.getVideo();
+    }
+
+    @Override
+    public String name() {
+        return "ffmpeg-video";
+    }
+
+    @Override
+    public int priority() {
+        return 10;
+    }
+
+    @Override
+    public boolean supports(MediaKind kind, String sourceFormat, String targetFormat) {
+        // Пакеты HLS/DASH собирает AbrPackager
+        return kind == MediaKind.VIDEO && !AbrPackager.isPackageFormat(targetFormat);
+    }
+
+    @Override
+    public boolean convert(File inputFile, File outputFile, DoubleConsumer progress) throws Exception {
+        return transcode(inputFile, outputFile, progress);
+    }
+
+    // progress может быть null; иначе получает долю выполнения 0..1
+    public boolean transcode(File inputFile, File outputFile, DoubleConsumer progress)
+            throws IOException, InterruptedException {
+        MediaInfo info = mediaProbe.probe(inputFile);
+        String container = extension(outputFile);
+
+        // Копирование решается для каждого потока отдельно
+        boolean copyVideo = settings.isStreamCopy() && copyable(info.firstStream("video"), VIDEO_CODECS, container);
+        boolean copyAudio = settings.isStreamCopy() && copyable(info.firstStream("audio"), AUDIO_CODECS, container);
+
+        if (copyVideo) {
+            // Видео копируется - процесс дешёвый, резать незачем; звук копируется или кодируется здесь же
+            if (run(inputFile, outputFile, info, streamArgs(info, true, copyAudio), progress)) {
+                return true;
+            }
+            // Копирование не удалось (например, нестандартные параметры потока) - перекодируем
+            LOGGER.log(Level.WARNING, "Stream copy into {0} failed, falling back to transcode", container);
+        }
+
+        // Видео перекодируется и вход достаточно длинный - режем на сегменты и кодируем параллельно
+        int segments = info.firstStream("video") == null ? 1 : segmentedTranscoder.segmentCount(info.getDurationSeconds());
+        if (segments > 1) {
+            if (segmentedTranscoder.transcode(inputFile, outputFile, info.getDurationSeconds(), segments,
+                    copyAudio, progress)) {
+                return true;
+            }
+            LOGGER.log(Level.WARNING, "Segmented transcode of {0} failed, falling back to a single process",
+                    inputFile.getName());
+        }
+        if (copyAudio) {
+            if (run(inputFile, outputFile, info, streamArgs(info, false, true), progress)) {
+                return true;
+            }
+            LOGGER.log(Level.WARNING, "Audio stream copy into {0} failed, falling back to full transcode", container);
+        }
+        return run(inputFile, outputFile, info, List.of(), progress);
+    }
+
+    private boolean run(File inputFile, File outputFile, MediaInfo info, List<String> codecArgs, DoubleConsumer progress)
+            throws IOException, InterruptedException {
+        // Пример простой команды: ffmpeg -y -i input.mp4 output.mkv
+        // При необходимости можно добавить параметры (кодек, битрейт, разрешение и т.д.)
+        List<String> command = new ArrayList<>(List.of("ffmpeg", "-y"));
+        command.addAll(InputSniffer.ffmpegInput(inputFile));
+        command.addAll(codecArgs);
+
+        FfmpegProgress progressParser = null;
+        if (progress != null) {
+            progressParser = new FfmpegProgress(info.getDurationSeconds(), progress);
+            command.addAll(List.of("-progress", "pipe:1", "-nostats"));
+        }
+        command.add(outputFile.getAbsolutePath());
+
+        String label = codecArgs.contains("copy") ? "FFmpeg video (stream copy)" : "FFmpeg video";
+        return processRunner.run(MediaKind.VIDEO, command, label, progressParser) == 0;
+    }
+
+    // Контейнеры, которые можно писать в stdout по мере кодирования
+    public static boolean supportsFragmented(String container) {
+        return container.equalsIgnoreCase("mp4") || container.equalsIgnoreCase("webm");
+    }
+
+    // Фрагментированный MP4 / WebM в stdout: клиент получает первые фрагменты, пока кодируется остальное.
+    // Возвращает поток, в котором уже есть данные; null - ffmpeg ничего не записал.
+    // Сегментное кодирование здесь не применяется - фрагменты должны идти по порядку
+    public FfmpegPipe startFragmented(File inputFile, String container) throws IOException, InterruptedException {
+        MediaInfo info = mediaProbe.probe(inputFile);
+        List<String> codecArgs = settings.isStreamCopy() ? streamCopyArgs(info, container) : List.of();
+        if (!codecArgs.isEmpty()) {
+            FfmpegPipe pipe = startFragmented(inputFile, container, codecArgs, "FFmpeg video (fragmented, stream copy)");
+            if (pipe.awaitOutput()) {
+                return pipe;
+            }
+            pipe.close();
+            LOGGER.log(Level.WARNING, "Fragmented stream copy into {0} failed, falling back to full transcode", container);
+        }
+
+        FfmpegPipe pipe = startFragmented(inputFile, container, List.of(), "FFmpeg video (fragmented)");
+        if (pipe.awaitOutput()) {
+            return pipe;
+        }
+        pipe.close();
+        return null;
+    }
+
+    private FfmpegPipe startFragmented(File inputFile, String container, List<String> codecArgs, String label)
+            throws IOException {
+        // Вход читается из файла (MP4 с moov в конце нельзя читать из pipe), stdin не нужен
+        return processRunner.startPipe(MediaKind.VIDEO,
+                fragmentedCommand(inputFile, container, codecArgs, settings.getFragmentDuration()),
+                InputStream.nullInputStream(), label);
+    }
+
+    static List<String> fragmentedCommand(File inputFile, String container, List<String> codecArgs,
+                                          Duration fragmentDuration) {
+        List<String> command = new ArrayList<>(List.of("ffmpeg", "-nostdin"));
+        command.addAll(InputSniffer.ffmpegInput(inputFile));
+        command.addAll(codecArgs);
+        if (container.equalsIgnoreCase("mp4")) {
+            // Пустой moov в начале и фрагмент на каждый ключевой кадр, но не длиннее fragmentDuration
+            command.addAll(List.of(
+                    "-movflags", "frag_keyframe+empty_moov+default_base_moof",
+                    "-frag_duration", String.valueOf(fragmentDuration.toNanos() / 1000),
+                    "-f", "mp4"));
+        } else {
+            // Кластеры WebM пишутся последовательно; индекс (cues) в поток без перемотки не попадает
+            command.addAll(List.of(
+                    "-cluster_time_limit", String.valueOf(fragmentDuration.toMillis()),
+                    "-f", "webm"));
+        }
+        command.add("pipe:1");
+        return command;
+    }
+
+    // Аргументы для копирования совместимых потоков; пустой список - копировать нечего
+    List<String> streamCopyArgs(MediaInfo info, String container) {
+        boolean copyVideo = copyable(info.firstStream("video"), VIDEO_CODECS, container);
+        boolean copyAudio = copyable(info.firstStream("audio"), AUDIO_CODECS, container);
+        return copyVideo || copyAudio ? streamArgs(info, copyVideo, copyAudio) : List.of();
+    }
+
+    private static boolean copyable(MediaInfo.Stream stream, Map<String, Set<String>> codecs, String container) {
+        return stream != null && codecs.getOrDefault(container, Set.of()).contains(stream.getCodecName());
+    }
+
+    // Те же потоки, что ffmpeg выбрал бы сам: первый видео и первый аудио; не копируемые кодируются по умолчанию
+    static List<String> streamArgs(MediaInfo info, boolean copyVideo, boolean copyAudio) {
+        List<String> args = new ArrayList<>();
+        if (info.firstStream("video") != null) {
+            args.addAll(List.of("-map", "0:v:0"));
+        }
+        if (info.firstStream("audio") != null) {
+            args.addAll(List.of("-map", "0:a:0"));
+        }
+        if (copyVideo) {
+            args.addAll(List.of("-c:v", "copy"));
+        }
+        if (copyAudio) {
+            args.addAll(List.of("-c:a", "copy"));
+        }
+        return args;
+    }
+
+    private static String extension(File file) {
+        String name = file.getName();
+        return name.substring(name.lastIndexOf('.') + 1).toLowerCase();
+    }
+}
@@ -0,0 +1,115 @@
+package com.iskander.converter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// WAV (16-bit PCM), который собирается по мере чтения из декодированных кадров MP3.
+// Длина данных известна заранее из Mp3PcmDecoder.scan, поэтому заголовок пишется сразу и без seek,
+// а ответ можно отдавать потоком.
+public class WavPcmStream extends ConversionStream {
+
+    private static final Logger LOGGER = Logger.getLogger(WavPcmStream.class.getName());
+
+    private static final int HEADER_SIZE = 44;
+    // Поле размера в RIFF - 32 бита без знака
+    static final long MAX_DATA_SIZE = 0xFFFFFFFFL - (HEADER_SIZE - 8);
+
+    private final Mp3PcmDecoder decoder;
+    private final long totalSize;
+    private ByteBuffer buffer;
+    // Байт, уже выданных в buffer (включая заголовок)
+    private long produced = HEADER_SIZE;
+    private boolean closed;
+
+    public WavPcmStream(Mp3PcmDecoder decoder, Mp3PcmDecoder.Info info) {
+        super("jlayer MP3 to WAV");
+        this.decoder = decoder;
+        long dataSize = info.getTotalSamples() * info.getChannels() * 2;
+        this.totalSize = HEADER_SIZE + dataSize;
+        this.buffer = header(info, dataSize);
+    }
+
+    public static boolean fits(Mp3PcmDecoder.Info info) {
+        return info.getTotalSamples() * info.getChannels() * 2 <= MAX_DATA_SIZE;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] one = new byte[1];
+        int n = read(one, 0, 1);
+        return n == -1 ? -1 : one[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        while (!buffer.hasRemaining()) {
+            if (!fill()) return -1;
+        }
+        int n = Math.min(len, buffer.remaining());
+        buffer.get(b, off, n);
+        bytesRead += n;
+        return n;
+    }
+
+    // Следующий кадр PCM в little-endian; после конца MP3 дополняет тишиной до объявленной длины
+    private boolean fill() throws IOException {
+        long remaining = totalSize - produced;
+        if (remaining <= 0) return false;
+
+        int count = decoder.nextFrame();
+        short[] samples = decoder.samples();
+        if (count == -1) {
+            count = (int) Math.min(remaining / 2, 1152 * 2);
+            samples = new short[count];
+        }
+        int bytes = (int) Math.min(count * 2L, remaining);
+        if (buffer.capacity() < bytes) {
+            buffer = ByteBuffer.allocate(Math.max(bytes, 1152 * 2 * 2)).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        buffer.clear();
+        for (int i = 0; i < bytes / 2; i++) {
+            buffer.putShort(samples[i]);
+        }
+        buffer.flip();
+        produced += bytes;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            succeeded = produced == totalSize && !buffer.hasRemaining();
+            decoder.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Error while closing MP3 decoder: {0}", e.getMessage());
+        } finally {
+            release();
+        }
+    }
+
+    private static ByteBuffer header(Mp3PcmDecoder.Info info, long dataSize) {
+        int channels = info.getChannels();
+        int sampleRate = info.getSampleRate();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(new byte[]{'R', 'I', 'F', 'F'});
+        header.putInt((int) (HEADER_SIZE - 8 + dataSize));
+        header.put(new byte[]{'W', 'A', 'V', 'E', 'f', 'm', 't', ' '});
+        header.putInt(16);
+        header.putShort((short) 1); // PCM
+        header.putShort((short) channels);
+        header.putInt(sampleRate);
+        header.putInt(sampleRate * channels * 2);
+        header.putShort((short) (channels * 2));
+        header.putShort((short) 16);
+        header.put(new byte[]{'d', 'a', 't', 'a'});
+        header.putInt((int) dataSize);
+        header.flip();
+        return header;
+    }
+}
@@ -0,0 +1,357 @@
+package com.iskander.converter;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Рабочая область конвертаций: у каждой конвертации свой каталог, который удаляется целиком.
+// Мелкие задачи идут в каталог в памяти (tmpfs), крупные - на диск; суммарный объём ограничен квотой,
+// сверх неё запрос получает 503. Корень общий для экземпляров на одном хосте (api и worker), поэтому каждый
+// экземпляр работает в своём подкаталоге instance-* и держит блокировку его файла .lock, пока жив.
+// Квота общая на корень: экземпляр публикует свой резерв в .reserved, а резервирует под блокировкой .quota,
+// суммируя резервы живых экземпляров.
+// Каталоги упавших экземпляров (блокировка свободна) и неудачных удалений подбирает фоновая очистка.
+@Component
+public class WorkArea {
+
+    private static final Logger LOGGER = Logger.getLogger(WorkArea.class.getName());
+
+    private static final String INSTANCE_PREFIX = "instance-";
+    private static final String LOCK_FILE = ".lock";
+    private static final String RESERVED_FILE = ".reserved";
+    private static final String QUOTA_FILE = ".quota";
+    // Блокировка файла действует между процессами; внутри процесса два канала одного файла
+    // не блокируют друг друга, а бросают OverlappingFileLockException
+    private static final Object QUOTA_MONITOR = new Object();
+
+    private final ConverterProperties.Work settings;
+    private final ConverterProperties.Scheduler schedulerSettings;
+    private final String instance = INSTANCE_PREFIX + ProcessHandle.current().pid() + "-"
+            + UUID.randomUUID().toString().substring(0, 8);
+    private final Volume disk;
+    private Volume memory;
+    private final ConcurrentHashMap<String, Allocation> active = new ConcurrentHashMap<>();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong orphansRemoved = new AtomicLong();
+
+    public WorkArea(ConverterProperties properties) {
+        this.settings = properties.getWork();
+        this.schedulerSettings = properties.getScheduler();
+        this.disk = new Volume("disk", settings.getDirectory() != null
+                ? Paths.get(settings.getDirectory())
+                : Paths.get(System.getProperty("java.io.tmpdir"), "converter-work"),
+                settings.getMaxSize().toBytes());
+        if (settings.getMemoryDirectory() != null) {
+            this.memory = new Volume("memory", Paths.get(settings.getMemoryDirectory()),
+                    settings.getMemoryMaxSize().toBytes());
+        }
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        // Каталоги экземпляров, которые уже не работают, - сироты; каталоги живых экземпляров не трогаем
+        disk.open(instance);
+        removeOrphans(disk, Instant.now().minus(settings.getOrphanAge()));
+        if (memory != null) {
+            try {
+                memory.open(instance);
+                removeOrphans(memory, Instant.now().minus(settings.getOrphanAge()));
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Memory work directory {0} is not available, using disk only: {1}",
+                        new Object[]{memory.base, e.getMessage()});
+                memory.close();
+                memory = null;
+            }
+        }
+        LOGGER.log(Level.INFO, "Work area at {0} ({1}), memory {2}",
+                new Object[]{disk.root, settings.getMaxSize(), memory == null ? "disabled" : memory.root});
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        disk.close();
+        FileSystemUtils.deleteRecursively(disk.root.toFile());
+        if (memory != null) {
+            memory.close();
+            FileSystemUtils.deleteRecursively(memory.root.toFile());
+        }
+    }
+
+    // Каталог для одной конвертации; место резервируется по размеру входа (вход, выход и промежуточные файлы).
+    // ConversionRejectedException - квота исчерпана
+    public Allocation allocate(MediaKind kind, long inputBytes) throws IOException {
+        return allocateExact(kind, Math.max(inputBytes, 0) * settings.getReserveFactor());
+    }
+
+    // Каталог с резервом ровно bytes - для файла, который только хранится до конвертации (загрузка по частям)
+    public Allocation allocateExact(MediaKind kind, long bytes) throws IOException {
+        Volume volume = reserve(bytes);
+        if (volume == null) {
+            rejected.incrementAndGet();
+            LOGGER.log(Level.WARNING, "Work area quota exceeded, rejecting {0} bytes", bytes);
+            throw new ConversionRejectedException(kind, schedulerSettings.get(kind).getRetryAfter(),
+                    "work area quota exceeded");
+        }
+
+        String name = kind.name().toLowerCase() + "-" + UUID.randomUUID().toString().replace("-", "");
+        Allocation allocation = new Allocation(this, volume, volume.root.resolve(name).toFile(), bytes);
+        active.put(name, allocation);
+        try {
+            Files.createDirectories(allocation.directory.toPath());
+        } catch (IOException e) {
+            allocation.close();
+            throw e;
+        }
+        return allocation;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("active", active.size());
+        stats.put("diskReservedBytes", disk.reserved.get());
+        stats.put("diskMaxBytes", disk.maxBytes);
+        if (memory != null) {
+            stats.put("memoryReservedBytes", memory.reserved.get());
+            stats.put("memoryMaxBytes", memory.maxBytes);
+        }
+        stats.put("rejected", rejected.get());
+        stats.put("orphansRemoved", orphansRemoved.get());
+        return stats;
+    }
+
+    public long reservedBytes(boolean inMemory) {
+        Volume volume = inMemory ? memory : disk;
+        return volume == null ? 0 : volume.reserved.get();
+    }
+
+    public long rejected() {
+        return rejected.get();
+    }
+
+    public long orphansRemoved() {
+        return orphansRemoved.get();
+    }
+
+    // Свои каталоги без активной конвертации (не удалились из-за ошибки) и каталоги экземпляров,
+    // чья блокировка свободна (процесс упал). Время изменения каталога не показывает, жив ли он:
+    // ffmpeg пишет в файл внутри, и время самого каталога не меняется
+    @Scheduled(fixedDelayString = "${converter.work.sweep-interval:300000}")
+    public void sweepOrphans() {
+        Instant threshold = Instant.now().minus(settings.getOrphanAge());
+        removeOrphans(disk, threshold);
+        if (memory != null) removeOrphans(memory, threshold);
+    }
+
+    private void removeOrphans(Volume volume, Instant threshold) {
+        File[] own = volume.root.toFile().listFiles();
+        if (own != null) {
+            for (File entry : own) {
+                if (entry.getName().equals(LOCK_FILE) || entry.getName().equals(RESERVED_FILE)
+                        || active.containsKey(entry.getName())) continue;
+                removeOrphan(entry);
+            }
+        }
+        File[] instances = volume.base.toFile().listFiles();
+        if (instances == null) return;
+        for (File entry : instances) {
+            if (entry.getName().equals(instance) || entry.getName().equals(QUOTA_FILE)) continue;
+            File lock = new File(entry, LOCK_FILE);
+            // Без файла блокировки - каталог прежней раскладки или экземпляр, который ещё не создал .lock:
+            // решаем по возрасту
+            boolean orphaned = lock.isFile()
+                    ? !isLocked(lock.toPath())
+                    : entry.lastModified() < threshold.toEpochMilli();
+            if (orphaned) removeOrphan(entry);
+        }
+    }
+
+    private void removeOrphan(File entry) {
+        LOGGER.log(Level.INFO, "Removing orphaned work directory {0}", entry);
+        FileSystemUtils.deleteRecursively(entry);
+        orphansRemoved.incrementAndGet();
+    }
+
+    // Блокировку держит живой экземпляр - этот же процесс (OverlappingFileLockException) или другой
+    private static boolean isLocked(Path lockFile) {
+        try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.WRITE)) {
+            FileLock lock = channel.tryLock();
+            if (lock == null) return true;
+            lock.release();
+            return false;
+        } catch (OverlappingFileLockException e) {
+            return true;
+        } catch (IOException e) {
+            // Файл удалён владельцем при остановке или недоступен - судить не по чему, не трогаем
+            return true;
+        }
+    }
+
+    // Память - только для задач не больше memory-threshold и пока есть место; иначе диск.
+    // Задача больше всей квоты диска допускается, когда диск свободен, - иначе она не прошла бы никогда
+    private Volume reserve(long bytes) throws IOException {
+        if (memory != null && bytes <= settings.getMemoryThreshold().toBytes() && memory.tryReserve(bytes, false)) {
+            return memory;
+        }
+        return disk.tryReserve(bytes, true) ? disk : null;
+    }
+
+    private void release(Allocation allocation) {
+        if (allocation.directory.exists() && !FileSystemUtils.deleteRecursively(allocation.directory)) {
+            // Каталог остаётся сиротой - его удалит sweepOrphans
+            LOGGER.log(Level.WARNING, "Could not delete work directory: {0}", allocation.directory);
+        }
+        active.remove(allocation.directory.getName());
+        try {
+            allocation.volume.release(allocation.reservedBytes);
+        } catch (IOException e) {
+            // Опубликованный резерв останется завышенным до следующего резервирования
+            LOGGER.log(Level.WARNING, "Could not publish work area reservation: {0}", e.getMessage());
+        }
+    }
+
+    private static class Volume {
+
+        private final String name;
+        // Общий корень из настроек и подкаталог этого экземпляра в нём
+        private final Path base;
+        private Path root;
+        private final long maxBytes;
+        private final AtomicLong reserved = new AtomicLong();
+        private FileChannel lockChannel;
+
+        Volume(String name, Path base, long maxBytes) {
+            this.name = name;
+            this.base = base;
+            this.root = base;
+            this.maxBytes = maxBytes;
+        }
+
+        // Блокировка держится, пока открыт канал, - до остановки процесса или close()
+        void open(String instance) throws IOException {
+            root = Files.createDirectories(base.resolve(instance));
+            lockChannel = FileChannel.open(root.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            if (lockChannel.tryLock() == null) {
+                lockChannel.close();
+                throw new IOException("Work directory " + root + " is locked by another process");
+            }
+        }
+
+        // Резерв учитывается вместе с резервами других живых экземпляров на том же корне
+        boolean tryReserve(long bytes, boolean admitWhenIdle) throws IOException {
+            synchronized (QUOTA_MONITOR) {
+                try (FileChannel channel = FileChannel.open(base.resolve(QUOTA_FILE),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                     FileLock lock = channel.lock()) {
+                    long used = reserved.get() + othersReserved();
+                    if (used + bytes > maxBytes && !(admitWhenIdle && used == 0)) return false;
+                    publish(reserved.addAndGet(bytes));
+                    return true;
+                }
+            }
+        }
+
+        void release(long bytes) throws IOException {
+            synchronized (QUOTA_MONITOR) {
+                try (FileChannel channel = FileChannel.open(base.resolve(QUOTA_FILE),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                     FileLock lock = channel.lock()) {
+                    publish(reserved.addAndGet(-bytes));
+                }
+            }
+        }
+
+        // Резерв упавшего экземпляра (блокировка .lock свободна) не считается - его каталог удалит очистка
+        private long othersReserved() {
+            File[] instances = base.toFile().listFiles();
+            if (instances == null) return 0;
+            long sum = 0;
+            for (File entry : instances) {
+                Path reservedFile = entry.toPath().resolve(RESERVED_FILE);
+                if (entry.toPath().equals(root) || !Files.isRegularFile(reservedFile)
+                        || !isLocked(entry.toPath().resolve(LOCK_FILE))) continue;
+                try {
+                    sum += Long.parseLong(Files.readString(reservedFile).trim());
+                } catch (IOException | NumberFormatException e) {
+                    LOGGER.log(Level.FINE, "Could not read reservation of {0}: {1}", new Object[]{entry, e.getMessage()});
+                }
+            }
+            return sum;
+        }
+
+        private void publish(long bytes) throws IOException {
+            if (root.equals(base)) return;
+            Files.writeString(root.resolve(RESERVED_FILE), Long.toString(bytes));
+        }
+
+        void close() {
+            if (lockChannel == null) return;
+            try {
+                lockChannel.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Could not release work directory lock {0}: {1}",
+                        new Object[]{root, e.getMessage()});
+            }
+        }
+    }
+
+    // Каталог одной конвертации; close() удаляет его и освобождает резерв
+    public static class Allocation implements AutoCloseable {
+
+        private final WorkArea area;
+        private final Volume volume;
+        private final File directory;
+        private final long reservedBytes;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Allocation(WorkArea area, Volume volume, File directory, long reservedBytes) {
+            this.area = area;
+            this.volume = volume;
+            this.directory = directory;
+            this.reservedBytes = reservedBytes;
+        }
+
+        public File getDirectory() {
+            return directory;
+        }
+
+        public File file(String name) {
+            return new File(directory, name);
+        }
+
+        public File directory(String name) throws IOException {
+            return Files.createDirectories(directory.toPath().resolve(name)).toFile();
+        }
+
+        public boolean isInMemory() {
+            return volume.name.equals("memory");
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                area.release(this);
+            }
+        }
+    }
+}
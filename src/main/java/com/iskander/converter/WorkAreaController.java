@@ -0,0 +1,22 @@
+package com.iskander.converter;
+
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/work")
+public class WorkAreaController {
+
+    private final WorkArea workArea;
+
+    public WorkAreaController(WorkArea workArea) {
+        this.workArea = workArea;
+    }
+
+    // Занятость рабочей области: активные каталоги, резерв по томам, отказы по квоте, удалённые сироты
+    @GetMapping("/stats")
+    public Map<String, Object> stats() {
+        return workArea.stats();
+    }
+}
@@ -0,0 +1,64 @@
+package com.iskander.converter;
+
+import java.util.List;
+
+// Что воркер объявляет о себе: доступные инструменты (ffmpeg, soffice), типы задач, которые он берёт,
+// число параллельных задач и сколько из них занято сейчас
+public class WorkerInfo {
+
+    private String id;
+    private List<String> tools;
+    private List<MediaKind> kinds;
+    private int capacity;
+    private int running;
+    private long heartbeat;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public List<String> getTools() {
+        return tools;
+    }
+
+    public void setTools(List<String> tools) {
+        this.tools = tools;
+    }
+
+    public List<MediaKind> getKinds() {
+        return kinds;
+    }
+
+    public void setKinds(List<MediaKind> kinds) {
+        this.kinds = kinds;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public int getRunning() {
+        return running;
+    }
+
+    public void setRunning(int running) {
+        this.running = running;
+    }
+
+    // Время последнего объявления (мс с эпохи); по нему API-узел находит упавшие воркеры
+    public long getHeartbeat() {
+        return heartbeat;
+    }
+
+    public void setHeartbeat(long heartbeat) {
+        this.heartbeat = heartbeat;
+    }
+}
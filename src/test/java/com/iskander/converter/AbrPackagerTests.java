@@ -0,0 +1,51 @@
+package com.iskander.converter;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AbrPackagerTests {
+
+	private final ConverterProperties.Abr settings = new ConverterProperties().getAbr();
+
+	@Test
+	void skipsRungsAboveTheSource() {
+		List<ConverterProperties.Rung> ladder = AbrPackager.ladder(settings.getLadder(), 720);
+
+		assertEquals(List.of(720, 480, 360), ladder.stream().map(ConverterProperties.Rung::getHeight).toList());
+		assertEquals(List.of(360), AbrPackager.ladder(settings.getLadder(), 240).stream()
+				.map(ConverterProperties.Rung::getHeight).toList());
+	}
+
+	@Test
+	void encodesAllRenditionsFromOneDecode() {
+		List<ConverterProperties.Rung> ladder = AbrPackager.ladder(settings.getLadder(), 720);
+		List<String> command = AbrPackager.command(new File("in.mp4"), new File("out.hls"), "hls", ladder,
+				true, settings, false);
+
+		assertEquals(1, command.stream().filter("-i"::equals).count());
+		assertEquals("[0:v]split=3[s0][s1][s2];[s0]scale=-2:'min(720,ih)'[v0];[s1]scale=-2:'min(480,ih)'[v1];"
+				+ "[s2]scale=-2:'min(360,ih)'[v2]", command.get(command.indexOf("-filter_complex") + 1));
+		assertEquals("v:0,agroup:audio v:1,agroup:audio v:2,agroup:audio a:0,agroup:audio",
+				command.get(command.indexOf("-var_stream_map") + 1));
+		assertEquals("expr:gte(t,n_forced*4.000)", command.get(command.indexOf("-force_key_frames") + 1));
+		assertEquals(new File("out.hls", "stream_%v/index.m3u8").getAbsolutePath(), command.get(command.size() - 1));
+	}
+
+	@Test
+	void cmafWritesBothManifestsOverOneSetOfSegments() {
+		List<ConverterProperties.Rung> ladder = AbrPackager.ladder(settings.getLadder(), 1080);
+		List<String> command = AbrPackager.command(new File("in.mp4"), new File("out.cmaf"), "cmaf", ladder,
+				false, settings, true);
+
+		assertEquals("dash", command.get(command.lastIndexOf("-f") + 1));
+		assertEquals("id=0,streams=v", command.get(command.indexOf("-adaptation_sets") + 1));
+		assertTrue(command.contains("-hls_playlist"));
+		assertFalse(command.contains("0:a:0"));
+		assertEquals(new File("out.cmaf", "manifest.mpd").getAbsolutePath(), command.get(command.size() - 1));
+		assertEquals("master.m3u8", AbrPackager.manifestName("cmaf"));
+	}
+}
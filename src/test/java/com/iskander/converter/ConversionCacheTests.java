@@ -0,0 +1,118 @@
+package com.iskander.converter;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.unit.DataSize;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConversionCacheTests {
+
+	@TempDir
+	Path tempDir;
+
+	private ConversionCache newCache(DataSize maxSize) throws Exception {
+		ConverterProperties properties = new ConverterProperties();
+		properties.getCache().setDirectory(tempDir.resolve("cache").toString());
+		properties.getCache().setMaxSize(maxSize);
+		ConversionCache cache = new ConversionCache(properties);
+		cache.init();
+		return cache;
+	}
+
+	private File produce(String name, int size) throws Exception {
+		Path file = tempDir.resolve(name);
+		Files.write(file, new byte[size]);
+		return file.toFile();
+	}
+
+	@Test
+	void keyDependsOnContentAndParameters() throws Exception {
+		ConversionCache cache = newCache(DataSize.ofMegabytes(1));
+		MockMultipartFile a = new MockMultipartFile("file", "a.png", "image/png", new byte[]{1, 2, 3});
+		MockMultipartFile sameContent = new MockMultipartFile("file", "other-name.png", "image/png", new byte[]{1, 2, 3});
+
+		assertEquals(cache.key(a, "image", "jpg"), cache.key(sameContent, "image", "jpg"));
+		assertNotEquals(cache.key(a, "image", "jpg"), cache.key(a, "image", "webp"));
+	}
+
+	@Test
+	void committedResultIsServedAsHit() throws Exception {
+		ConversionCache cache = newCache(DataSize.ofMegabytes(1));
+
+		ConversionCache.Flight first = cache.join("k1", "png");
+		assertFalse(first.isHit());
+		File stored = first.commit(produce("out.png", 10));
+		first.close();
+
+		ConversionCache.Flight second = cache.join("k1", "png");
+		assertTrue(second.isHit());
+		assertEquals(stored, second.cachedFile());
+		assertEquals(1L, cache.stats().get("hits"));
+		assertEquals(1L, cache.stats().get("misses"));
+	}
+
+	@Test
+	void leastRecentlyUsedEntryIsEvicted() throws Exception {
+		ConversionCache cache = newCache(DataSize.ofBytes(25));
+
+		commit(cache, "a", produce("a.bin", 10));
+		commit(cache, "b", produce("b.bin", 10));
+		// "a" использован позже "b"
+		assertTrue(isHit(cache, "a"));
+		commit(cache, "c", produce("c.bin", 10));
+
+		assertTrue(isHit(cache, "a"));
+		assertFalse(isHit(cache, "b"));
+		assertEquals(1L, cache.stats().get("evictions"));
+	}
+
+	@Test
+	void handedOutFileIsNotEvictedUntilReleased() throws Exception {
+		ConversionCache cache = newCache(DataSize.ofBytes(15));
+
+		ConversionCache.Flight first = cache.join("a", "bin");
+		File a = first.commit(produce("a.bin", 10));
+		// Ответ с "a" ещё не записан, а соседний запрос кладёт в кэш "b"
+		ConversionCache.Flight second = cache.join("b", "bin");
+		File b = second.commit(produce("b.bin", 10));
+		assertTrue(a.exists());
+		assertEquals(20L, cache.totalBytes());
+
+		// После записи ответа лишнее вытесняется как обычно
+		first.close();
+		assertFalse(a.exists());
+		assertTrue(b.exists());
+		second.close();
+		assertEquals(1L, cache.stats().get("evictions"));
+	}
+
+	@Test
+	void abandonedFlightLetsNextRequestConvert() throws Exception {
+		ConversionCache cache = newCache(DataSize.ofMegabytes(1));
+
+		ConversionCache.Flight failed = cache.join("k", "png");
+		failed.close();
+
+		ConversionCache.Flight retry = cache.join("k", "png");
+		assertFalse(retry.isHit());
+		retry.close();
+	}
+
+	private static void commit(ConversionCache cache, String key, File produced) throws Exception {
+		try (ConversionCache.Flight flight = cache.join(key, "bin")) {
+			flight.commit(produced);
+		}
+	}
+
+	private static boolean isHit(ConversionCache cache, String key) throws Exception {
+		try (ConversionCache.Flight flight = cache.join(key, "bin")) {
+			return flight.isHit();
+		}
+	}
+}
@@ -0,0 +1,130 @@
+package com.iskander.converter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConversionSchedulerTests {
+
+	private ConversionScheduler newScheduler(int maxConcurrent, int queueCapacity, long queueTimeout) {
+		return newScheduler(maxConcurrent, queueCapacity, queueTimeout, 1.0);
+	}
+
+	private ConversionScheduler newScheduler(int maxConcurrent, int queueCapacity, long queueTimeout, double agingRate) {
+		ConverterProperties properties = new ConverterProperties();
+		properties.getScheduler().setAgingRate(agingRate);
+		ConverterProperties.Bulkhead video = properties.getScheduler().getVideo();
+		video.setMaxConcurrent(maxConcurrent);
+		video.setQueueCapacity(queueCapacity);
+		video.setQueueTimeout(queueTimeout);
+		video.setRetryAfter(42);
+		return new ConversionScheduler(properties);
+	}
+
+	@Test
+	void rejectsImmediatelyWhenQueueIsFull() throws Exception {
+		ConversionScheduler scheduler = newScheduler(1, 0, 10_000L);
+
+		try (ConversionScheduler.Slot ignored = scheduler.acquire(MediaKind.VIDEO)) {
+			ConversionRejectedException e = assertThrows(ConversionRejectedException.class,
+					() -> scheduler.acquire(MediaKind.VIDEO));
+			assertEquals(42, e.getRetryAfterSeconds());
+			assertEquals(1, scheduler.rejected(MediaKind.VIDEO));
+		}
+		assertEquals(0, scheduler.running(MediaKind.VIDEO));
+	}
+
+	@Test
+	void rejectsAfterQueueTimeout() throws Exception {
+		ConversionScheduler scheduler = newScheduler(1, 5, 50L);
+
+		try (ConversionScheduler.Slot ignored = scheduler.acquire(MediaKind.VIDEO)) {
+			assertThrows(ConversionRejectedException.class, () -> scheduler.acquire(MediaKind.VIDEO));
+			assertEquals(0, scheduler.queued(MediaKind.VIDEO));
+		}
+	}
+
+	@Test
+	void kindsDoNotShareLimits() throws Exception {
+		ConversionScheduler scheduler = newScheduler(1, 0, 10_000L);
+
+		try (ConversionScheduler.Slot video = scheduler.acquire(MediaKind.VIDEO);
+			 ConversionScheduler.Slot image = scheduler.acquire(MediaKind.IMAGE)) {
+			assertEquals(1, scheduler.running(MediaKind.IMAGE));
+		}
+	}
+
+	@Test
+	void slotIsReleasedOnlyOnce() throws Exception {
+		ConversionScheduler scheduler = newScheduler(1, 0, 10_000L);
+
+		ConversionScheduler.Slot slot = scheduler.acquire(MediaKind.VIDEO);
+		slot.close();
+		slot.close();
+		assertEquals(0, scheduler.running(MediaKind.VIDEO));
+		scheduler.acquire(MediaKind.VIDEO).close();
+	}
+
+	@Test
+	void runsCheaperWaitingConversionFirst() throws Exception {
+		ConversionScheduler scheduler = newScheduler(1, 5, 10_000L);
+		List<String> order = new CopyOnWriteArrayList<>();
+
+		ConversionScheduler.Slot slot = scheduler.acquire(MediaKind.VIDEO);
+		Thread expensive = waitFor(scheduler, estimate(1000), "expensive", order);
+		awaitQueued(scheduler, 1);
+		Thread cheap = waitFor(scheduler, estimate(10), "cheap", order);
+		awaitQueued(scheduler, 2);
+		slot.close();
+		expensive.join(5000);
+		cheap.join(5000);
+
+		assertEquals(List.of("cheap", "expensive"), order);
+	}
+
+	@Test
+	void agingLetsLongWaitingConversionGoFirst() throws Exception {
+		// Каждая секунда ожидания списывает миллион секунд оценки - порядок фактически по времени постановки
+		ConversionScheduler scheduler = newScheduler(1, 5, 10_000L, 1_000_000);
+		List<String> order = new CopyOnWriteArrayList<>();
+
+		ConversionScheduler.Slot slot = scheduler.acquire(MediaKind.VIDEO);
+		Thread expensive = waitFor(scheduler, estimate(1000), "expensive", order);
+		awaitQueued(scheduler, 1);
+		Thread.sleep(20);
+		Thread cheap = waitFor(scheduler, estimate(10), "cheap", order);
+		awaitQueued(scheduler, 2);
+		slot.close();
+		expensive.join(5000);
+		cheap.join(5000);
+
+		assertEquals(List.of("expensive", "cheap"), order);
+	}
+
+	// units видео по коэффициенту по умолчанию (0.1 с на мегапиксель-секунду)
+	private CostEstimator.Estimate estimate(double units) {
+		return new CostEstimator(new ConverterProperties(), null).estimate(MediaKind.VIDEO, "mov", "mp4", units);
+	}
+
+	private Thread waitFor(ConversionScheduler scheduler, CostEstimator.Estimate estimate, String name, List<String> order) {
+		Thread thread = new Thread(() -> {
+			try (ConversionScheduler.Slot ignored = scheduler.acquire(MediaKind.VIDEO, estimate)) {
+				order.add(name);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		thread.start();
+		return thread;
+	}
+
+	private void awaitQueued(ConversionScheduler scheduler, int queued) throws InterruptedException {
+		for (int i = 0; i < 500 && scheduler.queued(MediaKind.VIDEO) < queued; i++) {
+			Thread.sleep(10);
+		}
+		assertEquals(queued, scheduler.queued(MediaKind.VIDEO));
+	}
+}
@@ -0,0 +1,85 @@
+package com.iskander.converter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.DoubleConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConversionWorkerTests {
+
+	@TempDir
+	Path tempDir;
+
+	// Как soffice: прогресс не сообщает, работает до прерывания
+	private static class SilentEngine implements ConversionEngine {
+
+		private final CountDownLatch started = new CountDownLatch(1);
+		private final AtomicBoolean interrupted = new AtomicBoolean();
+
+		@Override
+		public String name() {
+			return "silent";
+		}
+
+		@Override
+		public int priority() {
+			return 0;
+		}
+
+		@Override
+		public boolean supports(MediaKind kind, String sourceFormat, String targetFormat) {
+			return kind == MediaKind.DOCUMENT;
+		}
+
+		@Override
+		public boolean convert(File inputFile, File outputFile, DoubleConsumer progress) throws InterruptedException {
+			started.countDown();
+			try {
+				Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+			} catch (InterruptedException e) {
+				interrupted.set(true);
+				throw e;
+			}
+			return true;
+		}
+	}
+
+	@Test
+	void heartbeatCancelsDeletedJobThatReportsNoProgress() throws Exception {
+		ConverterProperties properties = new ConverterProperties();
+		properties.getCluster().setDirectory(tempDir.toString());
+		SharedDirectoryJobQueue queue = new SharedDirectoryJobQueue(properties, new ObjectMapper());
+		SilentEngine engine = new SilentEngine();
+		ConversionWorker worker = new ConversionWorker(properties, queue, new EngineRouter(List.of(engine), properties),
+				new ConversionScheduler(properties), new CostEstimator(properties, null));
+
+		Files.writeString(queue.directory("a").toPath().resolve("input.docx"), "document");
+		queue.enqueue(new QueuedJob("a", MediaKind.DOCUMENT, "pdf", "input.docx", "output.pdf"));
+		QueuedJob job = queue.claim("w1", EnumSet.of(MediaKind.DOCUMENT));
+		Thread thread = Thread.ofVirtual().start(() -> assertDoesNotThrow(() -> worker.execute(job)));
+		assertTrue(engine.started.await(10, TimeUnit.SECONDS));
+
+		// Задача жива - heartbeat её не трогает
+		worker.heartbeat();
+		assertFalse(engine.interrupted.get());
+
+		queue.delete("a");
+		worker.heartbeat();
+		assertTrue(thread.join(Duration.ofSeconds(10)));
+		assertTrue(engine.interrupted.get());
+		// Проверка удаления не воссоздаёт каталог задачи
+		assertFalse(queue.exists("a"));
+	}
+}
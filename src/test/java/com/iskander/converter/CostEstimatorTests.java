@@ -0,0 +1,40 @@
+package com.iskander.converter;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CostEstimatorTests {
+
+	@Test
+	void learnsSecondsPerUnitFromCompletedConversions() {
+		CostEstimator estimator = new CostEstimator(new ConverterProperties(), null);
+
+		CostEstimator.Estimate first = estimator.estimate(MediaKind.AUDIO, "wav", "mp3", 10);
+		assertEquals(5, first.getSeconds(), 1e-9);
+		first.completed(Duration.ofSeconds(20).toNanos());
+
+		// Первый замер заменяет коэффициент по умолчанию, следующие сглаживаются
+		assertEquals(20, estimator.estimate(MediaKind.AUDIO, "wav", "mp3", 10).getSeconds(), 1e-9);
+		estimator.estimate(MediaKind.AUDIO, "wav", "mp3", 10).completed(Duration.ofSeconds(10).toNanos());
+		assertEquals(18, estimator.estimate(MediaKind.AUDIO, "wav", "mp3", 10).getSeconds(), 1e-9);
+
+		// Другая пара форматов учится отдельно
+		assertEquals(5, estimator.estimate(MediaKind.AUDIO, "wav", "ogg", 10).getSeconds(), 1e-9);
+	}
+
+	@Test
+	void rejectsEstimatesAboveTheLimit() {
+		ConverterProperties properties = new ConverterProperties();
+		properties.getScheduler().getVideo().setMaxCost(Duration.ofMinutes(1));
+		CostEstimator estimator = new CostEstimator(properties, null);
+
+		assertEquals(50, estimator.estimate(MediaKind.VIDEO, "mov", "mp4", 500).getSeconds(), 1e-9);
+		ConversionTooCostlyException e = assertThrows(ConversionTooCostlyException.class,
+				() -> estimator.estimate(MediaKind.VIDEO, "mov", "mp4", 1000));
+		assertEquals(60, e.getMaxSeconds());
+		assertEquals(MediaKind.VIDEO, e.getKind());
+	}
+}
@@ -0,0 +1,38 @@
+package com.iskander.converter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CpuPoolTests {
+
+	@Test
+	void runsComputationOnPlatformThreadForVirtualCaller() throws Exception {
+		ConverterProperties properties = new ConverterProperties();
+		properties.getCpu().setThreads(1);
+		CpuPool pool = new CpuPool(properties);
+		try {
+			AtomicReference<Thread> worker = new AtomicReference<>();
+			AtomicReference<Object> result = new AtomicReference<>();
+			Thread caller = Thread.ofVirtual().start(() -> {
+				try {
+					result.set(pool.call(() -> {
+						worker.set(Thread.currentThread());
+						return 42;
+					}));
+				} catch (Exception e) {
+					result.set(e);
+				}
+			});
+			caller.join();
+
+			assertEquals(42, result.get());
+			assertFalse(worker.get().isVirtual());
+			assertTrue(worker.get().getName().startsWith("cpu-"));
+		} finally {
+			pool.shutdown();
+		}
+	}
+}
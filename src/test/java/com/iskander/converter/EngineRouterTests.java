@@ -0,0 +1,148 @@
+package com.iskander.converter;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.DoubleConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EngineRouterTests {
+
+	@TempDir
+	Path tempDir;
+
+	private static class FakeEngine implements ConversionEngine {
+
+		private final String name;
+		private final int priority;
+		private boolean succeeds = true;
+		private int calls;
+
+		FakeEngine(String name, int priority) {
+			this.name = name;
+			this.priority = priority;
+		}
+
+		@Override
+		public String name() {
+			return name;
+		}
+
+		@Override
+		public int priority() {
+			return priority;
+		}
+
+		@Override
+		public boolean supports(MediaKind kind, String sourceFormat, String targetFormat) {
+			return kind == MediaKind.IMAGE;
+		}
+
+		@Override
+		public boolean convert(File inputFile, File outputFile, DoubleConsumer progress) {
+			calls++;
+			return succeeds;
+		}
+	}
+
+	private EngineRouter router(ConversionEngine... engines) {
+		ConverterProperties properties = new ConverterProperties();
+		properties.getEngines().setExploration(0);
+		properties.getEngines().setMinSamples(3);
+		return new EngineRouter(List.of(engines), properties);
+	}
+
+	@Test
+	void usesPriorityUntilEnginesAreMeasured() {
+		FakeEngine slow = new FakeEngine("slow", 10);
+		FakeEngine fast = new FakeEngine("fast", 0);
+		EngineRouter router = router(slow, fast);
+
+		assertEquals(List.of(fast, slow), router.candidates(MediaKind.IMAGE, "png", "jpg"));
+		assertTrue(router.candidates(MediaKind.AUDIO, "mp3", "wav").isEmpty());
+	}
+
+	@Test
+	void prefersLowerMeasuredLatency() {
+		FakeEngine first = new FakeEngine("first", 0);
+		FakeEngine second = new FakeEngine("second", 10);
+		EngineRouter router = router(first, second);
+
+		for (int i = 0; i < 3; i++) {
+			router.record(first, "png", "jpg", 50_000_000L, true);
+			router.record(second, "png", "jpg", 5_000_000L, true);
+		}
+
+		assertTrue(router.prefers(second, MediaKind.IMAGE, "png", "jpg"));
+		// Для другой пары форматов замеров нет - снова порядок по priority
+		assertTrue(router.prefers(first, MediaKind.IMAGE, "bmp", "png"));
+	}
+
+	@Test
+	void movesAwayFromFailingEngine() {
+		FakeEngine failing = new FakeEngine("failing", 0);
+		FakeEngine working = new FakeEngine("working", 10);
+		failing.succeeds = false;
+		EngineRouter router = router(failing, working);
+		File input = tempDir.resolve("in.png").toFile();
+		File output = tempDir.resolve("out.jpg").toFile();
+
+		for (int i = 0; i < 3; i++) {
+			assertDoesNotThrow(() -> assertTrue(router.convert(MediaKind.IMAGE, input, output, null)));
+		}
+		assertEquals(3, failing.calls);
+		assertEquals(3, working.calls);
+
+		assertDoesNotThrow(() -> assertTrue(router.convert(MediaKind.IMAGE, input, output, null)));
+		assertEquals(3, failing.calls);
+		assertEquals(4, working.calls);
+	}
+
+	@Test
+	void directPathKeepsPreferringFasterEngineAfterWarmUp() {
+		FakeEngine jvm = new FakeEngine("jvm", 0);
+		FakeEngine ffmpeg = new FakeEngine("ffmpeg", 10);
+		EngineRouter router = router(jvm, ffmpeg);
+
+		// Как в контроллере: движок JVM вызывается напрямую, иначе - ffmpeg, и замер пишет каждая ветка
+		for (int i = 0; i < 10; i++) {
+			if (router.prefers(jvm, MediaKind.IMAGE, "png", "jpg")) {
+				router.record(jvm, "png", "jpg", 5_000_000L, true);
+			} else {
+				router.record(ffmpeg, "png", "jpg", 50_000_000L, true);
+			}
+		}
+
+		// ffmpeg набрал замеры и больше не идёт первым как неизмеренный
+		assertEquals(3L, count(router, "ffmpeg:png->jpg"));
+		assertEquals(7L, count(router, "jvm:png->jpg"));
+		assertTrue(router.prefers(jvm, MediaKind.IMAGE, "png", "jpg"));
+	}
+
+	@Test
+	void chosenEngineIsNotReplacedOnFailure() throws Exception {
+		FakeEngine jvm = new FakeEngine("jvm", 0);
+		FakeEngine ffmpeg = new FakeEngine("ffmpeg", 10);
+		jvm.succeeds = false;
+		EngineRouter router = router(jvm, ffmpeg);
+		File input = tempDir.resolve("in.png").toFile();
+		File output = tempDir.resolve("out.jpg").toFile();
+
+		// Ключ кэша включает движок - результат другого движка под ним не сохраняется
+		assertFalse(router.convert(jvm, input, output, null));
+		assertEquals(0, ffmpeg.calls);
+		assertEquals(1L, count(router, "jvm:png->jpg"));
+		assertFalse(Arrays.equals(ImageTranscoder.cacheParams("jpg", jvm), ImageTranscoder.cacheParams("jpg", ffmpeg)));
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Object count(EngineRouter router, String key) {
+		return ((Map<String, Object>) router.stats().get(key)).get("count");
+	}
+}
@@ -0,0 +1,37 @@
+package com.iskander.converter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FfmpegProgressTests {
+
+	@Test
+	void reportsFractionOfProbedDuration() {
+		List<Double> reported = new ArrayList<>();
+		FfmpegProgress progress = new FfmpegProgress(10.0, reported::add);
+
+		progress.accept("frame=120");
+		progress.accept("out_time_us=N/A");
+		progress.accept("out_time_us=2500000");
+		progress.accept("progress=continue");
+		progress.accept("out_time_us=12000000");
+		progress.accept("progress=end");
+
+		assertEquals(List.of(0.25, 1.0, 1.0), reported);
+	}
+
+	@Test
+	void ignoresTimeWhenDurationIsUnknown() {
+		List<Double> reported = new ArrayList<>();
+		FfmpegProgress progress = new FfmpegProgress(-1, reported::add);
+
+		progress.accept("out_time_us=2500000");
+		progress.accept("progress=end");
+
+		assertEquals(List.of(1.0), reported);
+	}
+}
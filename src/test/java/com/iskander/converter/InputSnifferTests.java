@@ -0,0 +1,94 @@
+package com.iskander.converter;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InputSnifferTests {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void recognisesFormatsBySignatureNotName() {
+		assertEquals(InputFormat.JPEG, sniff(0xFF, 0xD8, 0xFF, 0xE0, 0, 0x10, 'J', 'F', 'I', 'F'));
+		assertEquals(InputFormat.PNG, sniff(0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A));
+		assertEquals(InputFormat.WAV, sniff(bytes("RIFF\0\0\0\0WAVEfmt ")));
+		assertEquals(InputFormat.WEBP, sniff(bytes("RIFF\0\0\0\0WEBPVP8 ")));
+		assertEquals(InputFormat.MP4, sniff(bytes("\0\0\0\u0018ftypisom")));
+		assertEquals(InputFormat.MOV, sniff(bytes("\0\0\0\u0014ftypqt  ")));
+		assertEquals(InputFormat.M4A, sniff(bytes("\0\0\0\u0018ftypM4A ")));
+		assertEquals(InputFormat.WEBM, sniff(0x1A, 0x45, 0xDF, 0xA3, 0x9F, 0x42, 0x82, 0x84, 'w', 'e', 'b', 'm'));
+		assertEquals(InputFormat.MKV, sniff(0x1A, 0x45, 0xDF, 0xA3, 0xA3, 0x42, 0x82, 0x88, 'm', 'a', 't', 'r'));
+		assertEquals(InputFormat.MP3, sniff(0xFF, 0xFB, 0x90, 0x64));
+		assertEquals(InputFormat.AAC, sniff(0xFF, 0xF1, 0x50, 0x80));
+		assertEquals(InputFormat.PDF, sniff(bytes("%PDF-1.7\n")));
+		assertEquals(InputFormat.TEXT, sniff(bytes("Hello, world\r\n")));
+	}
+
+	@Test
+	void looksPastId3TagForTheFirstFrame() {
+		byte[] header = new byte[32];
+		System.arraycopy(bytes("ID3\u0004\0\0\0\0\0\u0004"), 0, header, 0, 10);
+		System.arraycopy(bytes("fLaC"), 0, header, 14, 4);
+
+		assertEquals(InputFormat.FLAC, InputSniffer.sniff(header, header.length));
+	}
+
+	@Test
+	void rejectsGarbageAndInputOfAnotherKind() {
+		MockMultipartFile garbage = new MockMultipartFile("file", "photo.jpg", null, new byte[]{0, 1, 2, 3, 4, 5});
+		MockMultipartFile text = new MockMultipartFile("file", "clip.mp4", null, bytes("not a video"));
+
+		assertThrows(UnsupportedInputException.class, () -> InputSniffer.require(MediaKind.IMAGE, garbage, "photo.jpg"));
+		assertThrows(UnsupportedInputException.class, () -> InputSniffer.require(MediaKind.VIDEO, text, "clip.mp4"));
+	}
+
+	@Test
+	void namesWorkFileByContentKeepingExtensionsOfTheSameFamily() throws Exception {
+		MockMultipartFile png = new MockMultipartFile("file", "upload.tmp", null,
+				new byte[]{(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A});
+		MockMultipartFile ole = new MockMultipartFile("file", "sheet.xls", null,
+				new byte[]{(byte) 0xD0, (byte) 0xCF, 0x11, (byte) 0xE0, (byte) 0xA1, (byte) 0xB1, 0x1A, (byte) 0xE1});
+
+		assertEquals("png", InputSniffer.require(MediaKind.IMAGE, png, "upload.tmp").extension("upload.tmp"));
+		assertEquals("xls", InputSniffer.require(MediaKind.DOCUMENT, ole, "sheet.xls").extension("sheet.xls"));
+		// Видеоконтейнер подходит и для извлечения звука
+		assertEquals(InputFormat.MP4, InputSniffer.require(MediaKind.AUDIO,
+				new MockMultipartFile("file", "a.mp4", null, bytes("\0\0\0\u0018ftypisom")), "a.mp4"));
+	}
+
+	@Test
+	void tellsFfmpegTheDemuxer() throws Exception {
+		File input = dir.resolve("input.bin").toFile();
+		Files.write(input.toPath(), bytes("RIFF\0\0\0\0WAVEfmt "));
+
+		assertEquals(List.of("-f", "wav", "-i", input.getAbsolutePath()), InputSniffer.ffmpegInput(input));
+		File missing = dir.resolve("missing.mp4").toFile();
+		assertEquals(List.of("-i", missing.getAbsolutePath()), InputSniffer.ffmpegInput(missing));
+	}
+
+	private static InputFormat sniff(int... values) {
+		byte[] header = new byte[values.length];
+		for (int i = 0; i < values.length; i++) {
+			header[i] = (byte) values[i];
+		}
+		return InputSniffer.sniff(header, header.length);
+	}
+
+	private static InputFormat sniff(byte[] header) {
+		return InputSniffer.sniff(header, header.length);
+	}
+
+	private static byte[] bytes(String text) {
+		return text.getBytes(StandardCharsets.ISO_8859_1);
+	}
+}
@@ -0,0 +1,69 @@
+package com.iskander.converter;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JvmImageEngineTests {
+
+	@TempDir
+	Path tempDir;
+
+	private final CpuPool cpuPool = new CpuPool(new ConverterProperties());
+	private final JvmImageEngine engine = new JvmImageEngine(new ConverterProperties(), cpuPool);
+
+	@AfterEach
+	void shutdown() {
+		cpuPool.shutdown();
+	}
+
+	private byte[] png(int width, int height) throws Exception {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ImageIO.write(image, "png", out);
+		return out.toByteArray();
+	}
+
+	@Test
+	void supportsCommonRasterFormatsOnly() {
+		assertTrue(engine.supports(".png", "jpg"));
+		assertTrue(engine.supports(".BMP", "tiff"));
+		assertFalse(engine.supports(".webp", "png"));
+		assertFalse(engine.supports(".png", "webp"));
+	}
+
+	@Test
+	void scalesToTargetWidthKeepingAspectRatio() throws Exception {
+		File output = tempDir.resolve("out.jpg").toFile();
+
+		assertTrue(engine.convert(new ByteArrayInputStream(png(640, 480)), output, "jpg"));
+
+		BufferedImage result = ImageIO.read(output);
+		assertEquals(JvmImageEngine.TARGET_WIDTH, result.getWidth());
+		assertEquals(1440, result.getHeight());
+	}
+
+	@Test
+	void rejectsUnreadableInput() throws Exception {
+		File output = tempDir.resolve("out.png").toFile();
+
+		assertFalse(engine.convert(new ByteArrayInputStream(new byte[]{1, 2, 3}), output, "png"));
+	}
+
+	@Test
+	void leavesOversizedImagesToFfmpeg() throws Exception {
+		ConverterProperties properties = new ConverterProperties();
+		properties.getImage().setMaxPixels(100);
+		JvmImageEngine limited = new JvmImageEngine(properties, cpuPool);
+		assertFalse(limited.convert(new ByteArrayInputStream(png(20, 20)), tempDir.resolve("out.png").toFile(), "png"));
+	}
+}
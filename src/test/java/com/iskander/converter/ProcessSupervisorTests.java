@@ -0,0 +1,91 @@
+package com.iskander.converter;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProcessSupervisorTests {
+
+	@Test
+	void addsThreadLimitsToFfmpegCommand() {
+		ConverterProperties.ProcessLimits limits = new ConverterProperties.ProcessLimits(Duration.ofMinutes(1));
+		limits.setThreads(2);
+
+		assertEquals(List.of("ffmpeg", "-filter_threads", "2", "-i", "in.mov", "-threads", "2", "out.mp4"),
+				ProcessSupervisor.limitedCommand(List.of("ffmpeg", "-i", "in.mov", "out.mp4"), limits));
+		// Прочие инструменты не знают -threads
+		assertEquals(List.of("soffice", "--headless"),
+				ProcessSupervisor.limitedCommand(List.of("soffice", "--headless"), limits));
+	}
+
+	@Test
+	void wrapsCommandInUlimitWhenResourcesAreLimited() {
+		ConverterProperties.ProcessLimits limits = new ConverterProperties.ProcessLimits(Duration.ofMinutes(1));
+		limits.setCpuTime(Duration.ofMinutes(10));
+		limits.setMemory(DataSize.ofGigabytes(2));
+
+		List<String> command = ProcessSupervisor.limitedCommand(List.of("ffmpeg", "-i", "in.mov", "out.mp4"), limits);
+		if (System.getProperty("os.name").toLowerCase().startsWith("windows")) return;
+		assertEquals(List.of("sh", "-c", "ulimit -t 600 && ulimit -v 2097152 && exec \"$0\" \"$@\"",
+				"ffmpeg", "-i", "in.mov", "out.mp4"), command);
+	}
+
+	@Test
+	void killsProcessTreeAfterTimeout() throws Exception {
+		if (System.getProperty("os.name").toLowerCase().startsWith("windows")) return;
+		ProcessSupervisor supervisor = new ProcessSupervisor(new ConverterProperties());
+		try {
+			// sh с дочерним sleep: убит должен быть и потомок
+			Process process = new ProcessBuilder("sh", "-c", "sleep 30 & wait").start();
+			Thread.sleep(200);
+			List<ProcessHandle> children = process.descendants().toList();
+			try (ProcessSupervisor.Supervision supervision =
+						 supervisor.supervise(process, Duration.ofMillis(300), "sleep", false)) {
+				assertTrue(process.waitFor(5, TimeUnit.SECONDS));
+				assertTrue(supervision.isTimedOut());
+			}
+			assertFalse(children.isEmpty());
+			for (ProcessHandle child : children) {
+				child.onExit().get(5, TimeUnit.SECONDS);
+			}
+			assertEquals(1, supervisor.timedOut());
+		} finally {
+			supervisor.shutdown();
+		}
+	}
+
+	@Test
+	void killsProcessWhenOwnerThreadIsInterrupted() throws Exception {
+		if (System.getProperty("os.name").toLowerCase().startsWith("windows")) return;
+		ProcessSupervisor supervisor = new ProcessSupervisor(new ConverterProperties());
+		try {
+			Process process = new ProcessBuilder("sleep", "30").start();
+			ProcessSupervisor.Supervision[] supervision = new ProcessSupervisor.Supervision[1];
+			// Как поток задачи, читающий вывод: блокировка без сброса флага прерывания
+			Thread owner = new Thread(() -> {
+				supervision[0] = supervisor.supervise(process, Duration.ofMinutes(1), "sleep", true);
+				while (process.isAlive()) {
+					LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+				}
+			});
+			owner.start();
+			Thread.sleep(100);
+			owner.interrupt();
+
+			assertTrue(process.waitFor(5, TimeUnit.SECONDS));
+			owner.join(5000);
+			assertTrue(supervision[0].isKilled());
+			assertFalse(supervision[0].isTimedOut());
+			assertEquals(1, supervisor.cancelled());
+			supervision[0].close();
+		} finally {
+			supervisor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,58 @@
+package com.iskander.converter;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenditionTranscoderTests {
+
+	@Test
+	void splitsOneDecodeIntoScaledOutputs() {
+		List<Rendition> renditions = List.of(
+				rendition("webp", 640, null, false, 80),
+				rendition("jpg", 1280, 720, true, null),
+				rendition("png", null, null, false, null));
+
+		assertEquals("[0:v]split=3[in0][in1][in2]"
+						+ ";[in0]scale='min(640,iw)':-1[out0]"
+						+ ";[in1]scale=1280:720:force_original_aspect_ratio=decrease[out1]"
+						+ ";[in2]null[out2]",
+				RenditionTranscoder.filterGraph(MediaKind.IMAGE, renditions));
+	}
+
+	@Test
+	void mapsEachBranchToItsOwnOutput() {
+		List<Rendition> renditions = List.of(
+				rendition("mp3", null, null, false, 100),
+				rendition("ogg", null, null, false, 50));
+		List<String> command = RenditionTranscoder.command(MediaKind.AUDIO, new File("in.wav"), renditions,
+				List.of(new File("a.mp3"), new File("b.ogg")));
+
+		assertTrue(command.contains("[0:a]asplit=2[in0][in1];[in0]anull[out0];[in1]anull[out1]"));
+		int first = command.indexOf("[out0]");
+		int second = command.indexOf("[out1]");
+		assertEquals(List.of("[out0]", "-q:a", "0", new File("a.mp3").getAbsolutePath()), command.subList(first, second - 1));
+		assertEquals(List.of("[out1]", "-q:a", "5", new File("b.ogg").getAbsolutePath()), command.subList(second, command.size()));
+	}
+
+	@Test
+	void mapsQualityToCodecScale() {
+		assertEquals(List.of("-q:v", "2"), RenditionTranscoder.qualityArgs(rendition("jpg", null, null, false, 100)));
+		assertEquals(List.of("-q:v", "31"), RenditionTranscoder.qualityArgs(rendition("jpg", null, null, false, 1)));
+		assertEquals(List.of("-b:a", "320k"), RenditionTranscoder.qualityArgs(rendition("aac", null, null, false, 100)));
+		assertEquals(List.of(), RenditionTranscoder.qualityArgs(rendition("png", null, null, false, 50)));
+	}
+
+	private Rendition rendition(String format, Integer maxWidth, Integer maxHeight, boolean upscale, Integer quality) {
+		Rendition rendition = new Rendition();
+		rendition.setFormat(format);
+		rendition.setMaxWidth(maxWidth);
+		rendition.setMaxHeight(maxHeight);
+		rendition.setUpscale(upscale);
+		rendition.setQuality(quality);
+		return rendition;
+	}
+}
@@ -0,0 +1,42 @@
+package com.iskander.converter;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentedVideoTranscoderTests {
+
+	@Test
+	void muxesAudioOnceFromTheWholeInput() {
+		File list = new File("segments.txt");
+		File input = new File("in.mov");
+		File output = new File("out.mp4");
+
+		assertEquals(List.of("ffmpeg", "-y", "-f", "concat", "-safe", "0", "-i", list.getAbsolutePath(),
+						"-i", input.getAbsolutePath(), "-map", "0:v:0", "-map", "1:a:0?", "-c:v", "copy",
+						"-c:a", "copy", output.getAbsolutePath()),
+				SegmentedVideoTranscoder.concatCommand(list, input, output, true));
+		// Звук не подходит контейнеру - кодируется кодером по умолчанию, но один раз
+		List<String> encode = SegmentedVideoTranscoder.concatCommand(list, input, output, false);
+		assertFalse(encode.contains("-c:a"));
+		assertEquals("1:a:0?", encode.get(encode.indexOf("-c:v") - 1));
+	}
+
+	@Test
+	void splitsTheThreadLimitBetweenParallelSegments() {
+		assertEquals(2, SegmentedVideoTranscoder.segmentThreads(8, 16, 4));
+		assertEquals(4, SegmentedVideoTranscoder.segmentThreads(0, 16, 4));
+		assertEquals(1, SegmentedVideoTranscoder.segmentThreads(2, 16, 4));
+
+		List<String> command = SegmentedVideoTranscoder.segmentCommand(new File("part_000.mkv"), new File("out.mp4"), 2);
+		ConverterProperties.ProcessLimits limits = new ConverterProperties.ProcessLimits(Duration.ofMinutes(1));
+		limits.setThreads(8);
+		// Явный лимит сегмента не перекрывается лимитом целого процесса
+		assertEquals(command, ProcessSupervisor.limitedCommand(command, limits));
+		assertEquals("2", command.get(command.indexOf("-threads") + 1));
+	}
+}
@@ -0,0 +1,71 @@
+package com.iskander.converter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SharedDirectoryJobQueueTests {
+
+	@TempDir
+	Path tempDir;
+
+	private SharedDirectoryJobQueue newQueue() {
+		ConverterProperties properties = new ConverterProperties();
+		properties.getCluster().setDirectory(tempDir.toString());
+		return new SharedDirectoryJobQueue(properties, new ObjectMapper());
+	}
+
+	@Test
+	void claimsEachJobOnceAndOnlyForAcceptedKinds() throws Exception {
+		SharedDirectoryJobQueue queue = newQueue();
+		queue.enqueue(new QueuedJob("a", MediaKind.VIDEO, "mp4", "input.mov", "output.mp4"));
+		queue.enqueue(new QueuedJob("b", MediaKind.DOCUMENT, "pdf", "input.docx", "output.pdf"));
+
+		assertNull(queue.claim("w1", EnumSet.of(MediaKind.IMAGE)));
+		QueuedJob claimed = queue.claim("w1", EnumSet.of(MediaKind.VIDEO, MediaKind.AUDIO));
+		assertEquals("a", claimed.getId());
+		assertEquals("output.mp4", claimed.getOutputName());
+		assertNull(queue.claim("w2", EnumSet.of(MediaKind.VIDEO)));
+
+		queue.update("a", new QueuedJobState(ConversionJob.Status.COMPLETED, 1, null, "w1"));
+		assertEquals(ConversionJob.Status.COMPLETED, queue.state("a").getStatus());
+		assertEquals(ConversionJob.Status.QUEUED, queue.state("b").getStatus());
+	}
+
+	@Test
+	void requeuesJobsOfSilentWorkers() throws Exception {
+		SharedDirectoryJobQueue queue = newQueue();
+		queue.enqueue(new QueuedJob("a", MediaKind.VIDEO, "mp4", "input.mov", "output.mp4"));
+		WorkerInfo worker = new WorkerInfo();
+		worker.setId("w1");
+		worker.setHeartbeat(System.currentTimeMillis());
+		queue.advertise(worker);
+		assertNotNull(queue.claim("w1", EnumSet.of(MediaKind.VIDEO)));
+
+		// Воркер жив - задача остаётся за ним
+		assertEquals(0, queue.requeueAbandoned(Duration.ofMinutes(1)));
+
+		worker.setHeartbeat(System.currentTimeMillis() - Duration.ofMinutes(5).toMillis());
+		queue.advertise(worker);
+		assertEquals(1, queue.requeueAbandoned(Duration.ofMinutes(1)));
+		assertEquals("a", queue.claim("w2", EnumSet.of(MediaKind.VIDEO)).getId());
+	}
+
+	@Test
+	void updateOfDeletedJobTellsWorkerToStop() throws Exception {
+		SharedDirectoryJobQueue queue = newQueue();
+		queue.enqueue(new QueuedJob("a", MediaKind.VIDEO, "mp4", "input.mov", "output.mp4"));
+		assertNotNull(queue.claim("w1", EnumSet.of(MediaKind.VIDEO)));
+		assertTrue(queue.update("a", new QueuedJobState(ConversionJob.Status.RUNNING, 0.5, null, "w1")));
+
+		queue.delete("a");
+		assertFalse(queue.update("a", new QueuedJobState(ConversionJob.Status.RUNNING, 0.6, null, "w1")));
+		assertNull(queue.state("a"));
+	}
+}
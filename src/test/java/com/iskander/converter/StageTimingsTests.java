@@ -0,0 +1,63 @@
+package com.iskander.converter;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StageTimingsTests {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void sumsRepeatedStagesInServerTiming() throws Exception {
+		StageTimings timings = new StageTimings("/api/convert");
+		try (StageTimings.Stage stage = timings.begin("process", "FFmpeg video split")) {
+			Thread.sleep(5);
+		}
+		try (StageTimings.Stage stage = timings.begin("queue", "video")) {
+			Thread.sleep(5);
+		}
+		try (StageTimings.Stage stage = timings.begin("process", "FFmpeg video concat")) {
+			Thread.sleep(5);
+		}
+
+		String header = timings.serverTiming();
+		assertTrue(header.matches("process;dur=\\d+\\.\\d, queue;dur=\\d+\\.\\d, total;dur=\\d+\\.\\d"), header);
+		double process = Double.parseDouble(header.substring("process;dur=".length(), header.indexOf(',')));
+		assertTrue(process >= 10, header);
+	}
+
+	@Test
+	void stagesOutsideRequestGoOnlyToFlightRecorder() throws Exception {
+		try (StageTimings.Stage stage = StageTimings.start("process", "FFmpeg audio")) {
+			Thread.sleep(1);
+		}
+		assertTrue(StageTimings.current().serverTiming().startsWith("total;dur="));
+	}
+
+	@Test
+	void emitsFlightRecorderEvents() throws Exception {
+		Path file = tempDir.resolve("stages.jfr");
+		try (Recording recording = new Recording()) {
+			recording.enable("com.iskander.converter.ConversionStage");
+			recording.start();
+			StageTimings timings = new StageTimings("/api/video/convert");
+			timings.begin("transfer", null).close();
+			recording.stop();
+			recording.dump(file);
+		}
+
+		List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+		assertEquals(1, events.size());
+		assertEquals("transfer", events.get(0).getString("stage"));
+		assertEquals("/api/video/convert", events.get(0).getString("request"));
+	}
+}
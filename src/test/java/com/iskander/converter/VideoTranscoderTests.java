@@ -0,0 +1,45 @@
+package com.iskander.converter;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VideoTranscoderTests {
+
+	@Test
+	void writesFragmentedMp4ToStdout() {
+		List<String> command = VideoTranscoder.fragmentedCommand(new File("in.mov"), "mp4",
+				List.of("-c:v", "copy"), Duration.ofSeconds(2));
+
+		assertEquals(List.of("ffmpeg", "-nostdin", "-i", new File("in.mov").getAbsolutePath(), "-c:v", "copy",
+						"-movflags", "frag_keyframe+empty_moov+default_base_moof", "-frag_duration", "2000000",
+						"-f", "mp4", "pipe:1"),
+				command);
+	}
+
+	@Test
+	void limitsWebmClusterLength() {
+		List<String> command = VideoTranscoder.fragmentedCommand(new File("in.mkv"), "webm",
+				List.of(), Duration.ofMillis(1500));
+
+		assertEquals(List.of("-cluster_time_limit", "1500", "-f", "webm", "pipe:1"),
+				command.subList(command.size() - 5, command.size()));
+		assertTrue(VideoTranscoder.supportsFragmented("WEBM"));
+		assertFalse(VideoTranscoder.supportsFragmented("avi"));
+	}
+
+	@Test
+	void copiesAudioWhileVideoIsReencoded() {
+		MediaInfo info = new MediaInfo(60, List.of(
+				new MediaInfo.Stream(0, "video", "vp9"), new MediaInfo.Stream(1, "audio", "aac")));
+
+		assertEquals(List.of("-map", "0:v:0", "-map", "0:a:0", "-c:a", "copy"),
+				VideoTranscoder.streamArgs(info, false, true));
+		assertEquals(List.of("-map", "0:a:0", "-c:a", "copy"),
+				VideoTranscoder.streamArgs(new MediaInfo(60, List.of(new MediaInfo.Stream(0, "audio", "aac"))), false, true));
+	}
+}
@@ -0,0 +1,62 @@
+package com.iskander.converter;
+
+import org.junit.jupiter.api.Test;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WavPcmStreamTests {
+
+	// Кадры MPEG-1 Layer III, 128 kbit/s, 44.1 kHz, стерео, с нулевыми данными (тишина)
+	private byte[] silentMp3(int frames) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (int i = 0; i < frames; i++) {
+			byte[] frame = new byte[417];
+			frame[0] = (byte) 0xFF;
+			frame[1] = (byte) 0xFB;
+			frame[2] = (byte) 0x90;
+			out.writeBytes(frame);
+		}
+		return out.toByteArray();
+	}
+
+	@Test
+	void scanCountsSamplesWithoutDecoding() throws Exception {
+		Mp3PcmDecoder.Info info = Mp3PcmDecoder.scan(new ByteArrayInputStream(silentMp3(10)));
+
+		assertEquals(44100, info.getSampleRate());
+		assertEquals(2, info.getChannels());
+		assertEquals(10 * 1152, info.getTotalSamples());
+	}
+
+	@Test
+	void scanRejectsNonMp3Input() throws Exception {
+		assertNull(Mp3PcmDecoder.scan(new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5})));
+	}
+
+	@Test
+	void producesWavWithExactDeclaredLength() throws Exception {
+		byte[] mp3 = silentMp3(20);
+		Mp3PcmDecoder.Info info = Mp3PcmDecoder.scan(new ByteArrayInputStream(mp3));
+
+		byte[] wav;
+		WavPcmStream stream = new WavPcmStream(new Mp3PcmDecoder(new ByteArrayInputStream(mp3), info), info);
+		try (stream) {
+			wav = stream.readAllBytes();
+		}
+
+		assertTrue(stream.succeeded());
+		assertEquals(44 + 20 * 1152 * 4, wav.length);
+		try (AudioInputStream audio = AudioSystem.getAudioInputStream(new ByteArrayInputStream(wav))) {
+			AudioFormat format = audio.getFormat();
+			assertEquals(44100f, format.getSampleRate());
+			assertEquals(2, format.getChannels());
+			assertEquals(20 * 1152, audio.getFrameLength());
+		}
+	}
+}
@@ -0,0 +1,151 @@
+package com.iskander.converter;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WorkAreaTests {
+
+	@TempDir
+	Path tempDir;
+
+	private WorkArea newWorkArea(boolean withMemory) throws Exception {
+		ConverterProperties properties = new ConverterProperties();
+		ConverterProperties.Work work = properties.getWork();
+		work.setDirectory(tempDir.resolve("disk").toString());
+		if (withMemory) {
+			work.setMemoryDirectory(tempDir.resolve("memory").toString());
+		}
+		work.setMaxSize(DataSize.ofBytes(3000));
+		work.setMemoryMaxSize(DataSize.ofBytes(600));
+		work.setMemoryThreshold(DataSize.ofBytes(300));
+		work.setReserveFactor(3);
+		work.setOrphanAge(Duration.ZERO);
+		properties.getScheduler().getImage().setRetryAfter(7);
+		WorkArea workArea = new WorkArea(properties);
+		workArea.init();
+		return workArea;
+	}
+
+	@Test
+	void placesSmallJobsInMemoryAndLargeOnDisk() throws Exception {
+		WorkArea workArea = newWorkArea(true);
+
+		try (WorkArea.Allocation small = workArea.allocate(MediaKind.IMAGE, 100);
+			 WorkArea.Allocation large = workArea.allocate(MediaKind.IMAGE, 500)) {
+			assertTrue(small.isInMemory());
+			assertFalse(large.isInMemory());
+			assertEquals(tempDir.resolve("memory"), small.getDirectory().toPath().getParent().getParent());
+			assertEquals(300, workArea.reservedBytes(true));
+			assertEquals(1500, workArea.reservedBytes(false));
+		}
+		assertEquals(0, workArea.reservedBytes(true));
+		assertEquals(0, workArea.reservedBytes(false));
+	}
+
+	@Test
+	void rejectsBeyondQuotaAndDeletesDirectoryOnClose() throws Exception {
+		WorkArea workArea = newWorkArea(false);
+		WorkArea.Allocation first = workArea.allocate(MediaKind.IMAGE, 800);
+		Files.write(first.file("input.png").toPath(), new byte[10]);
+
+		ConversionRejectedException e = assertThrows(ConversionRejectedException.class,
+				() -> workArea.allocate(MediaKind.IMAGE, 500));
+		assertEquals(7, e.getRetryAfterSeconds());
+		assertEquals(1, workArea.rejected());
+
+		first.close();
+		assertFalse(first.getDirectory().exists());
+		workArea.allocate(MediaKind.IMAGE, 500).close();
+	}
+
+	@Test
+	void admitsOversizedJobWhenDiskIsIdle() throws Exception {
+		WorkArea workArea = newWorkArea(false);
+
+		try (WorkArea.Allocation huge = workArea.allocate(MediaKind.VIDEO, 10_000)) {
+			assertEquals(30_000, workArea.reservedBytes(false));
+		}
+	}
+
+	@Test
+	void reservesExactSizeForStoredUploads() throws Exception {
+		WorkArea workArea = newWorkArea(false);
+
+		try (WorkArea.Allocation upload = workArea.allocateExact(MediaKind.VIDEO, 2000)) {
+			assertEquals(2000, workArea.reservedBytes(false));
+			assertThrows(ConversionRejectedException.class, () -> workArea.allocate(MediaKind.IMAGE, 500));
+		}
+	}
+
+	@Test
+	void sweepsOrphansButKeepsActiveDirectories() throws Exception {
+		WorkArea workArea = newWorkArea(false);
+
+		try (WorkArea.Allocation active = workArea.allocate(MediaKind.IMAGE, 10)) {
+			File orphan = new File(active.getDirectory().getParentFile(), "image-orphan");
+			assertTrue(orphan.mkdir());
+			// Время каталога не важно: ffmpeg пишет в файл внутри, и каталог выглядит старым
+			active.getDirectory().setLastModified(System.currentTimeMillis() - 60_000);
+			workArea.sweepOrphans();
+
+			assertFalse(orphan.exists());
+			assertTrue(active.getDirectory().exists());
+			assertEquals(1, workArea.orphansRemoved());
+		} finally {
+			workArea.shutdown();
+		}
+	}
+
+	@Test
+	void keepsDirectoriesOfLiveInstancesSharingTheRoot() throws Exception {
+		// Каталог упавшего экземпляра: файл блокировки есть, но его никто не держит
+		Path crashed = Files.createDirectories(tempDir.resolve("disk").resolve("instance-1-dead"));
+		Files.createFile(crashed.resolve(".lock"));
+		Files.createDirectories(crashed.resolve("video-previous-run"));
+		WorkArea worker = newWorkArea(false);
+		assertFalse(Files.exists(crashed));
+
+		try (WorkArea.Allocation job = worker.allocate(MediaKind.VIDEO, 10)) {
+			job.getDirectory().setLastModified(System.currentTimeMillis() - 60_000);
+			// Второй экземпляр на том же хосте (api рядом с worker) запускается и чистит сирот
+			WorkArea api = newWorkArea(false);
+			api.sweepOrphans();
+
+			assertTrue(job.getDirectory().exists());
+			assertEquals(0, api.orphansRemoved());
+			api.shutdown();
+		} finally {
+			worker.shutdown();
+		}
+		// Остаётся только общий файл блокировки квоты
+		try (var entries = Files.list(tempDir.resolve("disk"))) {
+			assertEquals(0, entries.filter(entry -> !entry.getFileName().toString().equals(".quota")).count());
+		}
+	}
+
+	@Test
+	void sharesQuotaBetweenInstancesOnOneRoot() throws Exception {
+		WorkArea worker = newWorkArea(false);
+		WorkArea api = newWorkArea(false);
+		try {
+			WorkArea.Allocation job = worker.allocate(MediaKind.VIDEO, 800);
+			// 2400 байт уже заняты другим экземпляром - 1500 не помещаются в общие 3000
+			assertThrows(ConversionRejectedException.class, () -> api.allocate(MediaKind.IMAGE, 500));
+			api.allocate(MediaKind.IMAGE, 200).close();
+
+			job.close();
+			api.allocate(MediaKind.IMAGE, 500).close();
+		} finally {
+			api.shutdown();
+			worker.shutdown();
+		}
+	}
+}